@@ -0,0 +1,82 @@
+package io.github.metarank.lightgbm4j;
+
+/**
+ * Helpers for passing Arrow C Data Interface structs (ArrowArray/ArrowSchema, as exported by the arrow-c-data
+ * module with Data.exportVectorSchemaRoot) to LightGBM, without depending on the Arrow java libraries.
+ *
+ * LightGBM expects a contiguous C array of ArrowArray chunks, while Arrow java allocates each exported struct separately.
+ * So chunk structs are moved to a single native region: the struct is copied bitwise, and the source struct is marked
+ * as released, as the C Data Interface spec defines for the move semantics. LightGBM takes the ownership of the moved
+ * chunks and the schema, and releases them after the call.
+ *
+ * If the call fails, chunks that LightGBM has not released are moved back to their source structs with restore().
+ * Release callbacks are C function pointers and cannot be called from java, so the ownership goes back to the
+ * caller, and they are released by the usual ArrowArray.release() on the java side (as the schema, which is never
+ * moved).
+ */
+final class ArrowData {
+    // sizeof(struct ArrowArray) on 64-bit platforms
+    static final int ARRAY_SIZE = 80;
+    static final int ARRAY_LENGTH_OFFSET = 0;
+    static final int ARRAY_RELEASE_OFFSET = 64;
+
+    private ArrowData() {
+    }
+
+    /**
+     * @param chunks addresses of ArrowArray structs
+     * @return total number of rows in all the chunks
+     */
+    static long rows(long[] chunks) throws LGBMException {
+        check(chunks);
+        long rows = 0;
+        for (long chunk : chunks) {
+            rows += DirectMemory.getLong(chunk + ARRAY_LENGTH_OFFSET);
+        }
+        return rows;
+    }
+
+    /**
+     * Move ArrowArray structs into a single contiguous native region, which should be released with DirectMemory.free.
+     *
+     * @param chunks addresses of ArrowArray structs
+     * @return address of the first moved chunk
+     */
+    static long move(long[] chunks) throws LGBMException {
+        check(chunks);
+        long address = DirectMemory.allocate((long) chunks.length * ARRAY_SIZE);
+        for (int i = 0; i < chunks.length; i++) {
+            DirectMemory.copy(chunks[i], address + (long) i * ARRAY_SIZE, ARRAY_SIZE);
+            DirectMemory.putLong(chunks[i] + ARRAY_RELEASE_OFFSET, 0);
+        }
+        return address;
+    }
+
+    /**
+     * Move chunks, which were not released yet, back from the region created with move() to their source structs.
+     * The region itself is not freed.
+     *
+     * @param chunks addresses of the source ArrowArray structs
+     * @param moved  address of the first moved chunk
+     */
+    static void restore(long[] chunks, long moved) {
+        for (int i = 0; i < chunks.length; i++) {
+            long chunk = moved + (long) i * ARRAY_SIZE;
+            if (DirectMemory.getLong(chunk + ARRAY_RELEASE_OFFSET) != 0) {
+                DirectMemory.copy(chunk, chunks[i], ARRAY_SIZE);
+                DirectMemory.putLong(chunk + ARRAY_RELEASE_OFFSET, 0);
+            }
+        }
+    }
+
+    private static void check(long[] chunks) throws LGBMException {
+        if (chunks.length == 0) {
+            throw new LGBMException("there should be at least one Arrow chunk");
+        }
+        for (long chunk : chunks) {
+            if (chunk == 0) {
+                throw new LGBMException("Arrow chunk address is null");
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+import static com.microsoft.ml.lightgbm.lightgbmlibConstants.C_API_DTYPE_FLOAT32;
+import static com.microsoft.ml.lightgbm.lightgbmlibConstants.C_API_DTYPE_FLOAT64;
+
+/**
+ * A thread-safe wrapper for single-row fast predictions. A FastConfig cannot be shared between threads, so the pool
+ * lazily creates new configs on demand, and hands them out to calling threads. At most maxSize configs
+ * (of both float and double inputs together) exist at the same time, and callers block if all of them are busy.
+ *
+ * A FastConfig uses the trees the booster had when the config was created. If the booster keeps training after the pool
+ * was created, configs made for an older number of iterations are closed and re-created when they are taken from the pool,
+ * so predictions always use all the trees.
+ *
+ * The pool is bound to the booster: closing the booster also closes the pool. Closing the pool waits for all the
+ * in-flight predictions to finish.
+ */
+public class BoosterPredictorPool implements AutoCloseable {
+    private final LGBMBooster booster;
+    private final PredictionType predictionType;
+    private final int ncols;
+    private final String parameter;
+    private final int maxSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<LGBMBooster.FastConfig> floatConfigs = new ConcurrentLinkedDeque<>();
+    private final ConcurrentLinkedDeque<LGBMBooster.FastConfig> doubleConfigs = new ConcurrentLinkedDeque<>();
+    // number of existing configs, guarded by this
+    private int created = 0;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Create a pool with at most one FastConfig per available CPU core.
+     *
+     * @param booster        the booster
+     * @param predictionType the prediction type
+     * @param ncols          number of columns
+     * @param parameter      prediction options
+     * @throws LGBMException
+     */
+    public BoosterPredictorPool(LGBMBooster booster, PredictionType predictionType, int ncols, String parameter) throws LGBMException {
+        this(booster, predictionType, ncols, parameter, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pool with at most maxSize FastConfigs in use at the same time.
+     *
+     * @param booster        the booster
+     * @param predictionType the prediction type
+     * @param ncols          number of columns
+     * @param parameter      prediction options
+     * @param maxSize        max number of concurrent predictions
+     * @throws LGBMException
+     */
+    public BoosterPredictorPool(LGBMBooster booster, PredictionType predictionType, int ncols, String parameter, int maxSize) throws LGBMException {
+        if (maxSize < 1) {
+            throw new LGBMException("pool size should be positive, but got " + maxSize);
+        }
+        this.booster = booster;
+        this.predictionType = predictionType;
+        this.ncols = ncols;
+        this.parameter = parameter;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize);
+        booster.registerPool(this);
+    }
+
+    /**
+     * Make a single-row prediction, blocking if all the configs are busy.
+     *
+     * @param data input vector
+     * @return score
+     * @throws LGBMException
+     */
+    public double score(float[] data) throws LGBMException {
+        acquire();
+        try {
+            LGBMBooster.FastConfig config = take(floatConfigs, doubleConfigs, C_API_DTYPE_FLOAT32);
+            try {
+                return booster.predictForMatSingleRowFast(config, data, predictionType);
+            } finally {
+                // LIFO, so the most recently used config (with hot caches) is handed out first
+                floatConfigs.offerFirst(config);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Make a single-row prediction, blocking if all the configs are busy. The input array is passed to LightGBM
+     * without copying.
+     *
+     * @param data input vector
+     * @return score
+     * @throws LGBMException
+     */
+    public double score(double[] data) throws LGBMException {
+        acquire();
+        try {
+            LGBMBooster.FastConfig config = take(doubleConfigs, floatConfigs, C_API_DTYPE_FLOAT64);
+            try {
+                return booster.predictForMatSingleRowFastCritical(config, data);
+            } finally {
+                doubleConfigs.offerFirst(config);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Take an idle config of the requested dtype, or create a new one. Should be called with a permit acquired.
+     */
+    private LGBMBooster.FastConfig take(ConcurrentLinkedDeque<LGBMBooster.FastConfig> configs, ConcurrentLinkedDeque<LGBMBooster.FastConfig> other, int dtype) throws LGBMException {
+        LGBMBooster.FastConfig config = configs.pollFirst();
+        if ((config != null) && (config.numIteration == booster.getIterations())) {
+            return config;
+        } else {
+            return create(config, configs, other, dtype);
+        }
+    }
+
+    /**
+     * A slow path: replace a stale config, or create a new one. When maxSize configs already exist, an idle one of the other
+     * dtype is closed first. There is always one, as all the permits except the caller's may hold at most maxSize - 1 configs.
+     */
+    private synchronized LGBMBooster.FastConfig create(LGBMBooster.FastConfig stale, ConcurrentLinkedDeque<LGBMBooster.FastConfig> configs,
+                                                       ConcurrentLinkedDeque<LGBMBooster.FastConfig> other, int dtype) throws LGBMException {
+        if (stale != null) {
+            created--;
+            stale.close();
+        } else {
+            // a config may have been returned since the lock-free poll
+            LGBMBooster.FastConfig returned = configs.pollFirst();
+            if ((returned != null) && (returned.numIteration == booster.getIterations())) {
+                return returned;
+            } else if (returned != null) {
+                created--;
+                returned.close();
+            }
+        }
+        if (created >= maxSize) {
+            LGBMBooster.FastConfig victim = other.pollLast();
+            if (victim != null) {
+                created--;
+                victim.close();
+            }
+        }
+        LGBMBooster.FastConfig config = booster.predictForMatSingleRowFastInit(predictionType, dtype, ncols, parameter);
+        created++;
+        return config;
+    }
+
+    /**
+     * @return number of existing configs
+     */
+    synchronized int getSize() {
+        return created;
+    }
+
+    private void acquire() throws LGBMException {
+        if (isClosed) {
+            throw new LGBMException("Predictor pool was already closed");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LGBMException("Interrupted while waiting for a free predictor");
+        }
+        if (isClosed) {
+            permits.release();
+            throw new LGBMException("Predictor pool was already closed");
+        }
+    }
+
+    /**
+     * Wait for all in-flight predictions to finish, and deallocate all the native FastConfigs.
+     *
+     * @throws LGBMException
+     */
+    @Override
+    public void close() throws LGBMException {
+        if (!isClosed) {
+            isClosed = true;
+            permits.acquireUninterruptibly(maxSize);
+            try {
+                try {
+                    closeAll(floatConfigs);
+                } finally {
+                    closeAll(doubleConfigs);
+                }
+            } finally {
+                booster.unregisterPool(this);
+                permits.release(maxSize);
+            }
+        }
+    }
+
+    /**
+     * Close all the configs, even if some of them fail, and rethrow the first failure.
+     */
+    private synchronized void closeAll(ConcurrentLinkedDeque<LGBMBooster.FastConfig> configs) throws LGBMException {
+        LGBMException error = null;
+        LGBMBooster.FastConfig config;
+        while ((config = configs.pollFirst()) != null) {
+            created--;
+            try {
+                config.close();
+            } catch (LGBMException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
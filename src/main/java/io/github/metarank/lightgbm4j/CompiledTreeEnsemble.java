@@ -0,0 +1,253 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A TreeEnsemble compiled into JVM bytecode: each tree becomes a static method with nested if/else branches on constant
+ * thresholds, so JIT can produce a straight-line code without any array-based tree traversal.
+ *
+ * Trees are split into multiple generated classes to stay within the class file constant pool limits. Trees
+ * which are too large to be JIT-compiled as a single method are evaluated with the interpreted TreeEnsemble code.
+ * Leaf index predictions are always done by the TreeEnsemble.
+ *
+ * On JDK 15+ generated classes are hidden, and are unloaded together with the CompiledTreeEnsemble instance.
+ * On older JDKs they stay loaded until the classloader of the library is unloaded.
+ */
+public final class CompiledTreeEnsemble {
+    static final int MAX_TREES_PER_CLASS = 256;
+
+    private final TreeEnsemble ensemble;
+    // sequence of compiled tree blocks (TreeBlock) and interpreted single trees (Integer), in the tree order
+    private final Object[] segments;
+    private final int compiledTrees;
+
+    private CompiledTreeEnsemble(TreeEnsemble ensemble, Object[] segments, int compiledTrees) {
+        this.ensemble = ensemble;
+        this.segments = segments;
+        this.compiledTrees = compiledTrees;
+    }
+
+    /**
+     * Compile the parsed model.
+     *
+     * @param ensemble parsed model
+     * @return compiled model
+     * @throws LGBMException when the generated classes cannot be loaded
+     */
+    public static CompiledTreeEnsemble compile(TreeEnsemble ensemble) throws LGBMException {
+        List<Object> segments = new ArrayList<>();
+        int compiled = 0;
+        TreeClassWriter writer = null;
+        for (int tree = 0; tree < ensemble.numTrees; tree++) {
+            if (TreeClassWriter.fits(ensemble, tree)) {
+                if (writer == null) {
+                    writer = new TreeClassWriter(ensemble);
+                }
+                writer.addTree(tree);
+                compiled++;
+                if ((writer.trees() >= MAX_TREES_PER_CLASS) || (writer.constants() >= TreeClassWriter.MAX_CONSTANTS)) {
+                    segments.add(writer.define());
+                    writer = null;
+                }
+            } else {
+                if (writer != null) {
+                    segments.add(writer.define());
+                    writer = null;
+                }
+                segments.add(tree);
+            }
+        }
+        if (writer != null) {
+            segments.add(writer.define());
+        }
+        return new CompiledTreeEnsemble(ensemble, segments.toArray(), compiled);
+    }
+
+    /**
+     * Parse and compile the current booster state.
+     *
+     * @param booster the booster
+     * @return compiled model
+     * @throws LGBMException
+     */
+    public static CompiledTreeEnsemble compile(LGBMBooster booster) throws LGBMException {
+        return compile(TreeEnsemble.fromBooster(booster));
+    }
+
+    /**
+     * @return the source interpreted model
+     */
+    public TreeEnsemble getEnsemble() {
+        return ensemble;
+    }
+
+    /**
+     * @return number of trees compiled to bytecode
+     */
+    public int getCompiledTrees() {
+        return compiledTrees;
+    }
+
+    /**
+     * @return number of trees, which were too large to be compiled
+     */
+    public int getInterpretedTrees() {
+        return ensemble.numTrees - compiledTrees;
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        if (kind == PredictionKind.LEAF_INDEX) {
+            return ensemble.predictForMat(input, rows, cols, isRowMajor, kind);
+        }
+        checkInput(input.length, rows, cols);
+        int width = ensemble.numPredict(kind);
+        double[] output = new double[rows * width];
+        double[] features = new double[ensemble.numFeatures];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < Math.min(cols, features.length); col++) {
+                features[col] = TreeEnsemble.featureValue(isRowMajor ? input[row * cols + col] : input[col * rows + row]);
+            }
+            score(features, kind, output, row * width);
+        }
+        return output;
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        if (kind == PredictionKind.LEAF_INDEX) {
+            return ensemble.predictForMat(input, rows, cols, isRowMajor, kind);
+        }
+        checkInput(input.length, rows, cols);
+        int width = ensemble.numPredict(kind);
+        double[] output = new double[rows * width];
+        double[] features = new double[ensemble.numFeatures];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < Math.min(cols, features.length); col++) {
+                features[col] = TreeEnsemble.featureValue(isRowMajor ? input[row * cols + col] : input[col * rows + row]);
+            }
+            score(features, kind, output, row * width);
+        }
+        return output;
+    }
+
+    /**
+     * Make a prediction for a single row.
+     *
+     * @param row            input vector
+     * @param kind           the prediction kind
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForMatSingleRow(double[] row, PredictionKind kind) throws LGBMException {
+        double[] output = new double[ensemble.numPredict(kind)];
+        predict(row, kind, output, 0);
+        return output[0];
+    }
+
+    /**
+     * Make a prediction for a single row, writing all the predicted values into the output array.
+     *
+     * @param row            input vector
+     * @param kind           the prediction kind
+     * @param output         output array
+     * @param outputOffset   offset in the output array
+     * @return number of predicted values written
+     * @throws LGBMException
+     */
+    public int predict(double[] row, PredictionKind kind, double[] output, int outputOffset) throws LGBMException {
+        if (kind == PredictionKind.LEAF_INDEX) {
+            return ensemble.predict(row, kind, output, outputOffset);
+        }
+        int width = ensemble.numPredict(kind);
+        if (output.length - outputOffset < width) {
+            throw new LGBMException("output array has " + (output.length - outputOffset) + " elements after the offset, but " + width + " are needed");
+        }
+        double[] features = new double[ensemble.numFeatures];
+        for (int col = 0; col < Math.min(row.length, features.length); col++) {
+            features[col] = TreeEnsemble.featureValue(row[col]);
+        }
+        score(features, kind, output, outputOffset);
+        return width;
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMatSingleRow with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double predictForMatSingleRow(double[] row, PredictionType predictionType) throws LGBMException {
+        return predictForMatSingleRow(row, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predict with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public int predict(double[] row, PredictionType predictionType, double[] output, int outputOffset) throws LGBMException {
+        return predict(row, PredictionKind.of(predictionType), output, outputOffset);
+    }
+
+    private void checkInput(int length, int rows, int cols) throws LGBMException {
+        if ((long) rows * cols > length) {
+            throw new LGBMException("input array has " + length + " elements, but " + rows + "x" + cols + " matrix was expected");
+        }
+    }
+
+    private void score(double[] features, PredictionKind kind, double[] output, int outputOffset) throws LGBMException {
+        int classes = ensemble.numTreesPerIteration;
+        double[] raw = new double[classes];
+        for (Object segment : segments) {
+            if (segment instanceof TreeBlock) {
+                ((TreeBlock) segment).addScores(features, raw);
+            } else {
+                int tree = (Integer) segment;
+                raw[tree % classes] += ensemble.leafValue[~ensemble.traverse(tree, features, 0, 1, features.length)];
+            }
+        }
+        System.arraycopy(raw, 0, output, outputOffset, classes);
+        switch (kind) {
+            case RAW_SCORE:
+                break;
+            case NORMAL:
+                ensemble.rawToNormal(output, outputOffset);
+                break;
+            default:
+                throw new LGBMException("prediction kind " + kind + " is not supported");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.metarank.lightgbm4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Trains all the CrossValidator folds concurrently, each fold in its own LGBMBooster. The thread budget is split
+ * between folds: up to numThreads folds are trained at once, and each booster gets numThreads / parallelFolds OpenMP
+ * threads with its own num_threads parameter, so cores are not oversubscribed and are not idle during the
+ * single-threaded parts of each boosting iteration. The process-wide LightGBM thread settings are not changed.
+ *
+ * Folds are trained iteration by iteration in lockstep, and after each iteration validation metrics are averaged over the
+ * folds. Training stops early when the mean of the first metric has not improved for earlyStoppingRounds iterations.
+ * A fold with no more possible splits is finished: it is not trained anymore and keeps its last metrics, and training
+ * stops when all the folds are finished.
+ * <pre>
+ *     try (CrossValidator cv = CrossValidator.create(dataset, 5, 42L, "")) {
+ *         CrossValidationRunner.Result result = CrossValidationRunner.run(cv, "objective=binary metric=auc", 1000, 20, 64);
+ *         int bestIterations = result.bestIteration;
+ *     }
+ * </pre>
+ */
+public class CrossValidationRunner {
+    // num_threads and its aliases, which are overridden by the runner
+    static final Set<String> THREAD_PARAMETERS = new HashSet<>(Arrays.asList("num_threads", "num_thread", "nthread", "nthreads", "n_jobs"));
+
+    /**
+     * Per-iteration validation metrics, aggregated over folds.
+     */
+    public static class Result {
+        public final String[] metricNames;
+        // [iteration][metric]
+        public final double[][] mean;
+        public final double[][] stdev;
+        // 1-based iteration with the best mean value of the first metric
+        public final int bestIteration;
+
+        Result(String[] metricNames, double[][] mean, double[][] stdev, int bestIteration) {
+            this.metricNames = metricNames;
+            this.mean = mean;
+            this.stdev = stdev;
+            this.bestIteration = bestIteration;
+        }
+
+        /**
+         * @return mean metric values at the best iteration
+         */
+        public double[] getBestMean() {
+            return mean[bestIteration - 1];
+        }
+    }
+
+    private CrossValidationRunner() {
+    }
+
+    /**
+     * Train all the folds concurrently, using all the available cores.
+     *
+     * @param cv                  folds
+     * @param parameters          booster parameters, with at least one metric
+     * @param numIterations       max number of boosting iterations
+     * @param earlyStoppingRounds stop after this number of iterations without improvement, 0 to disable
+     * @return aggregated metrics
+     * @throws LGBMException
+     */
+    public static Result run(CrossValidator cv, String parameters, int numIterations, int earlyStoppingRounds) throws LGBMException {
+        return run(cv, parameters, numIterations, earlyStoppingRounds, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Train all the folds concurrently.
+     *
+     * @param cv                  folds
+     * @param parameters          booster parameters, with at least one metric
+     * @param numIterations       max number of boosting iterations
+     * @param earlyStoppingRounds stop after this number of iterations without improvement, 0 to disable
+     * @param numThreads          total thread budget, split between the folds
+     * @return aggregated metrics
+     * @throws LGBMException
+     */
+    public static Result run(CrossValidator cv, String parameters, int numIterations, int earlyStoppingRounds, int numThreads) throws LGBMException {
+        if (numIterations < 1) {
+            throw new LGBMException("number of iterations should be positive, but got " + numIterations);
+        }
+        if (numThreads < 1) {
+            throw new LGBMException("number of threads should be positive, but got " + numThreads);
+        }
+        List<CrossValidator.Fold> folds = cv.getFolds();
+        int parallelFolds = Math.min(folds.size(), numThreads);
+        int threadsPerFold = Math.max(1, numThreads / parallelFolds);
+        String boosterParameters = withThreads(parameters, threadsPerFold);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelFolds);
+        List<LGBMBooster> boosters = new ArrayList<>();
+        try {
+            for (CrossValidator.Fold fold : folds) {
+                LGBMBooster booster = LGBMBooster.create(fold.train, boosterParameters);
+                boosters.add(booster);
+                booster.addValidData(fold.valid);
+            }
+            String[] metricNames = boosters.get(0).getEvalNames();
+            if (metricNames.length == 0) {
+                throw new LGBMException("there should be at least one metric for cross-validation");
+            }
+            boolean higherBetter = isHigherBetter(metricNames[0]);
+            List<double[]> means = new ArrayList<>();
+            List<double[]> stdevs = new ArrayList<>();
+            int bestIteration = 0;
+            double bestValue = Double.NaN;
+            double[][] evals = new double[boosters.size()][];
+            boolean[] finished = new boolean[boosters.size()];
+            for (int iteration = 1; iteration <= numIterations; iteration++) {
+                boolean allFinished = trainIteration(executor, boosters, evals, finished);
+                means.add(mean(evals, metricNames.length));
+                stdevs.add(stdev(evals, means.get(means.size() - 1)));
+                double value = means.get(means.size() - 1)[0];
+                if ((bestIteration == 0) || (higherBetter ? value > bestValue : value < bestValue)) {
+                    bestIteration = iteration;
+                    bestValue = value;
+                } else if ((earlyStoppingRounds > 0) && (iteration - bestIteration >= earlyStoppingRounds)) {
+                    break;
+                }
+                if (allFinished) {
+                    break;
+                }
+            }
+            return new Result(metricNames, means.toArray(new double[0][]), stdevs.toArray(new double[0][]), bestIteration);
+        } finally {
+            executor.shutdownNow();
+            for (LGBMBooster booster : boosters) {
+                booster.close();
+            }
+        }
+    }
+
+    /**
+     * Do a single boosting iteration for all the unfinished folds concurrently. A finished fold (with no more splits
+     * possible) is skipped, as its model cannot change anymore.
+     *
+     * @param evals    validation metrics for each fold, updated for the unfinished ones
+     * @param finished finished folds, updated after the iteration
+     * @return true if all the folds are finished
+     */
+    private static boolean trainIteration(ExecutorService executor, List<LGBMBooster> boosters, double[][] evals, boolean[] finished) throws LGBMException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int fold = 0; fold < boosters.size(); fold++) {
+            if (!finished[fold]) {
+                LGBMBooster booster = boosters.get(fold);
+                int index = fold;
+                futures.add(executor.submit(() -> {
+                    finished[index] = booster.updateOneIter();
+                    evals[index] = booster.getEval(1);
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LGBMException("cross-validation was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LGBMException) {
+                throw (LGBMException) e.getCause();
+            } else {
+                throw new LGBMException("cross-validation fold failed: " + e.getCause());
+            }
+        }
+        for (boolean done : finished) {
+            if (!done) return false;
+        }
+        return true;
+    }
+
+    private static double[] mean(double[][] evals, int metrics) {
+        double[] result = new double[metrics];
+        for (double[] fold : evals) {
+            for (int i = 0; i < metrics; i++) result[i] += fold[i];
+        }
+        for (int i = 0; i < metrics; i++) result[i] /= evals.length;
+        return result;
+    }
+
+    private static double[] stdev(double[][] evals, double[] mean) {
+        double[] result = new double[mean.length];
+        for (double[] fold : evals) {
+            for (int i = 0; i < mean.length; i++) result[i] += (fold[i] - mean[i]) * (fold[i] - mean[i]);
+        }
+        for (int i = 0; i < mean.length; i++) result[i] = Math.sqrt(result[i] / evals.length);
+        return result;
+    }
+
+    /**
+     * Same rule as the LightGBM python package uses for early stopping.
+     */
+    static boolean isHigherBetter(String metric) {
+        return metric.startsWith("auc") || metric.startsWith("ndcg@") || metric.startsWith("map@") || metric.startsWith("average_precision");
+    }
+
+    /**
+     * Replace all thread count parameters with an explicit num_threads.
+     */
+    static String withThreads(String parameters, int numThreads) {
+        StringBuilder result = new StringBuilder();
+        for (String token : parameters.trim().split("\\s+")) {
+            int split = token.indexOf('=');
+            String name = split < 0 ? token : token.substring(0, split);
+            if (!token.isEmpty() && !THREAD_PARAMETERS.contains(name)) {
+                result.append(token).append(' ');
+            }
+        }
+        return result.append("num_threads=").append(numThreads).toString();
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.metarank.lightgbm4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * K-fold cross-validation splits of a single constructed dataset. Train and validation datasets of each fold are
+ * subsets of the source dataset (see LGBMDataset.subset), so they share its bin mappers and nothing is re-binned:
+ * <pre>
+ *     try (CrossValidator cv = CrossValidator.create(dataset, 5, 42L, "")) {
+ *         for (CrossValidator.Fold fold : cv.getFolds()) {
+ *             LGBMBooster booster = LGBMBooster.create(fold.train, "objective=binary");
+ *             booster.addValidData(fold.valid);
+ *             ...
+ *         }
+ *     }
+ * </pre>
+ *
+ * For ranking datasets with query groups, whole queries are assigned to folds, so a query is never split between
+ * the train and validation parts.
+ */
+public class CrossValidator implements AutoCloseable {
+    private final List<Fold> folds;
+
+    CrossValidator(List<Fold> folds) {
+        this.folds = folds;
+    }
+
+    /**
+     * A single cross-validation fold.
+     */
+    public static class Fold implements AutoCloseable {
+        public final int index;
+        public final int[] trainRows;
+        public final int[] validRows;
+        public final LGBMDataset train;
+        public final LGBMDataset valid;
+
+        Fold(int index, int[] trainRows, int[] validRows, LGBMDataset train, LGBMDataset valid) {
+            this.index = index;
+            this.trainRows = trainRows;
+            this.validRows = validRows;
+            this.train = train;
+            this.valid = valid;
+        }
+
+        @Override
+        public void close() throws LGBMException {
+            train.close();
+            valid.close();
+        }
+    }
+
+    /**
+     * Split the dataset into folds. Rows (or queries, if the dataset has query groups) are shuffled and assigned to folds
+     * round-robin, so fold sizes differ by at most one row (query).
+     *
+     * @param dataset    source dataset, which should stay open while folds are used
+     * @param numFolds   number of folds
+     * @param seed       shuffling seed
+     * @param parameters dataset parameters for subsets
+     * @return folds
+     * @throws LGBMException
+     */
+    public static CrossValidator create(LGBMDataset dataset, int numFolds, long seed, String parameters) throws LGBMException {
+        int numData = dataset.getNumData();
+        int[] boundaries = dataset.getQueryBoundaries();
+        int[][] validRows = boundaries == null ? splitRows(numData, numFolds, seed) : splitGroups(boundaries, numFolds, seed);
+        List<Fold> folds = new ArrayList<>();
+        try {
+            for (int fold = 0; fold < numFolds; fold++) {
+                int[] trainRows = complement(validRows[fold], numData);
+                LGBMDataset train = dataset.subset(trainRows, parameters);
+                LGBMDataset valid;
+                try {
+                    valid = dataset.subset(validRows[fold], parameters);
+                } catch (LGBMException e) {
+                    train.close();
+                    throw e;
+                }
+                folds.add(new Fold(fold, trainRows, validRows[fold], train, valid));
+            }
+        } catch (LGBMException e) {
+            for (Fold fold : folds) fold.close();
+            throw e;
+        }
+        return new CrossValidator(Collections.unmodifiableList(folds));
+    }
+
+    /**
+     * Assign shuffled rows to folds.
+     *
+     * @return sorted validation rows for each fold
+     */
+    static int[][] splitRows(int numRows, int numFolds, long seed) throws LGBMException {
+        checkFolds(numRows, numFolds, "rows");
+        int[] order = shuffle(numRows, seed);
+        int[][] result = new int[numFolds][];
+        for (int fold = 0; fold < numFolds; fold++) {
+            int[] rows = new int[(numRows - fold + numFolds - 1) / numFolds];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = order[fold + i * numFolds];
+            }
+            Arrays.sort(rows);
+            result[fold] = rows;
+        }
+        return result;
+    }
+
+    /**
+     * Assign shuffled queries to folds, with all their rows.
+     *
+     * @param boundaries query boundaries, numQueries + 1 row offsets
+     * @return sorted validation rows for each fold
+     */
+    static int[][] splitGroups(int[] boundaries, int numFolds, long seed) throws LGBMException {
+        int numQueries = boundaries.length - 1;
+        checkFolds(numQueries, numFolds, "queries");
+        int[] order = shuffle(numQueries, seed);
+        int[][] result = new int[numFolds][];
+        for (int fold = 0; fold < numFolds; fold++) {
+            int size = 0;
+            for (int i = fold; i < numQueries; i += numFolds) {
+                size += boundaries[order[i] + 1] - boundaries[order[i]];
+            }
+            int[] rows = new int[size];
+            int pos = 0;
+            for (int i = fold; i < numQueries; i += numFolds) {
+                for (int row = boundaries[order[i]]; row < boundaries[order[i] + 1]; row++) {
+                    rows[pos++] = row;
+                }
+            }
+            Arrays.sort(rows);
+            result[fold] = rows;
+        }
+        return result;
+    }
+
+    /**
+     * @return all the rows from 0 to numRows, which are not in the sorted exclude array
+     */
+    static int[] complement(int[] exclude, int numRows) {
+        int[] result = new int[numRows - exclude.length];
+        int pos = 0;
+        int next = 0;
+        for (int row = 0; row < numRows; row++) {
+            if ((next < exclude.length) && (exclude[next] == row)) {
+                next++;
+            } else {
+                result[pos++] = row;
+            }
+        }
+        return result;
+    }
+
+    private static void checkFolds(int size, int numFolds, String unit) throws LGBMException {
+        if (numFolds < 2) {
+            throw new LGBMException("there should be at least 2 folds, but got " + numFolds);
+        }
+        if (size < numFolds) {
+            throw new LGBMException("cannot split " + size + " " + unit + " into " + numFolds + " folds");
+        }
+    }
+
+    private static int[] shuffle(int size, long seed) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Random random = new Random(seed);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * @return folds, in the order of their indices
+     */
+    public List<Fold> getFolds() {
+        return folds;
+    }
+
+    /**
+     * Close train and validation datasets of all the folds. The source dataset is not closed.
+     *
+     * @throws LGBMException
+     */
+    @Override
+    public void close() throws LGBMException {
+        for (Fold fold : folds) {
+            fold.close();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.metarank.lightgbm4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A content-addressed on-disk cache of constructed datasets in the LightGBM binary format. Loading a cached binary
+ * file skips parsing and binning, which usually dominates the dataset construction time for large inputs.
+ *
+ * Cache key is a SHA-256 hash of the source data and the parameters, which may affect the dataset construction. Training-only
+ * parameters (like learning_rate or num_leaves) are not part of the key, so multiple hyperparameter trials over the
+ * same data share a single cached dataset. Unknown parameters are always treated as dataset-affecting.
+ * <pre>
+ *     DatasetCache cache = new DatasetCache(new File("/tmp/lgbm-cache"));
+ *     LGBMDataset dataset = cache.createFromFile(new File("train.csv"), "header=true max_bin=255");
+ * </pre>
+ *
+ * Binary files are written to a temporary file first and atomically renamed, so concurrent processes
+ * sharing the same cache directory never see a partially written file.
+ */
+public class DatasetCache {
+    // bump on incompatible changes of the key format
+    static final String KEY_VERSION = "lightgbm4j-dataset-cache-v1";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // metadata files LightGBM loads along with a text dataset file, if they exist
+    static final List<String> SIDECAR_SUFFIXES = Arrays.asList(".query", ".weight", ".init");
+
+    // parameters (with aliases), which do not affect the constructed dataset
+    static final Set<String> TRAINING_PARAMETERS = new HashSet<>(Arrays.asList(
+            "task", "objective", "objective_type", "app", "application", "loss",
+            "boosting", "boosting_type", "boost",
+            "num_iterations", "num_iteration", "n_iter", "num_tree", "num_trees", "num_round", "num_rounds", "nrounds", "num_boost_round", "n_estimators", "max_iter",
+            "learning_rate", "shrinkage_rate", "eta",
+            "num_leaves", "num_leaf", "max_leaves", "max_leaf", "max_leaf_nodes",
+            "tree_learner", "tree", "tree_type", "tree_learner_type",
+            "num_threads", "num_thread", "nthread", "nthreads", "n_jobs",
+            "device_type", "device", "deterministic", "force_col_wise", "force_row_wise",
+            "max_depth", "min_sum_hessian_in_leaf", "min_sum_hessian_per_leaf", "min_sum_hessian", "min_hessian", "min_child_weight",
+            "bagging_fraction", "sub_row", "subsample", "bagging", "bagging_freq", "subsample_freq", "bagging_seed", "bagging_fraction_seed",
+            "pos_bagging_fraction", "neg_bagging_fraction",
+            "feature_fraction", "sub_feature", "colsample_bytree", "feature_fraction_bynode", "sub_feature_bynode", "colsample_bynode",
+            "feature_fraction_seed", "extra_trees", "extra_tree", "extra_seed",
+            "early_stopping_round", "early_stopping_rounds", "early_stopping", "n_iter_no_change", "first_metric_only",
+            "max_delta_step", "max_tree_output", "max_leaf_output",
+            "lambda_l1", "reg_alpha", "l1_regularization", "lambda_l2", "reg_lambda", "lambda", "l2_regularization",
+            "min_gain_to_split", "min_split_gain", "drop_rate", "rate_drop", "max_drop", "skip_drop", "xgboost_dart_mode",
+            "uniform_drop", "drop_seed", "top_rate", "other_rate", "min_data_per_group", "max_cat_threshold",
+            "cat_l2", "cat_smooth", "max_cat_to_onehot", "top_k", "topk", "path_smooth",
+            "metric", "metrics", "metric_types", "metric_freq", "output_freq", "is_provide_training_metric",
+            "training_metric", "is_training_metric", "train_metric", "eval_at", "ndcg_eval_at", "ndcg_at", "map_eval_at", "map_at",
+            "verbosity", "verbose", "num_class", "num_classes", "is_unbalance", "unbalance", "unbalanced_sets", "scale_pos_weight",
+            "sigmoid", "boost_from_average", "reg_sqrt", "alpha", "fair_c", "poisson_max_delta_step", "tweedie_variance_power",
+            "lambdarank_truncation_level", "lambdarank_norm", "label_gain", "objective_seed",
+            "lambdarank_position_bias_regularization",
+            "output_model", "model_output", "model_out", "input_model", "model_input", "model_in",
+            "snapshot_freq", "save_period", "saved_feature_importance_type", "use_quantized_grad", "num_grad_quant_bins",
+            "quant_train_renew_leaf", "stochastic_rounding"
+    ));
+
+    private final File directory;
+
+    /**
+     * @param directory cache directory, created if missing
+     */
+    public DatasetCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load a dataset from a text file (as LGBMDataset.createFromFile does), using the cached binary if possible.
+     * The source key includes query, weight and init score files next to the source (like train.csv.weight), as
+     * LightGBM loads them too.
+     *
+     * @param source     source file, supported by LGBMDataset.createFromFile
+     * @param parameters dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     * @throws IOException
+     */
+    public LGBMDataset createFromFile(File source, String parameters) throws LGBMException, IOException {
+        return getOrCreate(sourceKey(source), parameters, () -> LGBMDataset.createFromFile(source.getPath(), parameters, null));
+    }
+
+    /**
+     * Load a cached dataset, or construct it with the factory and store it in the cache. All the fields (like labels and
+     * weights) should be set by the factory, so they are included into the cached binary.
+     *
+     * @param sourceKey  a unique identifier of the source data, like a content hash
+     * @param parameters dataset parameters
+     * @param factory    dataset constructor, called on cache miss
+     * @return dataset
+     * @throws LGBMException
+     * @throws IOException
+     */
+    public LGBMDataset getOrCreate(String sourceKey, String parameters, DatasetFactory factory) throws LGBMException, IOException {
+        File cached = file(key(sourceKey, parameters));
+        if (cached.exists()) {
+            return LGBMDataset.createFromFile(cached.getPath(), parameters, null);
+        } else {
+            LGBMDataset dataset = factory.create();
+            try {
+                store(dataset, cached);
+            } catch (LGBMException | IOException | RuntimeException e) {
+                dataset.close();
+                throw e;
+            }
+            return dataset;
+        }
+    }
+
+    /**
+     * @return cached binary file for the key
+     */
+    public File file(String key) {
+        return new File(directory, key + ".bin");
+    }
+
+    /**
+     * A cache key for the source data and parameters: training-only parameters are ignored, and the rest
+     * are sorted, so the key does not depend on their order.
+     *
+     * @param sourceKey  a unique identifier of the source data
+     * @param parameters dataset parameters
+     * @return hex-encoded SHA-256 hash
+     */
+    public static String key(String sourceKey, String parameters) {
+        MessageDigest digest = sha256();
+        digest.update(KEY_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(sourceKey.getBytes(StandardCharsets.UTF_8));
+        for (String parameter : datasetParameters(parameters)) {
+            digest.update((byte) '\n');
+            digest.update(parameter.getBytes(StandardCharsets.UTF_8));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @param file source file
+     * @return hex-encoded SHA-256 hash of the file contents
+     * @throws IOException
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @param source source file
+     * @return hash of the source file, and of its existing .query, .weight and .init files
+     * @throws IOException
+     */
+    static String sourceKey(File source) throws IOException {
+        StringBuilder result = new StringBuilder(hash(source));
+        for (String suffix : SIDECAR_SUFFIXES) {
+            File sidecar = new File(source.getPath() + suffix);
+            if (sidecar.isFile()) {
+                result.append(' ').append(suffix).append('=').append(hash(sidecar));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return sorted key=value parameters, which may affect the dataset
+     */
+    static List<String> datasetParameters(String parameters) {
+        List<String> result = new ArrayList<>();
+        for (String token : parameters.trim().split("\\s+")) {
+            if (!token.isEmpty()) {
+                int split = token.indexOf('=');
+                String name = (split < 0 ? token : token.substring(0, split)).trim();
+                if (!TRAINING_PARAMETERS.contains(name)) {
+                    result.add(token);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private void store(LGBMDataset dataset, File cached) throws LGBMException, IOException {
+        Files.createDirectories(directory.toPath());
+        // LightGBM refuses to overwrite existing files, so the temp file should not exist yet
+        Path temp = new File(directory, cached.getName() + "." + UUID.randomUUID() + ".tmp").toPath();
+        try {
+            dataset.saveBinary(temp.toString());
+            if (!Files.exists(temp)) {
+                throw new IOException("cannot save dataset binary to " + temp);
+            }
+            Files.move(temp, cached.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Constructs a dataset on a cache miss.
+     */
+    @FunctionalInterface
+    public interface DatasetFactory {
+        LGBMDataset create() throws LGBMException;
+    }
+}
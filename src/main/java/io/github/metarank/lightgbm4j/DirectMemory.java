@@ -0,0 +1,177 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.SWIGTYPE_p_void;
+
+import java.nio.*;
+
+/**
+ * Raw memory helpers to move data between java arrays, direct NIO buffers and LightGBM native memory without
+ * doing a separate JNI call (like floatArray_setitem) for each element. See MemoryAccess for JDK requirements.
+ */
+final class DirectMemory {
+    // all the JDK-specific memory access is isolated there
+    private static final MemoryAccess ACCESS = MemoryAccess.load();
+
+    private DirectMemory() {
+    }
+
+    /**
+     * Native address of the SWIG pointer wrapper.
+     */
+    static long pointer(SWIGTYPE_p_void ptr) {
+        return SWIGTYPE_p_void.getCPtr(ptr);
+    }
+
+    /**
+     * Wrap a raw native address (like a handle returned by LightGBM into an out-pointer slot) into a SWIG pointer.
+     */
+    static SWIGTYPE_p_void wrap(long address) {
+        return new NativePointer(address);
+    }
+
+    private static class NativePointer extends SWIGTYPE_p_void {
+        NativePointer(long address) {
+            super(address, false);
+        }
+    }
+
+    /**
+     * Native address of the first element after the current position of the buffer.
+     *
+     * @param buffer   direct buffer in a native byte order
+     * @param required number of elements after the position LightGBM is going to access
+     * @return address
+     * @throws LGBMException when buffer is not direct, has non-native byte order or is too small
+     */
+    static long address(FloatBuffer buffer, long required) throws LGBMException {
+        checkBuffer(buffer, buffer.order(), required);
+        return address(buffer) + (long) buffer.position() * Float.BYTES;
+    }
+
+    /**
+     * Native address of the first element after the current position of the buffer.
+     *
+     * @param buffer   direct buffer in a native byte order
+     * @param required number of elements after the position LightGBM is going to access
+     * @return address
+     * @throws LGBMException when buffer is not direct, has non-native byte order or is too small
+     */
+    static long address(DoubleBuffer buffer, long required) throws LGBMException {
+        checkBuffer(buffer, buffer.order(), required);
+        return address(buffer) + (long) buffer.position() * Double.BYTES;
+    }
+
+    /**
+     * Native address of the first element after the current position of the buffer.
+     *
+     * @param buffer   direct buffer in a native byte order
+     * @param required number of elements after the position LightGBM is going to access
+     * @return address
+     * @throws LGBMException when buffer is not direct, has non-native byte order or is too small
+     */
+    static long address(IntBuffer buffer, long required) throws LGBMException {
+        checkBuffer(buffer, buffer.order(), required);
+        return address(buffer) + (long) buffer.position() * Integer.BYTES;
+    }
+
+    /**
+     * Native address of the first byte of a direct buffer, ignoring its position.
+     */
+    static long address(ByteBuffer buffer) throws LGBMException {
+        return address((Buffer) buffer);
+    }
+
+    static long getLong(long address) {
+        return ACCESS.getLong(address);
+    }
+
+    static double getDouble(long address) {
+        return ACCESS.getDouble(address);
+    }
+
+    static int getInt(long address) {
+        return ACCESS.getInt(address);
+    }
+
+    static byte getByte(long address) {
+        return ACCESS.getByte(address);
+    }
+
+    static void putLong(long address, long value) {
+        ACCESS.putLong(address, value);
+    }
+
+    static void putInt(long address, int value) {
+        ACCESS.putInt(address, value);
+    }
+
+    /**
+     * Allocate an off-heap region, which is not limited by the 2Gb direct buffer size. Should be released with free().
+     */
+    static long allocate(long bytes) {
+        return ACCESS.allocate(Math.max(bytes, 1));
+    }
+
+    static void free(long address) {
+        ACCESS.free(address);
+    }
+
+    private static long address(Buffer buffer) throws LGBMException {
+        return ACCESS.bufferAddress(buffer);
+    }
+
+    private static void checkBuffer(Buffer buffer, ByteOrder order, long required) throws LGBMException {
+        if (!buffer.isDirect()) {
+            throw new LGBMException("buffer should be direct, but got a heap one");
+        }
+        if (order != ByteOrder.nativeOrder()) {
+            throw new LGBMException("buffer should have native byte order " + ByteOrder.nativeOrder() + ", but got " + order);
+        }
+        if (buffer.remaining() < required) {
+            throw new LGBMException("buffer has " + buffer.remaining() + " elements remaining, but at least " + required + " are needed");
+        }
+    }
+
+    static void copy(float[] src, int srcOffset, long dstAddress, int length) {
+        ACCESS.copy(src, srcOffset, dstAddress, length);
+    }
+
+    static void copy(double[] src, int srcOffset, long dstAddress, int length) {
+        ACCESS.copy(src, srcOffset, dstAddress, length);
+    }
+
+    static void copy(int[] src, int srcOffset, long dstAddress, int length) {
+        ACCESS.copy(src, srcOffset, dstAddress, length);
+    }
+
+    static void copy(long[] src, int srcOffset, long dstAddress, int length) {
+        ACCESS.copy(src, srcOffset, dstAddress, length);
+    }
+
+    static void copy(byte[] src, int srcOffset, long dstAddress, int length) {
+        ACCESS.copy(src, srcOffset, dstAddress, length);
+    }
+
+    static void copy(long srcAddress, long dstAddress, long bytes) {
+        ACCESS.copy(srcAddress, dstAddress, bytes);
+    }
+
+    static void copy(long srcAddress, double[] dst, int dstOffset, int length) {
+        ACCESS.copy(srcAddress, dst, dstOffset, length);
+    }
+
+    static void copy(long srcAddress, int[] dst, int dstOffset, int length) {
+        ACCESS.copy(srcAddress, dst, dstOffset, length);
+    }
+
+    static void copy(long srcAddress, byte[] dst, int dstOffset, int length) {
+        ACCESS.copy(srcAddress, dst, dstOffset, length);
+    }
+
+    /**
+     * @return true if memory is accessed with sun.misc.Unsafe, false for the slow fallback
+     */
+    static boolean isUnsafe() {
+        return ACCESS.isUnsafe();
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.metarank.lightgbm4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Composes a dataset column-wise from independently constructed feature group datasets with the same row order.
+ * Each group is binned separately, so when a single group changes only that group has to be rebuilt (and it can
+ * be cached with DatasetCache, for example):
+ * <pre>
+ *     LGBMDataset dataset = new FeatureGroupDatasetBuilder()
+ *             .add(userFeatures) // labels and other metadata are taken from the first group
+ *             .add(itemFeatures)
+ *             .add(textFeatures)
+ *             .build();
+ * </pre>
+ *
+ * Group datasets are not modified: the first group is copied, and features of the other groups are appended to the copy.
+ * So groups can be reused for multiple compositions, and should be closed by the caller.
+ */
+public class FeatureGroupDatasetBuilder {
+    private final List<LGBMDataset> groups = new ArrayList<>();
+
+    /**
+     * Add the next feature group. Its features are placed after the features of all the previously added groups.
+     *
+     * @param group constructed dataset
+     * @return this builder
+     */
+    public FeatureGroupDatasetBuilder add(LGBMDataset group) {
+        groups.add(group);
+        return this;
+    }
+
+    /**
+     * Compose the dataset with default parameters.
+     *
+     * @return dataset, which should be closed by the caller
+     * @throws LGBMException
+     */
+    public LGBMDataset build() throws LGBMException {
+        return build("");
+    }
+
+    /**
+     * Compose the dataset.
+     *
+     * @param parameters dataset parameters for the copy of the first group
+     * @return dataset, which should be closed by the caller
+     * @throws LGBMException
+     */
+    public LGBMDataset build(String parameters) throws LGBMException {
+        if (groups.isEmpty()) {
+            throw new LGBMException("there should be at least one feature group");
+        }
+        LGBMDataset first = groups.get(0);
+        int numData = first.getNumData();
+        for (int i = 1; i < groups.size(); i++) {
+            int groupData = groups.get(i).getNumData();
+            if (groupData != numData) {
+                throw new LGBMException("all feature groups should have " + numData + " rows, but group " + i + " has " + groupData);
+            }
+        }
+        int[] allRows = new int[numData];
+        for (int i = 0; i < numData; i++) allRows[i] = i;
+        // a copy sharing bin mappers, so the first group is not modified by addFeaturesFrom
+        LGBMDataset result = first.subset(allRows, parameters);
+        try {
+            for (int i = 1; i < groups.size(); i++) {
+                result.addFeaturesFrom(groups.get(i));
+            }
+        } catch (LGBMException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+}
@@ -6,15 +6,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.microsoft.ml.lightgbm.lightgbmlib.*;
 
 public class LGBMBooster implements AutoCloseable {
-    private int iterations;
+    // volatile, as predictor pools on other threads compare it with iterations of their configs
+    private volatile int iterations;
     private SWIGTYPE_p_p_void handle;
+    // raw BoosterHandle, so hot paths can call lightgbmlibJNI directly without allocating SWIG wrappers
+    private final long handleAddress;
 
     private static final long MODEL_SAVE_BUFFER_SIZE = 10 * 1024 * 1024L;
     private static final long EVAL_RESULTS_BUFFER_SIZE = 1024;
@@ -24,6 +32,15 @@ public class LGBMBooster implements AutoCloseable {
 
     private volatile boolean isClosed = false;
 
+    // predictor pools hold native FastConfigs, which should be freed before the booster itself
+    private final List<BoosterPredictorPool> pools = new CopyOnWriteArrayList<>();
+    // micro-batch scorers call predictForMat from their flusher threads, so they are drained before the booster is freed
+    private final List<MicroBatchScorer> scorers = new CopyOnWriteArrayList<>();
+
+    // native copy of custom gradients and hessians, reused between iterations and freed on close
+    private long gradients = 0L;
+    private long gradientsBytes = 0L;
+
     static {
         try {
             LGBMBooster.loadNative();
@@ -209,6 +226,38 @@ public class LGBMBooster implements AutoCloseable {
     LGBMBooster(int iterations, SWIGTYPE_p_p_void handle) {
         this.iterations = iterations;
         this.handle = handle;
+        this.handleAddress = DirectMemory.pointer(voidpp_value(handle));
+    }
+
+    /**
+     * @return number of iterations, used for predictions
+     */
+    int getIterations() {
+        return iterations;
+    }
+
+    void registerPool(BoosterPredictorPool pool) throws LGBMException {
+        if (!isClosed) {
+            pools.add(pool);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    void unregisterPool(BoosterPredictorPool pool) {
+        pools.remove(pool);
+    }
+
+    void registerScorer(MicroBatchScorer scorer) throws LGBMException {
+        if (!isClosed) {
+            scorers.add(scorer);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    void unregisterScorer(MicroBatchScorer scorer) {
+        scorers.remove(scorer);
     }
 
     /**
@@ -252,14 +301,25 @@ public class LGBMBooster implements AutoCloseable {
     }
 
     /**
-     * Deallocate all native memory for the LightGBM model.
+     * Deallocate all native memory for the LightGBM model. Micro-batch scorers (after flushing their queued rows) and
+     * predictor pools of this booster are closed first.
      *
      * @throws LGBMException
      */
     @Override
     public void close() throws LGBMException {
         if (!isClosed) {
+            for (MicroBatchScorer scorer : scorers) {
+                scorer.close();
+            }
+            for (BoosterPredictorPool pool : pools) {
+                pool.close();
+            }
             isClosed = true;
+            if (gradients != 0L) {
+                DirectMemory.free(gradients);
+                gradients = 0L;
+            }
             int result = LGBM_BoosterFree(voidpp_value(handle));
             if (result < 0) {
                 throw new LGBMException(LGBM_GetLastError());
@@ -283,41 +343,17 @@ public class LGBMBooster implements AutoCloseable {
      */
     public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_float dataBuffer = new_floatArray(input.length);
-            for (int i = 0; i < input.length; i++) {
-                floatArray_setitem(dataBuffer, i, input[i]);
-            }
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outSize = outBufferSize(rows, cols, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outSize);
-            int result = LGBM_BoosterPredictForMat(
-                    voidpp_value(handle),
-                    float_to_voidp_ptr(dataBuffer),
-                    C_API_DTYPE_FLOAT32,
-                    rows,
-                    cols,
-                    isRowMajor ? 1 : 0,
-                    predictionType.getType(),
-                    0,
-                    iterations,
-                    parameter,
-                    outLength,
-                    outBuffer);
-            if (result < 0) {
-                delete_floatArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                long length = int64_tp_value(outLength);
+            long inputBytes = checkInput(input.length, rows, cols) * Float.BYTES;
+            long size = calcNumPredict(rows, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                long length = predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT32, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress(base, inputBytes));
                 double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_floatArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
+                DirectMemory.copy(outputAddress(base, inputBytes), values, 0, values.length);
                 return values;
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
@@ -343,41 +379,17 @@ public class LGBMBooster implements AutoCloseable {
 
     public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_double dataBuffer = new_doubleArray(input.length);
-            for (int i = 0; i < input.length; i++) {
-                doubleArray_setitem(dataBuffer, i, input[i]);
-            }
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outSize = outBufferSize(rows, cols, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outSize);
-            int result = LGBM_BoosterPredictForMat(
-                    voidpp_value(handle),
-                    double_to_voidp_ptr(dataBuffer),
-                    C_API_DTYPE_FLOAT64,
-                    rows,
-                    cols,
-                    isRowMajor ? 1 : 0,
-                    predictionType.getType(),
-                    0,
-                    iterations,
-                    parameter,
-                    outLength,
-                    outBuffer);
-            if (result < 0) {
-                delete_doubleArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                long length = int64_tp_value(outLength);
+            long inputBytes = checkInput(input.length, rows, cols) * Double.BYTES;
+            long size = calcNumPredict(rows, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                long length = predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT64, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress(base, inputBytes));
                 double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_doubleArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
+                DirectMemory.copy(outputAddress(base, inputBytes), values, 0, values.length);
                 return values;
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
@@ -388,262 +400,983 @@ public class LGBMBooster implements AutoCloseable {
     }
 
     /**
-     * Create a new boosting learner.
+     * Make prediction for a new float[] dataset, writing predictions into a caller-provided array. Native buffers
+     * are taken from a per-thread scratch arena and are exactly sized with calcNumPredict, so in a steady state
+     * this method does no allocations at all.
      *
-     * @param dataset    a LGBMDataset with the training data.
-     * @param parameters Parameters in format ‘key1=value1 key2=value2’
-     * @return
+     * @param input          input matrix, as a 1D array. Size should be rows * cols.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         output array, should have at least calcNumPredict(rows, predictionType) elements after the offset
+     * @param offset         offset in the output array
+     * @return number of predicted values written
      * @throws LGBMException
      */
-    public static LGBMBooster create(LGBMDataset dataset, String parameters) throws LGBMException {
-        SWIGTYPE_p_p_void handle = new_voidpp();
-        int result = LGBM_BoosterCreate(dataset.handle, parameters, handle);
-        if (result < 0) {
-            throw new LGBMException(LGBM_GetLastError());
+    public long predictInto(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, double[] output, int offset) throws LGBMException {
+        if (!isClosed) {
+            long inputBytes = checkInput(input.length, rows, cols) * Float.BYTES;
+            long size = checkOutput(output.length, offset, rows, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                long length = predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT32, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress(base, inputBytes));
+                DirectMemory.copy(outputAddress(base, inputBytes), output, offset, (int) length);
+                return length;
+            } finally {
+                ScratchArena.release(base);
+            }
         } else {
-            return new LGBMBooster(0, handle);
+            throw new LGBMException("Booster was already closed");
         }
     }
 
+    public long predictInto(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, double[] output, int offset) throws LGBMException {
+        return predictInto(input, rows, cols, isRowMajor, predictionType, "", output, offset);
+    }
+
     /**
-     * Update the model for one iteration.
+     * Make prediction for a new double[] dataset, writing predictions into a caller-provided array. Native buffers
+     * are taken from a per-thread scratch arena and are exactly sized with calcNumPredict, so in a steady state
+     * this method does no allocations at all.
      *
-     * @return true if there are no more splits possible, so training is finished.
+     * @param input          input matrix, as a 1D array. Size should be rows * cols.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         output array, should have at least calcNumPredict(rows, predictionType) elements after the offset
+     * @param offset         offset in the output array
+     * @return number of predicted values written
      * @throws LGBMException
      */
-    public boolean updateOneIter() throws LGBMException {
+    public long predictInto(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, double[] output, int offset) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_int isFinishedP = new_intp();
-            int result = LGBM_BoosterUpdateOneIter(voidpp_value(handle), isFinishedP);
-            iterations++;
-            if (result < 0) {
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                int isFinished = intp_value(isFinishedP);
-                delete_intp(isFinishedP);
-                return isFinished == 1;
+            long inputBytes = checkInput(input.length, rows, cols) * Double.BYTES;
+            long size = checkOutput(output.length, offset, rows, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                long length = predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT64, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress(base, inputBytes));
+                DirectMemory.copy(outputAddress(base, inputBytes), output, offset, (int) length);
+                return length;
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
-    public enum FeatureImportanceType {
-        SPLIT,
-        GAIN
+    public long predictInto(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, double[] output, int offset) throws LGBMException {
+        return predictInto(input, rows, cols, isRowMajor, predictionType, "", output, offset);
     }
 
-
     /**
-     * Save model to string.
+     * Make prediction for a new float[] dataset, writing predictions directly into a caller-provided direct buffer.
+     * The buffer must use the native byte order, predictions are written starting from its current position, which
+     * is not modified.
      *
-     * @param startIteration    Start index of the iteration that should be saved
-     * @param numIteration      Index of the iteration that should be saved, 0 and negative means save all
-     * @param featureImportance Type of feature importance, can be FeatureImportanceType.SPLIT or FeatureImportanceType.GAIN
-     * @return
+     * @param input          input matrix, as a 1D array. Size should be rows * cols.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         direct output buffer, should have at least calcNumPredict(rows, predictionType) elements remaining
+     * @return number of predicted values written
+     * @throws LGBMException
      */
-    public String saveModelToString(int startIteration, int numIteration, FeatureImportanceType featureImportance) throws LGBMException {
+    public long predictInto(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            String result = LGBM_BoosterSaveModelToStringSWIG(
-                    voidpp_value(handle),
-                    startIteration,
-                    numIteration,
-                    importanceType(featureImportance),
-                    MODEL_SAVE_BUFFER_SIZE,
-                    outLength
-            );
-            delete_int64_tp(outLength);
-            return result;
+            long inputBytes = checkInput(input.length, rows, cols) * Float.BYTES;
+            long outputAddress = DirectMemory.address(output, calcNumPredict(rows, predictionType));
+            long base = ScratchArena.acquire(scratchSize(inputBytes, 0));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                return predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT32, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress);
+            } finally {
+                ScratchArena.release(base);
+            }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public long predictInto(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictInto(input, rows, cols, isRowMajor, predictionType, "", output);
+    }
+
     /**
-     * Get names of features.
+     * Make prediction for a new double[] dataset, writing predictions directly into a caller-provided direct buffer.
+     * The buffer must use the native byte order, predictions are written starting from its current position, which
+     * is not modified.
      *
-     * @return a list of feature names.
+     * @param input          input matrix, as a 1D array. Size should be rows * cols.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         direct output buffer, should have at least calcNumPredict(rows, predictionType) elements remaining
+     * @return number of predicted values written
+     * @throws LGBMException
      */
-    public String[] getFeatureNames() throws LGBMException {
+    public long predictInto(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_void buffer = LGBM_BoosterGetFeatureNamesSWIG(voidpp_value(handle));
-            String[] result = StringArrayHandle_get_strings(buffer);
-            StringArrayHandle_free(buffer);
-            return result;
+            long inputBytes = checkInput(input.length, rows, cols) * Double.BYTES;
+            long outputAddress = DirectMemory.address(output, calcNumPredict(rows, predictionType));
+            long base = ScratchArena.acquire(scratchSize(inputBytes, 0));
+            try {
+                DirectMemory.copy(input, 0, base + Long.BYTES, rows * cols);
+                return predictForMat(base + Long.BYTES, C_API_DTYPE_FLOAT64, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress);
+            } finally {
+                ScratchArena.release(base);
+            }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public long predictInto(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictInto(input, rows, cols, isRowMajor, predictionType, "", output);
+    }
+
     /**
-     * Add new validation data to booster.
+     * Make prediction for a new float dataset stored in a direct buffer. The native buffer addresses are passed
+     * to LightGBM as-is, so there is no element-wise copying on both input and output sides.
      *
-     * @param dataset dataset to validate
+     * Both buffers must be direct and use the native byte order (so ByteBuffer.allocateDirect(n).order(ByteOrder.nativeOrder())).
+     * Input is read starting from its current position, predictions are written to the output starting from its
+     * current position. Positions of both buffers are not modified.
+     *
+     * @param input          input matrix, as a 1D buffer. Should have at least rows * cols elements remaining.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         buffer for predictions. Should have at least calcNumPredict(rows, predictionType) elements remaining.
+     * @return number of predicted values written to the output
      * @throws LGBMException
      */
-    public void addValidData(LGBMDataset dataset) throws LGBMException {
+    public long predictForMat(FloatBuffer input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
         if (!isClosed) {
-            int result = LGBM_BoosterAddValidData(voidpp_value(handle), dataset.handle);
-            if (result < 0) {
-                throw new LGBMException(LGBM_GetLastError());
-            }
+            long inputAddress = DirectMemory.address(input, (long) rows * cols);
+            return predictForMat(inputAddress, C_API_DTYPE_FLOAT32, rows, cols, isRowMajor, predictionType, parameter, output);
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public long predictForMat(FloatBuffer input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, predictionType, "", output);
+    }
+
     /**
-     * Get evaluation for training data and validation data.
+     * Make prediction for a new double dataset stored in a direct buffer. The native buffer addresses are passed
+     * to LightGBM as-is, so there is no element-wise copying on both input and output sides.
      *
-     * @param dataIndex Index of data, 0: training data, 1: 1st validation data, 2: 2nd validation data and so on
-     * @return
+     * Both buffers must be direct and use the native byte order (so ByteBuffer.allocateDirect(n).order(ByteOrder.nativeOrder())).
+     * Input is read starting from its current position, predictions are written to the output starting from its
+     * current position. Positions of both buffers are not modified.
+     *
+     * @param input          input matrix, as a 1D buffer. Should have at least rows * cols elements remaining.
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         buffer for predictions. Should have at least calcNumPredict(rows, predictionType) elements remaining.
+     * @return number of predicted values written to the output
      * @throws LGBMException
      */
-    public double[] getEval(int dataIndex) throws LGBMException {
+    public long predictForMat(DoubleBuffer input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_int outLength = new_int32_tp();
-            SWIGTYPE_p_double outBuffer = new_doubleArray(EVAL_RESULTS_BUFFER_SIZE);
-            int result = LGBM_BoosterGetEval(voidpp_value(handle), dataIndex, outLength, outBuffer);
-            if (result < 0) {
-                delete_intp(outLength);
-                delete_doubleArray(outBuffer);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                double[] evals = new double[intp_value(outLength)];
-                for (int i = 0; i < evals.length; i++) {
-                    evals[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_intp(outLength);
-                delete_doubleArray(outBuffer);
-                return evals;
-            }
+            long inputAddress = DirectMemory.address(input, (long) rows * cols);
+            return predictForMat(inputAddress, C_API_DTYPE_FLOAT64, rows, cols, isRowMajor, predictionType, parameter, output);
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public long predictForMat(DoubleBuffer input, int rows, int cols, boolean isRowMajor, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, predictionType, "", output);
+    }
+
+    private long predictForMat(long inputAddress, int dtype, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
+        long outputAddress = DirectMemory.address(output, calcNumPredict(rows, predictionType));
+        long base = ScratchArena.acquire(Long.BYTES);
+        try {
+            return predictForMat(inputAddress, dtype, rows, cols, isRowMajor, predictionType, parameter, base, outputAddress);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    private long predictForMat(long inputAddress, int dtype, int rows, int cols, boolean isRowMajor, PredictionType predictionType, String parameter, long outLengthAddress, long outputAddress) throws LGBMException {
+        int result = lightgbmlibJNI.LGBM_BoosterPredictForMat(
+                handleAddress,
+                inputAddress,
+                dtype,
+                rows,
+                cols,
+                isRowMajor ? 1 : 0,
+                predictionType.getType(),
+                0,
+                iterations,
+                parameter,
+                outLengthAddress,
+                outputAddress);
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return DirectMemory.getLong(outLengthAddress);
+        }
+    }
+
+    private long checkInput(int length, int rows, int cols) throws LGBMException {
+        long size = (long) rows * cols;
+        if (size > length) {
+            throw new LGBMException("input array has " + length + " elements, but " + rows + "x" + cols + " matrix was expected");
+        }
+        return size;
+    }
+
+    private long checkOutput(int length, int offset, int rows, PredictionType predictionType) throws LGBMException {
+        long size = calcNumPredict(rows, predictionType);
+        if ((offset < 0) || (length - offset < size)) {
+            throw new LGBMException("output array has " + (length - offset) + " elements after the offset, but " + size + " are needed");
+        }
+        return size;
+    }
+
     /**
-     * Get names of evaluation datasets.
+     * Scratch arena layout: out-length slot, input values, output values.
+     */
+    private static long scratchSize(long inputBytes, long outputSize) {
+        return Long.BYTES + ScratchArena.align(inputBytes) + outputSize * Double.BYTES;
+    }
+
+    private static long outputAddress(long base, long inputBytes) {
+        return base + Long.BYTES + ScratchArena.align(inputBytes);
+    }
+
+    /**
+     * Make prediction for a new sparse float dataset in a CSR format. Only non-zero values are copied to the native
+     * memory, so it is much cheaper than predictForMat for wide and sparse feature vectors.
      *
-     * @return array of eval dataset names.
+     * @param indptr         row offsets in the indices and values arrays, should have rows + 1 elements
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @return array of predictions
      * @throws LGBMException
      */
-    public String[] getEvalNames() throws LGBMException {
+    public double[] predictForCSR(int[] indptr, int[] indices, float[] values, long numCol, PredictionType predictionType, String parameter) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_void namesP = LGBM_BoosterGetEvalNamesSWIG(voidpp_value(handle));
-            String[] names = StringArrayHandle_get_strings(namesP);
-            StringArrayHandle_free(namesP);
-            return names;
+            int nelem = checkCSR(indptr, indices.length, values.length);
+            int rows = indptr.length - 1;
+            long valueBytes = (long) nelem * Float.BYTES;
+            long size = calcNumPredict(rows, predictionType);
+            long base = csrScratch(indptr.length, indices, nelem, valueBytes, size);
+            try {
+                long valuesAddress = csrValuesAddress(base, indptr.length, nelem);
+                long outputAddress = valuesAddress + ScratchArena.align(valueBytes);
+                DirectMemory.copy(indptr, 0, base + Long.BYTES, indptr.length);
+                DirectMemory.copy(values, 0, valuesAddress, nelem);
+                long length = predictForCSR(base + Long.BYTES, csrIndicesAddress(base, indptr.length), valuesAddress, C_API_DTYPE_FLOAT32, indptr.length, nelem, numCol, predictionType, parameter, base, outputAddress);
+                double[] result = new double[(int) length];
+                DirectMemory.copy(outputAddress, result, 0, result.length);
+                return result;
+            } finally {
+                ScratchArena.release(base);
+            }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public double[] predictForCSR(int[] indptr, int[] indices, float[] values, long numCol, PredictionType predictionType) throws LGBMException {
+        return predictForCSR(indptr, indices, values, numCol, predictionType, "");
+    }
+
     /**
-     * Get model feature importance.
+     * Make prediction for a new sparse double dataset in a CSR format. Only non-zero values are copied to the native
+     * memory, so it is much cheaper than predictForMat for wide and sparse feature vectors.
      *
-     * @param numIteration   Number of iterations for which feature importance is calculated, 0 or less means use all
-     * @param importanceType GAIN or SPLIT
-     * @return Result array with feature importance
+     * @param indptr         row offsets in the indices and values arrays, should have rows + 1 elements
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @return array of predictions
      * @throws LGBMException
      */
-    public double[] featureImportance(int numIteration, FeatureImportanceType importanceType) throws LGBMException {
+    public double[] predictForCSR(int[] indptr, int[] indices, double[] values, long numCol, PredictionType predictionType, String parameter) throws LGBMException {
         if (!isClosed) {
-            int numFeatures = getNumFeature();
-            SWIGTYPE_p_double outBuffer = new_doubleArray(numFeatures);
-            int result = LGBM_BoosterFeatureImportance(
-                    voidpp_value(handle),
-                    numIteration,
-                    importanceType(importanceType),
-                    outBuffer
-            );
-            if (result < 0) {
-                delete_doubleArray(outBuffer);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                double[] importance = new double[numFeatures];
-                for (int i = 0; i < numFeatures; i++) {
-                    importance[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_doubleArray(outBuffer);
-                return importance;
+            int nelem = checkCSR(indptr, indices.length, values.length);
+            int rows = indptr.length - 1;
+            long valueBytes = (long) nelem * Double.BYTES;
+            long size = calcNumPredict(rows, predictionType);
+            long base = csrScratch(indptr.length, indices, nelem, valueBytes, size);
+            try {
+                long valuesAddress = csrValuesAddress(base, indptr.length, nelem);
+                long outputAddress = valuesAddress + ScratchArena.align(valueBytes);
+                DirectMemory.copy(indptr, 0, base + Long.BYTES, indptr.length);
+                DirectMemory.copy(values, 0, valuesAddress, nelem);
+                long length = predictForCSR(base + Long.BYTES, csrIndicesAddress(base, indptr.length), valuesAddress, C_API_DTYPE_FLOAT64, indptr.length, nelem, numCol, predictionType, parameter, base, outputAddress);
+                double[] result = new double[(int) length];
+                DirectMemory.copy(outputAddress, result, 0, result.length);
+                return result;
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public double[] predictForCSR(int[] indptr, int[] indices, double[] values, long numCol, PredictionType predictionType) throws LGBMException {
+        return predictForCSR(indptr, indices, values, numCol, predictionType, "");
+    }
+
     /**
-     * Get number of features.
+     * Make prediction for a new sparse float dataset in a CSR format, stored in direct buffers. The native buffer
+     * addresses are passed to LightGBM as-is, without any copying.
      *
-     * @return number of features
+     * All buffers must be direct and use the native byte order. Buffers are read (and predictions are written)
+     * starting from their current positions, which are not modified.
+     *
+     * @param indptr         row offsets in the indices and values buffers, should have at least rows + 1 elements remaining
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param rows           number of rows
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         buffer for predictions. Should have at least calcNumPredict(rows, predictionType) elements remaining.
+     * @return number of predicted values written to the output
      * @throws LGBMException
      */
-    public int getNumFeature() throws LGBMException {
+    public long predictForCSR(IntBuffer indptr, IntBuffer indices, FloatBuffer values, int rows, long numCol, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_int outNum = new_int32_tp();
-            int result = LGBM_BoosterGetNumFeature(voidpp_value(handle), outNum);
-            if (result < 0) {
-                delete_intp(outNum);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                int num = intp_value(outNum);
-                delete_intp(outNum);
-                return num;
+            long indptrAddress = DirectMemory.address(indptr, rows + 1L);
+            int nelem = indptr.get(indptr.position() + rows);
+            long valuesAddress = DirectMemory.address(values, nelem);
+            return predictForCSR(indptrAddress, DirectMemory.address(indices, nelem), valuesAddress, C_API_DTYPE_FLOAT32, rows, nelem, numCol, predictionType, parameter, output);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    public long predictForCSR(IntBuffer indptr, IntBuffer indices, FloatBuffer values, int rows, long numCol, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictForCSR(indptr, indices, values, rows, numCol, predictionType, "", output);
+    }
+
+    /**
+     * Make prediction for a new sparse double dataset in a CSR format, stored in direct buffers. The native buffer
+     * addresses are passed to LightGBM as-is, without any copying.
+     *
+     * All buffers must be direct and use the native byte order. Buffers are read (and predictions are written)
+     * starting from their current positions, which are not modified.
+     *
+     * @param indptr         row offsets in the indices and values buffers, should have at least rows + 1 elements remaining
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param rows           number of rows
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param output         buffer for predictions. Should have at least calcNumPredict(rows, predictionType) elements remaining.
+     * @return number of predicted values written to the output
+     * @throws LGBMException
+     */
+    public long predictForCSR(IntBuffer indptr, IntBuffer indices, DoubleBuffer values, int rows, long numCol, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
+        if (!isClosed) {
+            long indptrAddress = DirectMemory.address(indptr, rows + 1L);
+            int nelem = indptr.get(indptr.position() + rows);
+            long valuesAddress = DirectMemory.address(values, nelem);
+            return predictForCSR(indptrAddress, DirectMemory.address(indices, nelem), valuesAddress, C_API_DTYPE_FLOAT64, rows, nelem, numCol, predictionType, parameter, output);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    public long predictForCSR(IntBuffer indptr, IntBuffer indices, DoubleBuffer values, int rows, long numCol, PredictionType predictionType, DoubleBuffer output) throws LGBMException {
+        return predictForCSR(indptr, indices, values, rows, numCol, predictionType, "", output);
+    }
+
+    private long predictForCSR(long indptrAddress, long indicesAddress, long valuesAddress, int dtype, int rows, int nelem, long numCol, PredictionType predictionType, String parameter, DoubleBuffer output) throws LGBMException {
+        long outputAddress = DirectMemory.address(output, calcNumPredict(rows, predictionType));
+        long base = ScratchArena.acquire(Long.BYTES);
+        try {
+            return predictForCSR(indptrAddress, indicesAddress, valuesAddress, dtype, rows + 1, nelem, numCol, predictionType, parameter, base, outputAddress);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    private long predictForCSR(long indptrAddress, long indicesAddress, long valuesAddress, int dtype, long nindptr, long nelem, long numCol, PredictionType predictionType, String parameter, long outLengthAddress, long outputAddress) throws LGBMException {
+        int result = lightgbmlibJNI.LGBM_BoosterPredictForCSR(
+                handleAddress,
+                indptrAddress,
+                C_API_DTYPE_INT32,
+                indicesAddress,
+                valuesAddress,
+                dtype,
+                nindptr,
+                nelem,
+                numCol,
+                predictionType.getType(),
+                0,
+                iterations,
+                parameter,
+                outLengthAddress,
+                outputAddress);
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return DirectMemory.getLong(outLengthAddress);
+        }
+    }
+
+    /**
+     * @return number of non-zero elements in the CSR matrix
+     */
+    private int checkCSR(int[] indptr, int indicesLength, int valuesLength) throws LGBMException {
+        if (indptr.length < 2) {
+            throw new LGBMException("indptr should have at least 2 elements, but got " + indptr.length);
+        }
+        int nelem = indptr[indptr.length - 1];
+        if ((indicesLength < nelem) || (valuesLength < nelem)) {
+            throw new LGBMException("indices and values should have at least " + nelem + " elements");
+        }
+        return nelem;
+    }
+
+    /**
+     * Sparse scratch arena layout: out-length slot, indptr, indices, values, output values. Indices are copied,
+     * indptr and values are left for the caller.
+     *
+     * @return arena base address, to be released by the caller
+     */
+    private static long csrScratch(int nindptr, int[] indices, int nelem, long valueBytes, long outputSize) throws LGBMException {
+        long size = Long.BYTES
+                + ScratchArena.align((long) nindptr * Integer.BYTES)
+                + ScratchArena.align((long) nelem * Integer.BYTES)
+                + ScratchArena.align(valueBytes)
+                + outputSize * Double.BYTES;
+        long base = ScratchArena.acquire(size);
+        DirectMemory.copy(indices, 0, csrIndicesAddress(base, nindptr), nelem);
+        return base;
+    }
+
+    private static long csrIndicesAddress(long base, int nindptr) {
+        return base + Long.BYTES + ScratchArena.align((long) nindptr * Integer.BYTES);
+    }
+
+    private static long csrValuesAddress(long base, int nindptr, int nelem) {
+        return csrIndicesAddress(base, nindptr) + ScratchArena.align((long) nelem * Integer.BYTES);
+    }
+
+    /**
+     * Make prediction for Arrow record batches, exported with the Arrow C Data Interface (like Data.exportVectorSchemaRoot
+     * from the arrow-c-data module). Feature columns are read by LightGBM directly from the Arrow buffers.
+     *
+     * LightGBM takes ownership of the exported chunks and schema and releases them, so they should be exported again
+     * for each call. If the call fails, chunks not released by LightGBM are moved back to their structs, to be released
+     * by the caller.
+     *
+     * @param chunks         addresses of exported ArrowArray structs (one per record batch), like ArrowArray.memoryAddress()
+     * @param schema         address of the exported ArrowSchema struct, like ArrowSchema.memoryAddress()
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForArrow(long[] chunks, long schema, PredictionType predictionType, String parameter) throws LGBMException {
+        if (!isClosed) {
+            long rows = ArrowData.rows(chunks);
+            if (rows > Integer.MAX_VALUE) {
+                throw new LGBMException("cannot predict more than " + Integer.MAX_VALUE + " rows at once, but got " + rows);
+            }
+            long size = calcNumPredict((int) rows, predictionType);
+            long base = ScratchArena.acquire(scratchSize(0, size));
+            try {
+                long outputAddress = outputAddress(base, 0);
+                long moved = ArrowData.move(chunks);
+                try {
+                    int result = lightgbmlibJNI.LGBM_BoosterPredictForArrow(
+                            handleAddress,
+                            chunks.length,
+                            moved,
+                            schema,
+                            predictionType.getType(),
+                            0,
+                            iterations,
+                            parameter,
+                            base,
+                            outputAddress
+                    );
+                    if (result < 0) {
+                        ArrowData.restore(chunks, moved);
+                        throw new LGBMException(LGBM_GetLastError());
+                    } else {
+                        double[] values = new double[(int) DirectMemory.getLong(base)];
+                        DirectMemory.copy(outputAddress, values, 0, values.length);
+                        return values;
+                    }
+                } finally {
+                    DirectMemory.free(moved);
+                }
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    public double[] predictForArrow(long[] chunks, long schema, PredictionType predictionType) throws LGBMException {
+        return predictForArrow(chunks, schema, predictionType, "");
+    }
+
     /**
-     * Make prediction for a new double[] row dataset. This method re-uses the internal predictor structure from previous calls
-     * and is optimized for single row invocation.
+     * Get number of predictions LightGBM is going to produce for a given number of rows and prediction type.
+     * It can be used to properly size the output buffers.
      *
-     * @param data           input vector
+     * @param rows           number of rows
      * @param predictionType the prediction type
-     * @return score
+     * @return number of predicted values
      * @throws LGBMException
      */
-    public double predictForMatSingleRow(double[] data, PredictionType predictionType) throws LGBMException {
+    public long calcNumPredict(int rows, PredictionType predictionType) throws LGBMException {
+        if (!isClosed) {
+            long outLength = ScratchArena.acquire(Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterCalcNumPredict(handleAddress, rows, predictionType.getType(), 0, iterations, outLength);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getLong(outLength);
+                }
+            } finally {
+                ScratchArena.release(outLength);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Create a new boosting learner.
+     *
+     * @param dataset    a LGBMDataset with the training data.
+     * @param parameters Parameters in format ‘key1=value1 key2=value2’
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMBooster create(LGBMDataset dataset, String parameters) throws LGBMException {
+        SWIGTYPE_p_p_void handle = new_voidpp();
+        int result = LGBM_BoosterCreate(dataset.handle, parameters, handle);
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return new LGBMBooster(0, handle);
+        }
+    }
+
+    /**
+     * Update the model for one iteration.
+     *
+     * @return true if there are no more splits possible, so training is finished.
+     * @throws LGBMException
+     */
+    public boolean updateOneIter() throws LGBMException {
+        if (!isClosed) {
+            long isFinished = ScratchArena.acquire(Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterUpdateOneIter(handleAddress, isFinished);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    // a finished iteration (no more splits) is not added to the model
+                    boolean finished = DirectMemory.getInt(isFinished) == 1;
+                    if (!finished) iterations++;
+                    return finished;
+                }
+            } finally {
+                ScratchArena.release(isFinished);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Remove the last boosting iteration from the model.
+     *
+     * @throws LGBMException
+     */
+    public void rollbackOneIter() throws LGBMException {
+        if (!isClosed) {
+            int result = lightgbmlibJNI.LGBM_BoosterRollbackOneIter(handleAddress);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else if (iterations > 0) {
+                iterations--;
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get the index of the current boosting iteration.
+     *
+     * @return number of finished iterations
+     * @throws LGBMException
+     */
+    public int getCurrentIteration() throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_double dataBuffer = new_doubleArray(data.length);
-            for (int i = 0; i < data.length; i++) {
-                doubleArray_setitem(dataBuffer, i, data[i]);
+            long out = ScratchArena.acquire(Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterGetCurrentIteration(handleAddress, out);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getInt(out);
+                }
+            } finally {
+                ScratchArena.release(out);
             }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    public enum FeatureImportanceType {
+        SPLIT,
+        GAIN
+    }
+
+
+    /**
+     * Save model to string.
+     *
+     * @param startIteration    Start index of the iteration that should be saved
+     * @param numIteration      Index of the iteration that should be saved, 0 and negative means save all
+     * @param featureImportance Type of feature importance, can be FeatureImportanceType.SPLIT or FeatureImportanceType.GAIN
+     * @return
+     */
+    public String saveModelToString(int startIteration, int numIteration, FeatureImportanceType featureImportance) throws LGBMException {
+        if (!isClosed) {
             SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outBufferSize = outBufferSize(1, data.length, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outBufferSize);
+            String result = LGBM_BoosterSaveModelToStringSWIG(
+                    voidpp_value(handle),
+                    startIteration,
+                    numIteration,
+                    importanceType(featureImportance),
+                    MODEL_SAVE_BUFFER_SIZE,
+                    outLength
+            );
+            delete_int64_tp(outLength);
+            return result;
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Save model directly to a file. Unlike saveModelToString, the model is not copied through a JVM string.
+     * Like any other booster call, it should not run concurrently with training.
+     *
+     * @param startIteration    Start index of the iteration that should be saved
+     * @param numIteration      Index of the iteration that should be saved, 0 and negative means save all
+     * @param featureImportance Type of feature importance, can be FeatureImportanceType.SPLIT or FeatureImportanceType.GAIN
+     * @param filename          Filename to save to
+     * @throws LGBMException
+     */
+    public void saveModel(int startIteration, int numIteration, FeatureImportanceType featureImportance, String filename) throws LGBMException {
+        if (!isClosed) {
+            int result = lightgbmlibJNI.LGBM_BoosterSaveModel(handleAddress, startIteration, numIteration, importanceType(featureImportance), filename);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
 
-            int result = LGBM_BoosterPredictForMatSingleRow(
+    /**
+     * Save the whole model directly to a file.
+     *
+     * @param filename Filename to save to
+     * @throws LGBMException
+     */
+    public void saveModel(String filename) throws LGBMException {
+        saveModel(0, 0, FeatureImportanceType.SPLIT, filename);
+    }
+
+    /**
+     * Merge trees of another booster in front of the trees of this one, so they become its init model. Training datasets
+     * should have init scores from the other booster's raw predictions, as the merged trees are not applied to them.
+     *
+     * @param other booster to merge from, which is not modified
+     * @throws LGBMException
+     */
+    public void merge(LGBMBooster other) throws LGBMException {
+        if (!isClosed) {
+            int result = lightgbmlibJNI.LGBM_BoosterMerge(handleAddress, other.handleAddress);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                iterations = getCurrentIteration();
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get names of features.
+     *
+     * @return a list of feature names.
+     */
+    public String[] getFeatureNames() throws LGBMException {
+        if (!isClosed) {
+            SWIGTYPE_p_void buffer = LGBM_BoosterGetFeatureNamesSWIG(voidpp_value(handle));
+            String[] result = StringArrayHandle_get_strings(buffer);
+            StringArrayHandle_free(buffer);
+            return result;
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Add new validation data to booster.
+     *
+     * @param dataset dataset to validate
+     * @throws LGBMException
+     */
+    public void addValidData(LGBMDataset dataset) throws LGBMException {
+        if (!isClosed) {
+            int result = LGBM_BoosterAddValidData(voidpp_value(handle), dataset.handle);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get evaluation for training data and validation data.
+     *
+     * @param dataIndex Index of data, 0: training data, 1: 1st validation data, 2: 2nd validation data and so on
+     * @return
+     * @throws LGBMException
+     */
+    public double[] getEval(int dataIndex) throws LGBMException {
+        if (!isClosed) {
+            SWIGTYPE_p_int outLength = new_int32_tp();
+            SWIGTYPE_p_double outBuffer = new_doubleArray(EVAL_RESULTS_BUFFER_SIZE);
+            int result = LGBM_BoosterGetEval(voidpp_value(handle), dataIndex, outLength, outBuffer);
+            if (result < 0) {
+                delete_intp(outLength);
+                delete_doubleArray(outBuffer);
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                double[] evals = new double[intp_value(outLength)];
+                for (int i = 0; i < evals.length; i++) {
+                    evals[i] = doubleArray_getitem(outBuffer, i);
+                }
+                delete_intp(outLength);
+                delete_doubleArray(outBuffer);
+                return evals;
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get evaluation for training data and validation data into a caller-provided array, so it can be reused
+     * between iterations.
+     *
+     * @param dataIndex Index of data, 0: training data, 1: 1st validation data, 2: 2nd validation data and so on
+     * @param output    array with at least getEvalCounts() elements
+     * @return number of values written
+     * @throws LGBMException
+     */
+    public int getEval(int dataIndex, double[] output) throws LGBMException {
+        if (!isClosed) {
+            int counts = getEvalCounts();
+            if (output.length < counts) {
+                throw new LGBMException("output array has " + output.length + " elements, but " + counts + " are needed");
+            }
+            // arena layout: [0,8) out length, then values
+            long base = ScratchArena.acquire(Long.BYTES + (long) counts * Double.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterGetEval(handleAddress, dataIndex, base, base + Long.BYTES);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    int length = DirectMemory.getInt(base);
+                    DirectMemory.copy(base + Long.BYTES, output, 0, length);
+                    return length;
+                }
+            } finally {
+                ScratchArena.release(base);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get the number of metrics, evaluated for each dataset.
+     *
+     * @return number of metrics
+     * @throws LGBMException
+     */
+    public int getEvalCounts() throws LGBMException {
+        if (!isClosed) {
+            long out = ScratchArena.acquire(Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterGetEvalCounts(handleAddress, out);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getInt(out);
+                }
+            } finally {
+                ScratchArena.release(out);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get names of evaluation datasets.
+     *
+     * @return array of eval dataset names.
+     * @throws LGBMException
+     */
+    public String[] getEvalNames() throws LGBMException {
+        if (!isClosed) {
+            SWIGTYPE_p_void namesP = LGBM_BoosterGetEvalNamesSWIG(voidpp_value(handle));
+            String[] names = StringArrayHandle_get_strings(namesP);
+            StringArrayHandle_free(namesP);
+            return names;
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get model feature importance.
+     *
+     * @param numIteration   Number of iterations for which feature importance is calculated, 0 or less means use all
+     * @param importanceType GAIN or SPLIT
+     * @return Result array with feature importance
+     * @throws LGBMException
+     */
+    public double[] featureImportance(int numIteration, FeatureImportanceType importanceType) throws LGBMException {
+        if (!isClosed) {
+            int numFeatures = getNumFeature();
+            SWIGTYPE_p_double outBuffer = new_doubleArray(numFeatures);
+            int result = LGBM_BoosterFeatureImportance(
                     voidpp_value(handle),
-                    double_to_voidp_ptr(dataBuffer),
-                    C_API_DTYPE_FLOAT64,
-                    data.length,
-                    1,
-                    predictionType.getType(),
-                    0,
-                    iterations,
-                    "",
-                    outLength,
+                    numIteration,
+                    importanceType(importanceType),
                     outBuffer
             );
             if (result < 0) {
-                delete_doubleArray(dataBuffer);
                 delete_doubleArray(outBuffer);
-                delete_int64_tp(outLength);
                 throw new LGBMException(LGBM_GetLastError());
             } else {
-                long length = int64_tp_value(outLength);
-                double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
+                double[] importance = new double[numFeatures];
+                for (int i = 0; i < numFeatures; i++) {
+                    importance[i] = doubleArray_getitem(outBuffer, i);
+                }
+                delete_doubleArray(outBuffer);
+                return importance;
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Get number of features.
+     *
+     * @return number of features
+     * @throws LGBMException
+     */
+    public int getNumFeature() throws LGBMException {
+        if (!isClosed) {
+            SWIGTYPE_p_int outNum = new_int32_tp();
+            int result = LGBM_BoosterGetNumFeature(voidpp_value(handle), outNum);
+            if (result < 0) {
+                delete_intp(outNum);
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                int num = intp_value(outNum);
+                delete_intp(outNum);
+                return num;
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Make prediction for a new double[] row dataset. This method re-uses the internal predictor structure from previous calls
+     * and is optimized for single row invocation.
+     *
+     * @param data           input vector
+     * @param predictionType the prediction type
+     * @return score
+     * @throws LGBMException
+     */
+    public double predictForMatSingleRow(double[] data, PredictionType predictionType) throws LGBMException {
+        if (!isClosed) {
+            long inputBytes = (long) data.length * Double.BYTES;
+            long size = calcNumPredict(1, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(data, 0, base + Long.BYTES, data.length);
+                long outputAddress = outputAddress(base, inputBytes);
+                int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRow(
+                        handleAddress,
+                        base + Long.BYTES,
+                        C_API_DTYPE_FLOAT64,
+                        data.length,
+                        1,
+                        predictionType.getType(),
+                        0,
+                        iterations,
+                        "",
+                        base,
+                        outputAddress
+                );
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getDouble(outputAddress);
                 }
-                delete_doubleArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                return values[0];
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
@@ -661,59 +1394,100 @@ public class LGBMBooster implements AutoCloseable {
      */
     public double predictForMatSingleRow(float[] data, PredictionType predictionType) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_float dataBuffer = new_floatArray(data.length);
-            for (int i = 0; i < data.length; i++) {
-                floatArray_setitem(dataBuffer, i, data[i]);
+            long inputBytes = (long) data.length * Float.BYTES;
+            long size = calcNumPredict(1, predictionType);
+            long base = ScratchArena.acquire(scratchSize(inputBytes, size));
+            try {
+                DirectMemory.copy(data, 0, base + Long.BYTES, data.length);
+                long outputAddress = outputAddress(base, inputBytes);
+                int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRow(
+                        handleAddress,
+                        base + Long.BYTES,
+                        C_API_DTYPE_FLOAT32,
+                        data.length,
+                        1,
+                        predictionType.getType(),
+                        0,
+                        iterations,
+                        "",
+                        base,
+                        outputAddress
+                );
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getDouble(outputAddress);
+                }
+            } finally {
+                ScratchArena.release(base);
             }
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outBufferSize = outBufferSize(1, data.length, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outBufferSize);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Create a reusable predictor configuration for single-row dense predictions. The config pre-allocates
+     * all the native buffers used by predictForMatSingleRowFast* methods, so it can be reused for every
+     * next prediction without doing any extra allocations.
+     *
+     * The config is not thread-safe: use a separate one for each thread. It should be closed before the booster.
+     *
+     * @param predictionType the prediction type
+     * @param dtype          type of input data, C_API_DTYPE_FLOAT32 or C_API_DTYPE_FLOAT64
+     * @param ncols          number of columns
+     * @param parameter      prediction options
+     * @return config for the fast predictions
+     * @throws LGBMException
+     */
+    public FastConfig predictForMatSingleRowFastInit(PredictionType predictionType, int dtype, int ncols, String parameter) throws LGBMException {
+        if (!isClosed) {
+            SWIGTYPE_p_p_void out = voidpp_handle();
 
-            int result = LGBM_BoosterPredictForMatSingleRow(
+            int result = LGBM_BoosterPredictForMatSingleRowFastInit(
                     voidpp_value(handle),
-                    float_to_voidp_ptr(dataBuffer),
-                    C_API_DTYPE_FLOAT32,
-                    data.length,
-                    1,
                     predictionType.getType(),
                     0,
                     iterations,
-                    "",
-                    outLength,
-                    outBuffer
+                    dtype,
+                    ncols,
+                    parameter,
+                    out
             );
             if (result < 0) {
-                delete_floatArray(dataBuffer);
-                delete_doubleArray(outBuffer);
-                delete_int64_tp(outLength);
+                delete_voidpp(out);
                 throw new LGBMException(LGBM_GetLastError());
             } else {
-                long length = int64_tp_value(outLength);
-                double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_floatArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                return values[0];
+                return new FastConfig(out, iterations, predictionType, dtype, ncols, false, calcNumPredict(1, predictionType));
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
-    public FastConfig predictForMatSingleRowFastInit(PredictionType predictionType, int dtype, int ncols, String parameter) throws LGBMException {
+    /**
+     * Create a reusable predictor configuration for single-row sparse (CSR) predictions.
+     *
+     * The config is not thread-safe: use a separate one for each thread. It should be closed before the booster.
+     *
+     * @param predictionType the prediction type
+     * @param dtype          type of input values, C_API_DTYPE_FLOAT32 or C_API_DTYPE_FLOAT64
+     * @param numCol         number of columns
+     * @param parameter      prediction options
+     * @return config for the fast predictions
+     * @throws LGBMException
+     */
+    public FastConfig predictForCSRSingleRowFastInit(PredictionType predictionType, int dtype, long numCol, String parameter) throws LGBMException {
         if (!isClosed) {
             SWIGTYPE_p_p_void out = voidpp_handle();
 
-            int result = LGBM_BoosterPredictForMatSingleRowFastInit(
+            int result = LGBM_BoosterPredictForCSRSingleRowFastInit(
                     voidpp_value(handle),
                     predictionType.getType(),
                     0,
                     iterations,
                     dtype,
-                    ncols,
+                    numCol,
                     parameter,
                     out
             );
@@ -721,98 +1495,450 @@ public class LGBMBooster implements AutoCloseable {
                 delete_voidpp(out);
                 throw new LGBMException(LGBM_GetLastError());
             } else {
-                return new FastConfig(out);
+                return new FastConfig(out, iterations, predictionType, dtype, numCol, true, calcNumPredict(1, predictionType));
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    /**
+     * A native LightGBM FastConfig handle, together with pre-allocated native input/output buffers,
+     * which are reused between predictions.
+     */
     public static class FastConfig implements AutoCloseable {
+        // dtype of a config created from a raw handle, which is not known until the first prediction
+        private static final int UNKNOWN_DTYPE = -1;
+
         public SWIGTYPE_p_p_void handle;
+        // number of iterations used by the config, -1 if unknown
+        final int numIteration;
+        int dtype = UNKNOWN_DTYPE;
+        long ncols;
+        boolean isSparse;
+        int outSize;
+        PredictionType predictionType;
+
+        private SWIGTYPE_p_long_long outLength;
+        private SWIGTYPE_p_double outBuffer;
+        private SWIGTYPE_p_float floatInputBuffer;
+        private SWIGTYPE_p_double doubleInputBuffer;
+
+        // raw pointers are cached, so the prediction itself does not allocate SWIG wrappers
+        final long handlePtr;
+        long outLengthPtr;
+        long outBufferPtr;
+        long inputPtr;
+        private volatile boolean isClosed = false;
+
+        /**
+         * Wrap a raw FastConfig handle. Native buffers are allocated on the first prediction, using its input
+         * type and size.
+         *
+         * @param handle FastConfig handle
+         * @deprecated use configs from predictForMatSingleRowFastInit and predictForCSRSingleRowFastInit,
+         * which know their input layout and prediction type upfront.
+         */
+        @Deprecated
         public FastConfig(SWIGTYPE_p_p_void handle) {
             this.handle = handle;
+            this.numIteration = -1;
+            this.handlePtr = DirectMemory.pointer(voidpp_value(handle));
+        }
+
+        FastConfig(SWIGTYPE_p_p_void handle, int numIteration, PredictionType predictionType, int dtype, long ncols, boolean isSparse, long outSize) {
+            this.handle = handle;
+            this.numIteration = numIteration;
+            this.handlePtr = DirectMemory.pointer(voidpp_value(handle));
+            allocate(predictionType, dtype, ncols, isSparse, outSize);
+        }
+
+        private void allocate(PredictionType predictionType, int dtype, long ncols, boolean isSparse, long outSize) {
+            this.predictionType = predictionType;
+            this.ncols = ncols;
+            this.isSparse = isSparse;
+            this.outSize = (int) outSize;
+            this.outLength = new_int64_tp();
+            this.outBuffer = new_doubleArray(outSize);
+            if (!isSparse && dtype == C_API_DTYPE_FLOAT32) {
+                floatInputBuffer = new_floatArray(ncols);
+                inputPtr = DirectMemory.pointer(float_to_voidp_ptr(floatInputBuffer));
+            } else if (!isSparse && dtype == C_API_DTYPE_FLOAT64) {
+                doubleInputBuffer = new_doubleArray(ncols);
+                inputPtr = DirectMemory.pointer(double_to_voidp_ptr(doubleInputBuffer));
+            }
+            this.outLengthPtr = DirectMemory.pointer(int64_t_to_voidp_ptr(outLength));
+            this.outBufferPtr = DirectMemory.pointer(double_to_voidp_ptr(outBuffer));
+            // set last, as it marks the config as allocated
+            this.dtype = dtype;
+        }
+
+        /**
+         * Validate the input against the config, allocating buffers of a config created from a raw handle.
+         *
+         * @param booster        booster making the prediction
+         * @param type           prediction type of the call, null if the call has no explicit type
+         */
+        void check(LGBMBooster booster, boolean sparse, int expectedDtype, long length, PredictionType type) throws LGBMException {
+            if (isClosed) {
+                throw new LGBMException("FastConfig was already closed");
+            }
+            if (dtype == UNKNOWN_DTYPE) {
+                if (type == null) {
+                    throw new LGBMException("FastConfig created from a raw handle should be first used with an explicit prediction type");
+                }
+                allocate(type, expectedDtype, sparse ? 0 : length, sparse, booster.calcNumPredict(1, type));
+            }
+            if (sparse != isSparse) {
+                throw new LGBMException(isSparse ? "FastConfig was created for CSR input" : "FastConfig was created for dense input");
+            }
+            if (dtype != expectedDtype) {
+                throw new LGBMException("FastConfig was created for dtype=" + dtype + ", but got input of dtype=" + expectedDtype);
+            }
+            if (!sparse && length != ncols) {
+                throw new LGBMException("FastConfig was created for " + ncols + " columns, but got " + length);
+            }
+            if ((type != null) && (type != predictionType)) {
+                throw new LGBMException("FastConfig was created for prediction type " + predictionType + ", but got " + type);
+            }
+        }
+
+        int copyOutput(double[] out) throws LGBMException {
+            int length = (int) lightgbmlibJNI.int64_tp_value(outLengthPtr);
+            if (out.length < length) {
+                throw new LGBMException("output array has size " + out.length + ", but prediction has " + length + " values");
+            }
+            DirectMemory.copy(outBufferPtr, out, 0, length);
+            return length;
         }
 
         @Override
-        public void close() throws Exception {
-            delete_voidpp(handle);
+        public void close() throws LGBMException {
+            if (!isClosed) {
+                isClosed = true;
+                int result = LGBM_FastConfigFree(voidpp_value(handle));
+                delete_voidpp(handle);
+                if (outLength != null) delete_int64_tp(outLength);
+                if (outBuffer != null) delete_doubleArray(outBuffer);
+                if (floatInputBuffer != null) delete_floatArray(floatInputBuffer);
+                if (doubleInputBuffer != null) delete_doubleArray(doubleInputBuffer);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                }
+            }
         }
     }
+
+    /**
+     * Make a single-row prediction using the pre-allocated FastConfig buffers. The config should be created
+     * with C_API_DTYPE_FLOAT32 dtype.
+     *
+     * @param config         config from predictForMatSingleRowFastInit
+     * @param data           input vector
+     * @param predictionType the prediction type, should match the one used for the config (checked)
+     * @return score
+     * @throws LGBMException
+     */
     public double predictForMatSingleRowFast(FastConfig config, float[] data, PredictionType predictionType) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_float dataBuffer = new_floatArray(data.length);
-            for (int i = 0; i < data.length; i++) {
-                floatArray_setitem(dataBuffer, i, data[i]);
+            config.check(this, false, C_API_DTYPE_FLOAT32, data.length, predictionType);
+            DirectMemory.copy(data, 0, config.inputPtr, data.length);
+            int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRowFast(config.handlePtr, config.inputPtr, config.outLengthPtr, config.outBufferPtr);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                return lightgbmlibJNI.doubleArray_getitem(config.outBufferPtr, 0);
             }
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outBufferSize = outBufferSize(1, data.length, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outBufferSize);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
 
-            int result = LGBM_BoosterPredictForMatSingleRowFast(
-                    voidpp_value(config.handle),
-                    float_to_voidp_ptr(dataBuffer),
-                    outLength,
-                    outBuffer
-            );
+    /**
+     * Make a single-row prediction using the pre-allocated FastConfig buffers. The config should be created
+     * with C_API_DTYPE_FLOAT64 dtype.
+     *
+     * @param config         config from predictForMatSingleRowFastInit
+     * @param data           input vector
+     * @param predictionType the prediction type, should match the one used for the config (checked)
+     * @return score
+     * @throws LGBMException
+     */
+    public double predictForMatSingleRowFast(FastConfig config, double[] data, PredictionType predictionType) throws LGBMException {
+        if (!isClosed) {
+            config.check(this, false, C_API_DTYPE_FLOAT64, data.length, predictionType);
+            DirectMemory.copy(data, 0, config.inputPtr, data.length);
+            int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRowFast(config.handlePtr, config.inputPtr, config.outLengthPtr, config.outBufferPtr);
             if (result < 0) {
-                delete_floatArray(dataBuffer);
-                delete_doubleArray(outBuffer);
-                delete_int64_tp(outLength);
                 throw new LGBMException(LGBM_GetLastError());
             } else {
-                long length = int64_tp_value(outLength);
-                double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_floatArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                return values[0];
+                return lightgbmlibJNI.doubleArray_getitem(config.outBufferPtr, 0);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
-    public double predictForMatSingleRowFast(FastConfig config, double[] data, PredictionType predictionType) throws LGBMException {
+    /**
+     * Make a single-row prediction without copying the input at all: the java array is pinned with
+     * GetPrimitiveArrayCritical and passed directly to LightGBM. Together with the pre-allocated FastConfig
+     * buffers it makes no native and no java allocations per call.
+     *
+     * The config should be created with C_API_DTYPE_FLOAT64 dtype. As the array is pinned, the GC
+     * may be delayed while the prediction is running, so it's better suited for small models.
+     *
+     * @param config config from predictForMatSingleRowFastInit
+     * @param data   input vector
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForMatSingleRowFastCritical(FastConfig config, double[] data) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_double dataBuffer = new_doubleArray(data.length);
-            for (int i = 0; i < data.length; i++) {
-                doubleArray_setitem(dataBuffer, i, data[i]);
+            config.check(this, false, C_API_DTYPE_FLOAT64, data.length, null);
+            int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRowFastCriticalSWIG(data, config.handlePtr, config.outLengthPtr, config.outBufferPtr);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                return lightgbmlibJNI.doubleArray_getitem(config.outBufferPtr, 0);
             }
-            SWIGTYPE_p_long_long outLength = new_int64_tp();
-            long outBufferSize = outBufferSize(1, data.length, predictionType);
-            SWIGTYPE_p_double outBuffer = new_doubleArray(outBufferSize);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
 
-            int result = LGBM_BoosterPredictForMatSingleRowFast(
-                    voidpp_value(config.handle),
-                    double_to_voidp_ptr(dataBuffer),
-                    outLength,
-                    outBuffer
+    /**
+     * Make a single-row prediction without copying the input, and write all the predicted values
+     * (like for multiclass or contribution predictions) into a caller-supplied array.
+     *
+     * @param config config from predictForMatSingleRowFastInit
+     * @param data   input vector
+     * @param out    output array, should be at least calcNumPredict(1, predictionType) long
+     * @return number of predicted values written
+     * @throws LGBMException
+     */
+    public int predictForMatSingleRowFastCritical(FastConfig config, double[] data, double[] out) throws LGBMException {
+        if (!isClosed) {
+            config.check(this, false, C_API_DTYPE_FLOAT64, data.length, null);
+            int result = lightgbmlibJNI.LGBM_BoosterPredictForMatSingleRowFastCriticalSWIG(data, config.handlePtr, config.outLengthPtr, config.outBufferPtr);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                return config.copyOutput(out);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Make a single-row sparse prediction without copying the input: both index and value arrays are pinned
+     * with GetPrimitiveArrayCritical and passed directly to LightGBM.
+     *
+     * The config should be created with predictForCSRSingleRowFastInit with C_API_DTYPE_FLOAT64 dtype.
+     *
+     * @param config      config from predictForCSRSingleRowFastInit
+     * @param indices     indices of non-zero features
+     * @param values      values of non-zero features
+     * @param numNonZeros number of non-zero features, can be less than the size of arrays
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForCSRSingleRowFastCritical(FastConfig config, int[] indices, double[] values, int numNonZeros) throws LGBMException {
+        if (!isClosed) {
+            config.check(this, true, C_API_DTYPE_FLOAT64, numNonZeros, null);
+            if ((indices.length < numNonZeros) || (values.length < numNonZeros)) {
+                throw new LGBMException("indices and values should have at least " + numNonZeros + " elements");
+            }
+            int result = lightgbmlibJNI.LGBM_BoosterPredictForCSRSingleRowFastCriticalSWIG(
+                    indices,
+                    values,
+                    numNonZeros,
+                    config.handlePtr,
+                    C_API_DTYPE_INT32,
+                    numNonZeros,
+                    config.outLengthPtr,
+                    config.outBufferPtr
             );
             if (result < 0) {
-                delete_doubleArray(dataBuffer);
-                delete_doubleArray(outBuffer);
-                delete_int64_tp(outLength);
                 throw new LGBMException(LGBM_GetLastError());
             } else {
-                long length = int64_tp_value(outLength);
-                double[] values = new double[(int) length];
-                for (int i = 0; i < length; i++) {
-                    values[i] = doubleArray_getitem(outBuffer, i);
-                }
-                delete_doubleArray(dataBuffer);
-                delete_int64_tp(outLength);
-                delete_doubleArray(outBuffer);
-                return values[0];
+                return lightgbmlibJNI.doubleArray_getitem(config.outBufferPtr, 0);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Make a single-row prediction for a sparse vector.
+     *
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param numNonZeros    number of non-zero values, can be less than the size of arrays
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForCSRSingleRow(int[] indices, float[] values, int numNonZeros, long numCol, PredictionType predictionType) throws LGBMException {
+        if (!isClosed) {
+            checkNonZeros(indices, values.length, numNonZeros);
+            long valueBytes = (long) numNonZeros * Float.BYTES;
+            long base = csrScratch(2, indices, numNonZeros, valueBytes, calcNumPredict(1, predictionType));
+            try {
+                long valuesAddress = csrValuesAddress(base, 2, numNonZeros);
+                DirectMemory.copy(values, 0, valuesAddress, numNonZeros);
+                return predictForCSRSingleRow(base, valuesAddress, C_API_DTYPE_FLOAT32, numNonZeros, valueBytes, numCol, predictionType);
+            } finally {
+                ScratchArena.release(base);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Make a single-row prediction for a sparse vector.
+     *
+     * @param indices        column indices of non-zero values
+     * @param values         non-zero values
+     * @param numNonZeros    number of non-zero values, can be less than the size of arrays
+     * @param numCol         number of columns
+     * @param predictionType the prediction type
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForCSRSingleRow(int[] indices, double[] values, int numNonZeros, long numCol, PredictionType predictionType) throws LGBMException {
+        if (!isClosed) {
+            checkNonZeros(indices, values.length, numNonZeros);
+            long valueBytes = (long) numNonZeros * Double.BYTES;
+            long base = csrScratch(2, indices, numNonZeros, valueBytes, calcNumPredict(1, predictionType));
+            try {
+                long valuesAddress = csrValuesAddress(base, 2, numNonZeros);
+                DirectMemory.copy(values, 0, valuesAddress, numNonZeros);
+                return predictForCSRSingleRow(base, valuesAddress, C_API_DTYPE_FLOAT64, numNonZeros, valueBytes, numCol, predictionType);
+            } finally {
+                ScratchArena.release(base);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    private double predictForCSRSingleRow(long base, long valuesAddress, int dtype, int numNonZeros, long valueBytes, long numCol, PredictionType predictionType) throws LGBMException {
+        long indptrAddress = base + Long.BYTES;
+        DirectMemory.putInt(indptrAddress, 0);
+        DirectMemory.putInt(indptrAddress + Integer.BYTES, numNonZeros);
+        long outputAddress = valuesAddress + ScratchArena.align(valueBytes);
+        int result = lightgbmlibJNI.LGBM_BoosterPredictForCSRSingleRow(
+                handleAddress,
+                indptrAddress,
+                C_API_DTYPE_INT32,
+                csrIndicesAddress(base, 2),
+                valuesAddress,
+                dtype,
+                2,
+                numNonZeros,
+                numCol,
+                predictionType.getType(),
+                0,
+                iterations,
+                "",
+                base,
+                outputAddress
+        );
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return DirectMemory.getDouble(outputAddress);
+        }
+    }
+
+    /**
+     * Make a single-row prediction for a sparse vector using the FastConfig. The config should be created with
+     * predictForCSRSingleRowFastInit with C_API_DTYPE_FLOAT32 dtype.
+     *
+     * @param config      config from predictForCSRSingleRowFastInit
+     * @param indices     column indices of non-zero values
+     * @param values      non-zero values
+     * @param numNonZeros number of non-zero values, can be less than the size of arrays
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForCSRSingleRowFast(FastConfig config, int[] indices, float[] values, int numNonZeros) throws LGBMException {
+        if (!isClosed) {
+            config.check(this, true, C_API_DTYPE_FLOAT32, numNonZeros, null);
+            checkNonZeros(indices, values.length, numNonZeros);
+            long base = csrScratch(2, indices, numNonZeros, (long) numNonZeros * Float.BYTES, 0);
+            try {
+                long valuesAddress = csrValuesAddress(base, 2, numNonZeros);
+                DirectMemory.copy(values, 0, valuesAddress, numNonZeros);
+                return predictForCSRSingleRowFast(config, base, valuesAddress, numNonZeros);
+            } finally {
+                ScratchArena.release(base);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Make a single-row prediction for a sparse vector using the FastConfig. The config should be created with
+     * predictForCSRSingleRowFastInit with C_API_DTYPE_FLOAT64 dtype. See also predictForCSRSingleRowFastCritical, which
+     * does not copy the input at all.
+     *
+     * @param config      config from predictForCSRSingleRowFastInit
+     * @param indices     column indices of non-zero values
+     * @param values      non-zero values
+     * @param numNonZeros number of non-zero values, can be less than the size of arrays
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForCSRSingleRowFast(FastConfig config, int[] indices, double[] values, int numNonZeros) throws LGBMException {
+        if (!isClosed) {
+            config.check(this, true, C_API_DTYPE_FLOAT64, numNonZeros, null);
+            checkNonZeros(indices, values.length, numNonZeros);
+            long base = csrScratch(2, indices, numNonZeros, (long) numNonZeros * Double.BYTES, 0);
+            try {
+                long valuesAddress = csrValuesAddress(base, 2, numNonZeros);
+                DirectMemory.copy(values, 0, valuesAddress, numNonZeros);
+                return predictForCSRSingleRowFast(config, base, valuesAddress, numNonZeros);
+            } finally {
+                ScratchArena.release(base);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    private double predictForCSRSingleRowFast(FastConfig config, long base, long valuesAddress, int numNonZeros) throws LGBMException {
+        long indptrAddress = base + Long.BYTES;
+        DirectMemory.putInt(indptrAddress, 0);
+        DirectMemory.putInt(indptrAddress + Integer.BYTES, numNonZeros);
+        int result = lightgbmlibJNI.LGBM_BoosterPredictForCSRSingleRowFast(
+                config.handlePtr,
+                indptrAddress,
+                C_API_DTYPE_INT32,
+                csrIndicesAddress(base, 2),
+                valuesAddress,
+                2,
+                numNonZeros,
+                config.outLengthPtr,
+                config.outBufferPtr
+        );
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return lightgbmlibJNI.doubleArray_getitem(config.outBufferPtr, 0);
+        }
+    }
+
+    private void checkNonZeros(int[] indices, int valuesLength, int numNonZeros) throws LGBMException {
+        if ((numNonZeros < 0) || (indices.length < numNonZeros) || (valuesLength < numNonZeros)) {
+            throw new LGBMException("indices and values should have at least " + numNonZeros + " elements");
+        }
+    }
+
 
     private int importanceType(FeatureImportanceType tpe) {
         int importanceType = C_API_FEATURE_IMPORTANCE_GAIN;
@@ -902,10 +2028,39 @@ public class LGBMBooster implements AutoCloseable {
         }
     }
 
+    /**
+     * Get prediction for training data and validation data into a caller-provided buffer, without allocating and
+     * copying a java array. Predictions have the same class-major layout as in getPredict.
+     * @param dataIdx Index of data, 0: training data, 1: 1st validation data, 2: 2nd validation data and so on
+     * @param output direct buffer in the native byte order, with at least num_class * dataset.num_data elements after its position
+     * @return number of predicted values written
+     * @throws LGBMException
+     */
+    public long getPredict(int dataIdx, DoubleBuffer output) throws LGBMException {
+        if (!isClosed) {
+            long outAddress = DirectMemory.address(output, numPredictAt(dataIdx));
+            long outLength = ScratchArena.acquire(Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_BoosterGetPredict(handleAddress, dataIdx, outLength, outAddress);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                } else {
+                    return DirectMemory.getLong(outLength);
+                }
+            } finally {
+                ScratchArena.release(outLength);
+            }
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
     /**
      * Update the model by specifying gradient and Hessian directly (this can be used to support customized loss functions).
-     * The length of the arrays referenced by grad and hess must be equal to num_class * num_train_data, this is not
-     * verified by the library, the caller must ensure this.
+     * The length of the arrays referenced by grad and hess must be at least num_class * num_train_data.
+     *
+     * Arrays are copied on each call to a native buffer owned by the booster, which is allocated on the first call and
+     * freed on close. To avoid the copy, use the variant with direct FloatBuffers.
      *
      * @param grad The first order derivative (gradient) statistics
      * @param hess The second order derivative (Hessian) statistics
@@ -914,53 +2069,95 @@ public class LGBMBooster implements AutoCloseable {
      */
     public boolean updateOneIterCustom(float[] grad, float[] hess) throws LGBMException {
         if (!isClosed) {
-            SWIGTYPE_p_float gradHandle = new_floatArray(grad.length);
-            for (int i=0; i<grad.length; i++) {
-                floatArray_setitem(gradHandle, i, grad[i]);
-            }
-            SWIGTYPE_p_float hessHandle = new_floatArray(hess.length);
-            for (int i=0; i<hess.length; i++) {
-                floatArray_setitem(hessHandle, i, hess[i]);
+            long size = numPredictAt(0);
+            if ((grad.length < size) || (hess.length < size)) {
+                throw new LGBMException("grad and hess should have at least " + size + " elements, but got " + grad.length + " and " + hess.length);
             }
-            SWIGTYPE_p_int isFinishedHandle = new_intp();
-            int result = LGBM_BoosterUpdateOneIterCustom(voidpp_value(handle), gradHandle, hessHandle, isFinishedHandle);
-            if (result < 0) {
-                delete_floatArray(gradHandle);
-                delete_floatArray(hessHandle);
-                delete_intp(isFinishedHandle);
-                throw new LGBMException(LGBM_GetLastError());
-            } else {
-                int isFinished = intp_value(isFinishedHandle);
-                delete_floatArray(gradHandle);
-                delete_floatArray(hessHandle);
-                delete_intp(isFinishedHandle);
-                return isFinished == 1;
+            // layout: [0,8) isFinished out slot, then grad and hess
+            long gradBytes = ScratchArena.align(size * Float.BYTES);
+            long base = gradients(Long.BYTES + 2 * gradBytes);
+            DirectMemory.copy(grad, 0, base + Long.BYTES, (int) size);
+            DirectMemory.copy(hess, 0, base + Long.BYTES + gradBytes, (int) size);
+            return updateOneIterCustom(base + Long.BYTES, base + Long.BYTES + gradBytes, base);
+        } else {
+            throw new LGBMException("Booster was already closed");
+        }
+    }
+
+    /**
+     * Update the model by specifying gradient and Hessian directly, without copying them. Buffers should be direct,
+     * in the native byte order, and have at least num_class * num_train_data elements after their current positions.
+     * They can be allocated once and refilled in place on each iteration:
+     * <pre>
+     *     FloatBuffer grad = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+     * </pre>
+     *
+     * @param grad The first order derivative (gradient) statistics
+     * @param hess The second order derivative (Hessian) statistics
+     * @return true means the update was successfully finished (cannot split anymore), false indicates failure
+     * @throws LGBMException
+     */
+    public boolean updateOneIterCustom(FloatBuffer grad, FloatBuffer hess) throws LGBMException {
+        if (!isClosed) {
+            long size = numPredictAt(0);
+            long gradAddress = DirectMemory.address(grad, size);
+            long hessAddress = DirectMemory.address(hess, size);
+            long isFinished = ScratchArena.acquire(Long.BYTES);
+            try {
+                return updateOneIterCustom(gradAddress, hessAddress, isFinished);
+            } finally {
+                ScratchArena.release(isFinished);
             }
         } else {
             throw new LGBMException("Booster was already closed");
         }
     }
 
+    private boolean updateOneIterCustom(long gradAddress, long hessAddress, long isFinishedAddress) throws LGBMException {
+        int result = lightgbmlibJNI.LGBM_BoosterUpdateOneIterCustom(handleAddress, gradAddress, hessAddress, isFinishedAddress);
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            // a finished iteration (no more splits) is not added to the model
+            boolean finished = DirectMemory.getInt(isFinishedAddress) == 1;
+            if (!finished) iterations++;
+            return finished;
+        }
+    }
+
+    /**
+     * Get the gradients buffer, growing it if needed. The size is num_class * num_train_data, so it's allocated once.
+     */
+    private long gradients(long bytes) {
+        if (gradientsBytes < bytes) {
+            if (gradients != 0L) {
+                DirectMemory.free(gradients);
+                gradients = 0L;
+                gradientsBytes = 0L;
+            }
+            gradients = DirectMemory.allocate(bytes);
+            gradientsBytes = bytes;
+        }
+        return gradients;
+    }
 
     /**
-     * Calculates the output buffer size for the different prediction types. See the notes at:
-     * <a href="https://lightgbm.readthedocs.io/en/latest/C-API.html#c.LGBM_BoosterPredictForMat">predictForMat</a> &
-     * <a href="https://lightgbm.readthedocs.io/en/latest/C-API.html#c.LGBM_BoosterPredictForMatSingleRow">predictForMatSingleRow</a>
-     * for more info.
-     *
-     * @param rows           the number of rows in the input data
-     * @param cols           the number of columns in the input data
-     * @param predictionType the type of prediction we are trying to achieve
-     * @return number of elements in the output result (size)
+     * @return number of predicted values for the training (0) or validation (1+) dataset: num_class * num_data.
+     * For the training dataset it's also the number of gradient values per iteration.
      */
-    private long outBufferSize(int rows, int cols, PredictionType predictionType) {
-        long defaultSize = 2L * rows;
-        if (PredictionType.C_API_PREDICT_CONTRIB.equals(predictionType))
-            return defaultSize * (cols + 1);
-        else if (PredictionType.C_API_PREDICT_LEAF_INDEX.equals(predictionType))
-            return defaultSize * iterations;
-        else // for C_API_PREDICT_NORMAL & C_API_PREDICT_RAW_SCORE
-            return defaultSize;
+    private long numPredictAt(int dataIdx) throws LGBMException {
+        long out = ScratchArena.acquire(Long.BYTES);
+        try {
+            int result = lightgbmlibJNI.LGBM_BoosterGetNumPredict(handleAddress, dataIdx, out);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            return DirectMemory.getLong(out);
+        } finally {
+            ScratchArena.release(out);
+        }
     }
 
+
+
 }
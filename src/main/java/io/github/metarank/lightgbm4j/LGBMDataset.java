@@ -5,6 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import static com.microsoft.ml.lightgbm.lightgbmlib.*;
 
@@ -112,6 +114,430 @@ public class LGBMDataset implements AutoCloseable {
         }
     }
 
+    /**
+     * Create dataset from a sparse float[] matrix in a CSR format. Arrays are bulk-copied to the native memory.
+     * @param indptr row offsets in the indices and values arrays, rows + 1 elements
+     * @param indices column indices of non-zero values
+     * @param values non-zero values
+     * @param numCol number of columns
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSR(int[] indptr, int[] indices, float[] values, long numCol, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(indptr.length, indptr.length == 0 ? 0 : indptr[indptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(indptr.length, Integer.BYTES, nelem, Float.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(indptr, 0, buffer, indptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(false, buffer, layout, C_API_DTYPE_INT32, C_API_DTYPE_FLOAT32, numCol, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse double[] matrix in a CSR format. Arrays are bulk-copied to the native memory.
+     * @param indptr row offsets in the indices and values arrays, rows + 1 elements
+     * @param indices column indices of non-zero values
+     * @param values non-zero values
+     * @param numCol number of columns
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSR(int[] indptr, int[] indices, double[] values, long numCol, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(indptr.length, indptr.length == 0 ? 0 : indptr[indptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(indptr.length, Integer.BYTES, nelem, Double.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(indptr, 0, buffer, indptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(false, buffer, layout, C_API_DTYPE_INT32, C_API_DTYPE_FLOAT64, numCol, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse float[] matrix in a CSR format. Arrays are bulk-copied to the native memory.
+     * @param indptr row offsets in the indices and values arrays, rows + 1 elements
+     * @param indices column indices of non-zero values
+     * @param values non-zero values
+     * @param numCol number of columns
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSR(long[] indptr, int[] indices, float[] values, long numCol, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(indptr.length, indptr.length == 0 ? 0 : indptr[indptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(indptr.length, Long.BYTES, nelem, Float.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(indptr, 0, buffer, indptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(false, buffer, layout, C_API_DTYPE_INT64, C_API_DTYPE_FLOAT32, numCol, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse double[] matrix in a CSR format. Arrays are bulk-copied to the native memory.
+     * @param indptr row offsets in the indices and values arrays, rows + 1 elements
+     * @param indices column indices of non-zero values
+     * @param values non-zero values
+     * @param numCol number of columns
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSR(long[] indptr, int[] indices, double[] values, long numCol, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(indptr.length, indptr.length == 0 ? 0 : indptr[indptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(indptr.length, Long.BYTES, nelem, Double.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(indptr, 0, buffer, indptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(false, buffer, layout, C_API_DTYPE_INT64, C_API_DTYPE_FLOAT64, numCol, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse float[] matrix in a CSC format. Arrays are bulk-copied to the native memory.
+     * @param colptr column offsets in the indices and values arrays, cols + 1 elements
+     * @param indices row indices of non-zero values
+     * @param values non-zero values
+     * @param numRow number of rows
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSC(int[] colptr, int[] indices, float[] values, long numRow, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(colptr.length, colptr.length == 0 ? 0 : colptr[colptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(colptr.length, Integer.BYTES, nelem, Float.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(colptr, 0, buffer, colptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(true, buffer, layout, C_API_DTYPE_INT32, C_API_DTYPE_FLOAT32, numRow, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse double[] matrix in a CSC format. Arrays are bulk-copied to the native memory.
+     * @param colptr column offsets in the indices and values arrays, cols + 1 elements
+     * @param indices row indices of non-zero values
+     * @param values non-zero values
+     * @param numRow number of rows
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSC(int[] colptr, int[] indices, double[] values, long numRow, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(colptr.length, colptr.length == 0 ? 0 : colptr[colptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(colptr.length, Integer.BYTES, nelem, Double.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(colptr, 0, buffer, colptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(true, buffer, layout, C_API_DTYPE_INT32, C_API_DTYPE_FLOAT64, numRow, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse float[] matrix in a CSC format. Arrays are bulk-copied to the native memory.
+     * @param colptr column offsets in the indices and values arrays, cols + 1 elements
+     * @param indices row indices of non-zero values
+     * @param values non-zero values
+     * @param numRow number of rows
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSC(long[] colptr, int[] indices, float[] values, long numRow, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(colptr.length, colptr.length == 0 ? 0 : colptr[colptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(colptr.length, Long.BYTES, nelem, Float.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(colptr, 0, buffer, colptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(true, buffer, layout, C_API_DTYPE_INT64, C_API_DTYPE_FLOAT32, numRow, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a sparse double[] matrix in a CSC format. Arrays are bulk-copied to the native memory.
+     * @param colptr column offsets in the indices and values arrays, cols + 1 elements
+     * @param indices row indices of non-zero values
+     * @param values non-zero values
+     * @param numRow number of rows
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromCSC(long[] colptr, int[] indices, double[] values, long numRow, String parameters, LGBMDataset reference) throws LGBMException {
+        int nelem = checkSparse(colptr.length, colptr.length == 0 ? 0 : colptr[colptr.length - 1], indices.length, values.length);
+        SparseLayout layout = new SparseLayout(colptr.length, Long.BYTES, nelem, Double.BYTES);
+        long buffer = DirectMemory.allocate(layout.size);
+        try {
+            DirectMemory.copy(colptr, 0, buffer, colptr.length);
+            DirectMemory.copy(indices, 0, buffer + layout.indicesOffset, nelem);
+            DirectMemory.copy(values, 0, buffer + layout.valuesOffset, nelem);
+            return createSparse(true, buffer, layout, C_API_DTYPE_INT64, C_API_DTYPE_FLOAT64, numRow, parameters, reference);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Create dataset from a list of dense float[] matrices with the same number of columns. See createFromMats(float[][], ...).
+     * @param blocks input matrices, block i should have rowsPerBlock[i] * cols elements
+     * @param rowsPerBlock number of rows in each block
+     * @param cols number of cols
+     * @param isRowMajor is a row-major encoding used in all the blocks?
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromMats(List<float[]> blocks, int[] rowsPerBlock, int cols, boolean isRowMajor, String parameters, LGBMDataset reference) throws LGBMException {
+        return createFromMats(blocks.toArray(new float[0][]), rowsPerBlock, cols, isRowMajor, parameters, reference);
+    }
+
+    /**
+     * Create dataset from multiple dense float[] matrices with the same number of columns, without concatenating
+     * them into a single array first. Each block is copied to its own native buffer, so the total dataset size is not
+     * limited by the maximal java array size.
+     * @param blocks input matrices, block i should have rowsPerBlock[i] * cols elements
+     * @param rowsPerBlock number of rows in each block
+     * @param cols number of cols
+     * @param isRowMajor is a row-major encoding used in all the blocks?
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromMats(float[][] blocks, int[] rowsPerBlock, int cols, boolean isRowMajor, String parameters, LGBMDataset reference) throws LGBMException {
+        checkMats(blocks.length, rowsPerBlock, cols);
+        long[] buffers = new long[blocks.length];
+        try {
+            for (int i = 0; i < buffers.length; i++) {
+                float[] block = blocks[i];
+                long size = (long) rowsPerBlock[i] * cols;
+                if (block.length < size) {
+                    throw new LGBMException("block " + i + " has " + block.length + " elements, but " + rowsPerBlock[i] + "x" + cols + " matrix was expected");
+                }
+                buffers[i] = DirectMemory.allocate(size * Float.BYTES);
+                DirectMemory.copy(block, 0, buffers[i], (int) size);
+            }
+            return createMats(buffers, rowsPerBlock, C_API_DTYPE_FLOAT32, cols, isRowMajor, parameters, reference);
+        } finally {
+            for (long buffer : buffers) {
+                if (buffer != 0) DirectMemory.free(buffer);
+            }
+        }
+    }
+
+    /**
+     * Create dataset from multiple dense double[] matrices with the same number of columns, without concatenating
+     * them into a single array first. Each block is copied to its own native buffer, so the total dataset size is not
+     * limited by the maximal java array size.
+     * @param blocks input matrices, block i should have rowsPerBlock[i] * cols elements
+     * @param rowsPerBlock number of rows in each block
+     * @param cols number of cols
+     * @param isRowMajor is a row-major encoding used in all the blocks?
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromMats(double[][] blocks, int[] rowsPerBlock, int cols, boolean isRowMajor, String parameters, LGBMDataset reference) throws LGBMException {
+        checkMats(blocks.length, rowsPerBlock, cols);
+        long[] buffers = new long[blocks.length];
+        try {
+            for (int i = 0; i < buffers.length; i++) {
+                double[] block = blocks[i];
+                long size = (long) rowsPerBlock[i] * cols;
+                if (block.length < size) {
+                    throw new LGBMException("block " + i + " has " + block.length + " elements, but " + rowsPerBlock[i] + "x" + cols + " matrix was expected");
+                }
+                buffers[i] = DirectMemory.allocate(size * Double.BYTES);
+                DirectMemory.copy(block, 0, buffers[i], (int) size);
+            }
+            return createMats(buffers, rowsPerBlock, C_API_DTYPE_FLOAT64, cols, isRowMajor, parameters, reference);
+        } finally {
+            for (long buffer : buffers) {
+                if (buffer != 0) DirectMemory.free(buffer);
+            }
+        }
+    }
+
+    private static void checkMats(int blocks, int[] rowsPerBlock, int cols) throws LGBMException {
+        if (blocks == 0) {
+            throw new LGBMException("there should be at least one block");
+        }
+        if (rowsPerBlock.length != blocks) {
+            throw new LGBMException("got " + blocks + " blocks, but row counts for " + rowsPerBlock.length);
+        }
+        long rows = 0;
+        for (int blockRows : rowsPerBlock) rows += blockRows;
+        if (rows > Integer.MAX_VALUE) {
+            throw new LGBMException("dataset can have at most " + Integer.MAX_VALUE + " rows, but got " + rows);
+        }
+        if (cols <= 0) {
+            throw new LGBMException("number of columns should be positive, but got " + cols);
+        }
+    }
+
+    /**
+     * Native layout for block metadata: block pointers, block row counts, out-handle slot.
+     */
+    private static LGBMDataset createMats(long[] buffers, int[] rowsPerBlock, int dtype, int cols, boolean isRowMajor, String parameters, LGBMDataset reference) throws LGBMException {
+        int nmat = buffers.length;
+        long rowsOffset = (long) nmat * Long.BYTES;
+        long outOffset = rowsOffset + ScratchArena.align((long) nmat * Integer.BYTES);
+        long meta = DirectMemory.allocate(outOffset + Long.BYTES);
+        try {
+            for (int i = 0; i < nmat; i++) {
+                DirectMemory.putLong(meta + (long) i * Long.BYTES, buffers[i]);
+            }
+            DirectMemory.copy(rowsPerBlock, 0, meta + rowsOffset, nmat);
+            int result = lightgbmlibJNI.LGBM_DatasetCreateFromMats(
+                    nmat,
+                    meta,
+                    dtype,
+                    meta + rowsOffset,
+                    cols,
+                    isRowMajor ? 1 : 0,
+                    parameters,
+                    reference == null ? 0 : DirectMemory.pointer(reference.handle),
+                    meta + outOffset
+            );
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                return new LGBMDataset(DirectMemory.wrap(DirectMemory.getLong(meta + outOffset)));
+            }
+        } finally {
+            DirectMemory.free(meta);
+        }
+    }
+
+    /**
+     * Create dataset from Arrow record batches, exported with the Arrow C Data Interface (like Data.exportVectorSchemaRoot
+     * from the arrow-c-data module). Columns are read by LightGBM directly from the Arrow buffers, without copying them
+     * to java arrays.
+     *
+     * LightGBM takes ownership of the exported chunks and schema and releases them, so they should not be reused for
+     * other calls. Only the memory of the ArrowArray/ArrowSchema structs themselves should be freed by the caller.
+     * If the call fails, chunks not released by LightGBM are moved back to their structs, so they should still be
+     * released by the caller, like with ArrowArray.release().
+     * @param chunks addresses of exported ArrowArray structs (one per record batch), like ArrowArray.memoryAddress()
+     * @param schema address of the exported ArrowSchema struct, like ArrowSchema.memoryAddress()
+     * @param parameters extra parameters
+     * @param reference to align bin mappers with other dataset
+     * @return
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromArrow(long[] chunks, long schema, String parameters, LGBMDataset reference) throws LGBMException {
+        long moved = ArrowData.move(chunks);
+        long out = DirectMemory.allocate(Long.BYTES);
+        try {
+            int result = lightgbmlibJNI.LGBM_DatasetCreateFromArrow(
+                    chunks.length,
+                    moved,
+                    schema,
+                    parameters,
+                    reference == null ? 0 : DirectMemory.pointer(reference.handle),
+                    out
+            );
+            if (result < 0) {
+                ArrowData.restore(chunks, moved);
+                throw new LGBMException(LGBM_GetLastError());
+            } else {
+                return new LGBMDataset(DirectMemory.wrap(DirectMemory.getLong(out)));
+            }
+        } finally {
+            DirectMemory.free(out);
+            DirectMemory.free(moved);
+        }
+    }
+
+    /**
+     * @return number of non-zero elements
+     */
+    private static int checkSparse(int ptrLength, long nelem, int indicesLength, int valuesLength) throws LGBMException {
+        if (ptrLength < 2) {
+            throw new LGBMException("offsets array should have at least 2 elements, but got " + ptrLength);
+        }
+        if ((nelem < 0) || (indicesLength < nelem) || (valuesLength < nelem)) {
+            throw new LGBMException("indices and values should have at least " + nelem + " elements");
+        }
+        return (int) nelem;
+    }
+
+    /**
+     * Native buffer layout for sparse matrices: offsets, indices, values, out-handle slot.
+     */
+    private static class SparseLayout {
+        final int ptrLength;
+        final int nelem;
+        final long indicesOffset;
+        final long valuesOffset;
+        final long outOffset;
+        final long size;
+
+        SparseLayout(int ptrLength, int ptrBytes, int nelem, int valueBytes) {
+            this.ptrLength = ptrLength;
+            this.nelem = nelem;
+            this.indicesOffset = ScratchArena.align((long) ptrLength * ptrBytes);
+            this.valuesOffset = indicesOffset + ScratchArena.align((long) nelem * Integer.BYTES);
+            this.outOffset = valuesOffset + ScratchArena.align((long) nelem * valueBytes);
+            this.size = outOffset + Long.BYTES;
+        }
+    }
+
+    private static LGBMDataset createSparse(boolean isCSC, long buffer, SparseLayout layout, int ptrType, int dtype, long size, String parameters, LGBMDataset reference) throws LGBMException {
+        long referenceAddress = reference == null ? 0 : DirectMemory.pointer(reference.handle);
+        long out = buffer + layout.outOffset;
+        int result;
+        if (isCSC) {
+            result = lightgbmlibJNI.LGBM_DatasetCreateFromCSC(buffer, ptrType, buffer + layout.indicesOffset, buffer + layout.valuesOffset, dtype, layout.ptrLength, layout.nelem, size, parameters, referenceAddress, out);
+        } else {
+            result = lightgbmlibJNI.LGBM_DatasetCreateFromCSR(buffer, ptrType, buffer + layout.indicesOffset, buffer + layout.valuesOffset, dtype, layout.ptrLength, layout.nelem, size, parameters, referenceAddress, out);
+        }
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        } else {
+            return new LGBMDataset(DirectMemory.wrap(DirectMemory.getLong(out)));
+        }
+    }
+
     /**
      * Get number of data points.
      * @return  number of data points
@@ -170,6 +596,208 @@ public class LGBMDataset implements AutoCloseable {
         }
     }
 
+    /**
+     * Save the constructed dataset into a LightGBM binary file, which can be loaded later with createFromFile
+     * without parsing and binning the source data again. LightGBM does not overwrite existing files.
+     * @param fileName
+     * @throws LGBMException
+     */
+    public void saveBinary(String fileName) throws LGBMException {
+        if (!isClosed) {
+            int result = LGBM_DatasetSaveBinary(handle, fileName);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
+    /**
+     * Create a dataset from a subset of rows, sharing bin mappers with this dataset, so no re-binning is done.
+     * Labels, weights, init scores and query groups are copied for the selected rows. Rows are taken in the
+     * ascending index order. For a ranking dataset, the subset should include either all or none of the rows of each query.
+     * @param rowIndices indices of rows to include
+     * @param parameters dataset parameters
+     * @return subset dataset
+     * @throws LGBMException
+     */
+    public LGBMDataset subset(int[] rowIndices, String parameters) throws LGBMException {
+        if (!isClosed) {
+            if (rowIndices.length == 0) {
+                throw new LGBMException("subset should have at least one row");
+            }
+            int[] sorted = rowIndices.clone();
+            Arrays.sort(sorted);
+            int numData = getNumData();
+            if ((sorted[0] < 0) || (sorted[sorted.length - 1] >= numData)) {
+                throw new LGBMException("row indices should be between 0 and " + (numData - 1) + ", but got " + sorted[0] + ".." + sorted[sorted.length - 1]);
+            }
+            // indices, then the out handle slot
+            long indicesBytes = ScratchArena.align((long) sorted.length * Integer.BYTES);
+            long base = ScratchArena.acquire(indicesBytes + Long.BYTES);
+            try {
+                DirectMemory.copy(sorted, 0, base, sorted.length);
+                int result = lightgbmlibJNI.LGBM_DatasetGetSubset(DirectMemory.pointer(handle), base, sorted.length, parameters, base + indicesBytes);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                }
+                return new LGBMDataset(DirectMemory.wrap(DirectMemory.getLong(base + indicesBytes)));
+            } finally {
+                ScratchArena.release(base);
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
+    /**
+     * Append features of another dataset with the same rows to this dataset. Features of the other dataset are copied
+     * with their bin mappers, and are not re-binned. Labels and other metadata of this dataset are kept.
+     * @param other dataset with the same number of rows
+     * @throws LGBMException
+     */
+    public void addFeaturesFrom(LGBMDataset other) throws LGBMException {
+        if (!isClosed) {
+            if (other.isClosed) {
+                throw new LGBMException("Source dataset was already closed.");
+            }
+            int numData = getNumData();
+            int otherNumData = other.getNumData();
+            if (numData != otherNumData) {
+                throw new LGBMException("datasets should have the same number of rows, but got " + numData + " and " + otherNumData);
+            }
+            int result = LGBM_DatasetAddFeaturesFrom(handle, other.handle);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
+    /**
+     * Query boundaries of a ranking dataset, as a sequence of numQueries + 1 row offsets.
+     * @return boundaries, or null if the dataset has no query groups
+     * @throws LGBMException
+     */
+    int[] getQueryBoundaries() throws LGBMException {
+        if (!isClosed) {
+            // out length, data pointer and type slots
+            long out = ScratchArena.acquire(3 * Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_DatasetGetField(DirectMemory.pointer(handle), "group", out, out + Long.BYTES, out + 2 * Long.BYTES);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                }
+                int length = DirectMemory.getInt(out);
+                long data = DirectMemory.getLong(out + Long.BYTES);
+                if ((data == 0) || (length < 2)) {
+                    return null;
+                }
+                int[] boundaries = new int[length];
+                DirectMemory.copy(data, boundaries, 0, length);
+                return boundaries;
+            } finally {
+                ScratchArena.release(out);
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
+    /**
+     * Serialize bin mappers of the dataset, so datasets with the same binning can be constructed in another process
+     * with createFromSerializedReference, without building this dataset again.
+     * @return serialized reference
+     * @throws LGBMException
+     */
+    public byte[] serializeReference() throws LGBMException {
+        if (!isClosed) {
+            long out = ScratchArena.acquire(2 * Long.BYTES);
+            try {
+                int result = lightgbmlibJNI.LGBM_DatasetSerializeReferenceToBinary(DirectMemory.pointer(handle), out, out + Long.BYTES);
+                if (result < 0) {
+                    throw new LGBMException(LGBM_GetLastError());
+                }
+                long buffer = DirectMemory.getLong(out);
+                int length = DirectMemory.getInt(out + Long.BYTES);
+                try {
+                    // out slots are already read, so the first one is reused for bytes
+                    return readByteBuffer(buffer, length, out);
+                } finally {
+                    lightgbmlibJNI.LGBM_ByteBufferFree(buffer);
+                }
+            } finally {
+                ScratchArena.release(out);
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
+    /**
+     * Create a dataset binned the same way as the serialized reference dataset.
+     * @param reference serialized reference from serializeReference
+     * @param data row-major matrix, as a 1D array
+     * @param rows number of rows
+     * @param cols number of cols
+     * @param labels labels, one per row
+     * @param parameters dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromSerializedReference(byte[] reference, float[] data, int rows, int cols, float[] labels, String parameters) throws LGBMException {
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.createFromSerializedReference(reference, rows, cols, parameters);
+        try {
+            builder.pushRows(data, rows, labels);
+            return builder.finish();
+        } catch (LGBMException e) {
+            builder.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a dataset binned the same way as the serialized reference dataset.
+     * @param reference serialized reference from serializeReference
+     * @param data row-major matrix, as a 1D array
+     * @param rows number of rows
+     * @param cols number of cols
+     * @param labels labels, one per row
+     * @param parameters dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     */
+    public static LGBMDataset createFromSerializedReference(byte[] reference, double[] data, int rows, int cols, float[] labels, String parameters) throws LGBMException {
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.createFromSerializedReference(reference, rows, cols, parameters);
+        try {
+            builder.pushRows(data, rows, labels);
+            return builder.finish();
+        } catch (LGBMException e) {
+            builder.close();
+            throw e;
+        }
+    }
+
+    /**
+     * LightGBM exposes the serialized bytes only with a per-byte LGBM_ByteBufferGetAt call, so they are copied
+     * one by one. A serialized reference is only a few bin mappers, so it's not a bottleneck.
+     *
+     * @param out 1-byte native slot for LGBM_ByteBufferGetAt output
+     */
+    private static byte[] readByteBuffer(long buffer, int length, long out) throws LGBMException {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            int code = lightgbmlibJNI.LGBM_ByteBufferGetAt(buffer, i, out);
+            if (code < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            result[i] = DirectMemory.getByte(out);
+        }
+        return result;
+    }
+
     /**
      * Dumps dataset into a file for debugging.
      * @param fileName
@@ -259,6 +887,32 @@ public class LGBMDataset implements AutoCloseable {
         }
     }
 
+    /**
+     * Sets a field (like label, weight, init_score or group) from Arrow arrays, exported with the Arrow C Data Interface.
+     * LightGBM takes ownership of the exported chunks and schema and releases them. If the call fails, chunks not
+     * released by LightGBM are moved back to their structs, to be released by the caller.
+     * @param fieldName
+     * @param chunks addresses of exported ArrowArray structs, like ArrowArray.memoryAddress()
+     * @param schema address of the exported ArrowSchema struct, like ArrowSchema.memoryAddress()
+     * @throws LGBMException
+     */
+    public void setFieldFromArrow(String fieldName, long[] chunks, long schema) throws LGBMException {
+        if (!isClosed) {
+            long moved = ArrowData.move(chunks);
+            try {
+                int result = lightgbmlibJNI.LGBM_DatasetSetFieldFromArrow(DirectMemory.pointer(handle), fieldName, chunks.length, moved, schema);
+                if (result < 0) {
+                    ArrowData.restore(chunks, moved);
+                    throw new LGBMException(LGBM_GetLastError());
+                }
+            } finally {
+                DirectMemory.free(moved);
+            }
+        } else {
+            throw new LGBMException("Dataset was already closed.");
+        }
+    }
+
     /**
      * Gets feature names from dataset, if dataset supports it.
      * @return list of feature names
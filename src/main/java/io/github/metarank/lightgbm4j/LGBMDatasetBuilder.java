@@ -0,0 +1,565 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.microsoft.ml.lightgbm.lightgbmlib.*;
+
+/**
+ * A streaming LGBMDataset constructor: rows are pushed in chunks together with their labels, weights, init scores
+ * and query ids, so the full dataset never has to be materialized on the JVM heap. Peak memory overhead is bounded
+ * by the chunk size, not the dataset size.
+ *
+ * Bin mappers are taken from a reference dataset (which is usually built from a small sample of rows with
+ * createFromMat), so all the chunks are binned the same way as the reference:
+ * <pre>
+ *     LGBMDataset sample = LGBMDataset.createFromMat(sampleRows, sampleSize, cols, true, "", null);
+ *     LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(sample, totalRows, cols);
+ *     while (hasNextChunk()) builder.pushRows(chunk, chunkRows, chunkLabels);
+ *     LGBMDataset dataset = builder.finish();
+ * </pre>
+ *
+ * For a parallel ingestion, create the builder with numThreads producers: each producer thread should use its own
+ * thread id (from 0 to numThreads-1), and push disjoint row ranges with explicit start rows:
+ * <pre>
+ *     LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(sample, totalRows, cols, false, false, false, 1, partitions.size());
+ *     // in the producer thread number tid, reading its own partition
+ *     builder.pushRows(tid, partition.startRow, chunk, chunkRows, chunkLabels, null, null, null);
+ *     // after all the producers are done
+ *     LGBMDataset dataset = builder.finish();
+ * </pre>
+ * The same thread id should not be used concurrently from multiple threads. The appending pushRows methods without
+ * explicit start rows use the thread id 0, and are intended for a single producer.
+ *
+ * Until finish() is called, the builder owns the native dataset handle, so call close() if the construction was aborted.
+ */
+public class LGBMDatasetBuilder implements AutoCloseable {
+    private final SWIGTYPE_p_void handle;
+    private final long handleAddress;
+    private final long numTotalRows;
+    private final int numCols;
+    private final boolean hasWeights;
+    private final boolean hasInitScores;
+    private final boolean hasQueries;
+    private final int numClasses;
+    private final int numThreads;
+    private final AtomicLong pushedRows = new AtomicLong(0);
+    // start row for the appending pushRows methods
+    private long nextRow = 0;
+    private volatile boolean isFinished = false;
+
+    LGBMDatasetBuilder(SWIGTYPE_p_void handle, long numTotalRows, int numCols, boolean hasWeights, boolean hasInitScores, boolean hasQueries, int numClasses, int numThreads) {
+        this.handle = handle;
+        this.handleAddress = DirectMemory.pointer(handle);
+        this.numTotalRows = numTotalRows;
+        this.numCols = numCols;
+        this.hasWeights = hasWeights;
+        this.hasInitScores = hasInitScores;
+        this.hasQueries = hasQueries;
+        this.numClasses = numClasses;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Create a builder for a dataset with only labels.
+     *
+     * @param reference    dataset to take bin mappers from
+     * @param numTotalRows total number of rows in the dataset
+     * @param numCols      number of columns in each pushed row
+     * @return builder
+     * @throws LGBMException
+     */
+    public static LGBMDatasetBuilder create(LGBMDataset reference, long numTotalRows, int numCols) throws LGBMException {
+        return create(reference, numTotalRows, numCols, false, false, false, 1, 1);
+    }
+
+    /**
+     * Create a builder for a dataset with a single producer thread.
+     *
+     * @param reference     dataset to take bin mappers from
+     * @param numTotalRows  total number of rows in the dataset
+     * @param numCols       number of columns in each pushed row
+     * @param hasWeights    will each chunk have weights?
+     * @param hasInitScores will each chunk have init scores?
+     * @param hasQueries    will each chunk have query ids?
+     * @param numClasses    number of classes, used for the init score layout
+     * @return builder
+     * @throws LGBMException
+     */
+    public static LGBMDatasetBuilder create(LGBMDataset reference, long numTotalRows, int numCols, boolean hasWeights, boolean hasInitScores, boolean hasQueries, int numClasses) throws LGBMException {
+        return create(reference, numTotalRows, numCols, hasWeights, hasInitScores, hasQueries, numClasses, 1);
+    }
+
+    /**
+     * Create a builder for a dataset, which is filled by multiple producer threads concurrently.
+     *
+     * @param reference     dataset to take bin mappers from
+     * @param numTotalRows  total number of rows in the dataset
+     * @param numCols       number of columns in each pushed row
+     * @param hasWeights    will each chunk have weights?
+     * @param hasInitScores will each chunk have init scores?
+     * @param hasQueries    will each chunk have query ids?
+     * @param numClasses    number of classes, used for the init score layout
+     * @param numThreads    number of producer threads
+     * @return builder
+     * @throws LGBMException
+     */
+    public static LGBMDatasetBuilder create(LGBMDataset reference, long numTotalRows, int numCols, boolean hasWeights, boolean hasInitScores, boolean hasQueries, int numClasses, int numThreads) throws LGBMException {
+        if (numThreads < 1) {
+            throw new LGBMException("number of threads should be positive, but got " + numThreads);
+        }
+        if ((numTotalRows <= 0) || (numTotalRows > Integer.MAX_VALUE)) {
+            throw new LGBMException("dataset should have between 1 and " + Integer.MAX_VALUE + " rows, but got " + numTotalRows);
+        }
+        if (numClasses < 1) {
+            throw new LGBMException("number of classes should be positive, but got " + numClasses);
+        }
+        SWIGTYPE_p_p_void out = new_voidpp();
+        int result = LGBM_DatasetCreateByReference(reference.handle, numTotalRows, out);
+        if (result < 0) {
+            delete_voidpp(out);
+            throw new LGBMException(LGBM_GetLastError());
+        }
+        SWIGTYPE_p_void handle = voidpp_value(out);
+        delete_voidpp(out);
+        return init(handle, numTotalRows, numCols, hasWeights, hasInitScores, hasQueries, numClasses, numThreads);
+    }
+
+    /**
+     * Create a builder for a dataset with only labels, taking bin mappers from a serialized reference dataset
+     * (see LGBMDataset.serializeReference).
+     *
+     * @param reference    serialized reference dataset
+     * @param numTotalRows total number of rows in the dataset
+     * @param numCols      number of columns in each pushed row
+     * @param parameters   dataset parameters
+     * @return builder
+     * @throws LGBMException
+     */
+    public static LGBMDatasetBuilder createFromSerializedReference(byte[] reference, long numTotalRows, int numCols, String parameters) throws LGBMException {
+        return createFromSerializedReference(reference, numTotalRows, numCols, false, false, false, 1, 1, parameters);
+    }
+
+    /**
+     * Create a builder for a dataset, taking bin mappers from a serialized reference dataset
+     * (see LGBMDataset.serializeReference).
+     *
+     * @param reference     serialized reference dataset
+     * @param numTotalRows  total number of rows in the dataset
+     * @param numCols       number of columns in each pushed row
+     * @param hasWeights    will each chunk have weights?
+     * @param hasInitScores will each chunk have init scores?
+     * @param hasQueries    will each chunk have query ids?
+     * @param numClasses    number of classes, used for the init score layout
+     * @param numThreads    number of producer threads
+     * @param parameters    dataset parameters
+     * @return builder
+     * @throws LGBMException
+     */
+    public static LGBMDatasetBuilder createFromSerializedReference(byte[] reference, long numTotalRows, int numCols, boolean hasWeights, boolean hasInitScores, boolean hasQueries, int numClasses, int numThreads, String parameters) throws LGBMException {
+        if (numThreads < 1) {
+            throw new LGBMException("number of threads should be positive, but got " + numThreads);
+        }
+        if ((numTotalRows <= 0) || (numTotalRows > Integer.MAX_VALUE)) {
+            throw new LGBMException("dataset should have between 1 and " + Integer.MAX_VALUE + " rows, but got " + numTotalRows);
+        }
+        if (numClasses < 1) {
+            throw new LGBMException("number of classes should be positive, but got " + numClasses);
+        }
+        // reference bytes, then the out handle slot
+        long buffer = DirectMemory.allocate(ScratchArena.align(reference.length) + Long.BYTES);
+        long out = buffer + ScratchArena.align(reference.length);
+        try {
+            DirectMemory.copy(reference, 0, buffer, reference.length);
+            int result = lightgbmlibJNI.LGBM_DatasetCreateFromSerializedReference(buffer, reference.length, numTotalRows, numClasses, parameters, out);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            return init(DirectMemory.wrap(DirectMemory.getLong(out)), numTotalRows, numCols, hasWeights, hasInitScores, hasQueries, numClasses, numThreads);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Initialize streaming for an empty dataset with already constructed bin mappers. Takes the ownership
+     * of the dataset handle, and frees it on failure.
+     */
+    static LGBMDatasetBuilder init(SWIGTYPE_p_void handle, long numTotalRows, int numCols, boolean hasWeights, boolean hasInitScores, boolean hasQueries, int numClasses, int numThreads) throws LGBMException {
+        // -1 means the default OpenMP thread count. With multiple producers each push is single-threaded,
+        // so parallelism is defined by the number of producers and cores are not oversubscribed.
+        int ompThreads = numThreads > 1 ? 1 : -1;
+        int result = LGBM_DatasetInitStreaming(handle, hasWeights ? 1 : 0, hasInitScores ? 1 : 0, hasQueries ? 1 : 0, numClasses, numThreads, ompThreads);
+        if (result == 0) {
+            // the dataset is finalized explicitly by finish(), so a partially pushed one is never used by mistake
+            result = LGBM_DatasetSetWaitForManualFinish(handle, 1);
+        }
+        if (result < 0) {
+            String error = LGBM_GetLastError();
+            LGBM_DatasetFree(handle);
+            throw new LGBMException(error);
+        }
+        return new LGBMDatasetBuilder(handle, numTotalRows, numCols, hasWeights, hasInitScores, hasQueries, numClasses, numThreads);
+    }
+
+    /**
+     * Append a chunk of rows with labels only.
+     *
+     * @param data   row-major chunk of rows * numCols values
+     * @param rows   number of rows in the chunk
+     * @param labels labels, one per row
+     * @throws LGBMException
+     */
+    public void pushRows(float[] data, int rows, float[] labels) throws LGBMException {
+        pushRows(data, rows, labels, null, null, null);
+    }
+
+    /**
+     * Append a chunk of rows with metadata.
+     *
+     * @param data       row-major chunk of rows * numCols values
+     * @param rows       number of rows in the chunk
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRows(float[] data, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        pushRows(0, nextRow, data, rows, labels, weights, initScores, queries);
+        nextRow += rows;
+    }
+
+    /**
+     * Push a chunk of rows with metadata to the explicit position in the dataset. Can be called concurrently
+     * by multiple producer threads with different thread ids.
+     *
+     * @param tid        producer thread id, from 0 to numThreads-1
+     * @param startRow   position of the first row of the chunk in the dataset
+     * @param data       row-major chunk of rows * numCols values
+     * @param rows       number of rows in the chunk
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRows(int tid, long startRow, float[] data, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        checkChunk(tid, startRow, rows, labels, weights, initScores, queries);
+        long dataBytes = checkDense(data.length, rows) * Float.BYTES;
+        long base = ScratchArena.acquire(ScratchArena.align(dataBytes) + metadataBytes(rows));
+        try {
+            DirectMemory.copy(data, 0, base, rows * numCols);
+            long metadata = copyMetadata(base + ScratchArena.align(dataBytes), rows, labels, weights, initScores, queries);
+            pushDense(tid, startRow, base, C_API_DTYPE_FLOAT32, rows, metadata, weights != null, initScores != null, queries != null);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    /**
+     * Append a chunk of rows with labels only.
+     *
+     * @param data   row-major chunk of rows * numCols values
+     * @param rows   number of rows in the chunk
+     * @param labels labels, one per row
+     * @throws LGBMException
+     */
+    public void pushRows(double[] data, int rows, float[] labels) throws LGBMException {
+        pushRows(data, rows, labels, null, null, null);
+    }
+
+    /**
+     * Append a chunk of rows with metadata.
+     *
+     * @param data       row-major chunk of rows * numCols values
+     * @param rows       number of rows in the chunk
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRows(double[] data, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        pushRows(0, nextRow, data, rows, labels, weights, initScores, queries);
+        nextRow += rows;
+    }
+
+    /**
+     * Push a chunk of rows with metadata to the explicit position in the dataset. Can be called concurrently
+     * by multiple producer threads with different thread ids.
+     *
+     * @param tid        producer thread id, from 0 to numThreads-1
+     * @param startRow   position of the first row of the chunk in the dataset
+     * @param data       row-major chunk of rows * numCols values
+     * @param rows       number of rows in the chunk
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRows(int tid, long startRow, double[] data, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        checkChunk(tid, startRow, rows, labels, weights, initScores, queries);
+        long dataBytes = checkDense(data.length, rows) * Double.BYTES;
+        long base = ScratchArena.acquire(ScratchArena.align(dataBytes) + metadataBytes(rows));
+        try {
+            DirectMemory.copy(data, 0, base, rows * numCols);
+            long metadata = copyMetadata(base + ScratchArena.align(dataBytes), rows, labels, weights, initScores, queries);
+            pushDense(tid, startRow, base, C_API_DTYPE_FLOAT64, rows, metadata, weights != null, initScores != null, queries != null);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    /**
+     * Push a sparse chunk of rows in a CSR format with metadata to the explicit position in the dataset. Can be
+     * called concurrently by multiple producer threads with different thread ids.
+     *
+     * @param tid        producer thread id, from 0 to numThreads-1
+     * @param startRow   position of the first row of the chunk in the dataset
+     * @param indptr     row offsets in the indices and values arrays, should have rows + 1 elements
+     * @param indices    column indices of non-zero values
+     * @param values     non-zero values
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRowsCSR(int tid, long startRow, int[] indptr, int[] indices, float[] values, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        int nelem = checkCSR(indptr, indices.length, values.length);
+        int rows = indptr.length - 1;
+        checkChunk(tid, startRow, rows, labels, weights, initScores, queries);
+        long valueBytes = (long) nelem * Float.BYTES;
+        long base = csrScratch(indptr, indices, nelem, valueBytes, rows);
+        try {
+            long valuesAddress = base + ScratchArena.align((long) indptr.length * Integer.BYTES) + ScratchArena.align((long) nelem * Integer.BYTES);
+            DirectMemory.copy(values, 0, valuesAddress, nelem);
+            long metadata = copyMetadata(valuesAddress + ScratchArena.align(valueBytes), rows, labels, weights, initScores, queries);
+            pushCSR(tid, startRow, base, indptr.length, nelem, valuesAddress, C_API_DTYPE_FLOAT32, metadata, weights != null, initScores != null, queries != null);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    /**
+     * Push a sparse chunk of rows in a CSR format with metadata to the explicit position in the dataset. Can be
+     * called concurrently by multiple producer threads with different thread ids.
+     *
+     * @param tid        producer thread id, from 0 to numThreads-1
+     * @param startRow   position of the first row of the chunk in the dataset
+     * @param indptr     row offsets in the indices and values arrays, should have rows + 1 elements
+     * @param indices    column indices of non-zero values
+     * @param values     non-zero values
+     * @param labels     labels, one per row
+     * @param weights    weights, one per row. Required only if the builder was created with hasWeights.
+     * @param initScores init scores, rows * numClasses values in a class-major order. Required only if the builder was created with hasInitScores.
+     * @param queries    query ids, one per row. Required only if the builder was created with hasQueries.
+     * @throws LGBMException
+     */
+    public void pushRowsCSR(int tid, long startRow, int[] indptr, int[] indices, double[] values, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        int nelem = checkCSR(indptr, indices.length, values.length);
+        int rows = indptr.length - 1;
+        checkChunk(tid, startRow, rows, labels, weights, initScores, queries);
+        long valueBytes = (long) nelem * Double.BYTES;
+        long base = csrScratch(indptr, indices, nelem, valueBytes, rows);
+        try {
+            long valuesAddress = base + ScratchArena.align((long) indptr.length * Integer.BYTES) + ScratchArena.align((long) nelem * Integer.BYTES);
+            DirectMemory.copy(values, 0, valuesAddress, nelem);
+            long metadata = copyMetadata(valuesAddress + ScratchArena.align(valueBytes), rows, labels, weights, initScores, queries);
+            pushCSR(tid, startRow, base, indptr.length, nelem, valuesAddress, C_API_DTYPE_FLOAT64, metadata, weights != null, initScores != null, queries != null);
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    /**
+     * Finalize the dataset after all the rows were pushed. The builder cannot be used after this call,
+     * and the returned dataset should be closed by the caller.
+     *
+     * @return dataset
+     * @throws LGBMException
+     */
+    public LGBMDataset finish() throws LGBMException {
+        if (!isFinished) {
+            long pushed = pushedRows.get();
+            if (pushed != numTotalRows) {
+                throw new LGBMException("dataset expects " + numTotalRows + " rows, but only " + pushed + " were pushed");
+            }
+            int result = LGBM_DatasetMarkFinished(handle);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            isFinished = true;
+            return new LGBMDataset(handle);
+        } else {
+            throw new LGBMException("Dataset builder was already finished");
+        }
+    }
+
+    /**
+     * @return number of rows pushed so far
+     */
+    public long getPushedRows() {
+        return pushedRows.get();
+    }
+
+    /**
+     * Deallocate the native dataset, if it was not finished. Does nothing after finish().
+     *
+     * @throws LGBMException
+     */
+    @Override
+    public void close() throws LGBMException {
+        if (!isFinished) {
+            isFinished = true;
+            int result = LGBM_DatasetFree(handle);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+        }
+    }
+
+    private void checkChunk(int tid, long startRow, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) throws LGBMException {
+        if (isFinished) {
+            throw new LGBMException("Dataset builder was already finished");
+        }
+        if ((tid < 0) || (tid >= numThreads)) {
+            throw new LGBMException("thread id should be between 0 and " + (numThreads - 1) + ", but got " + tid);
+        }
+        if ((startRow < 0) || (startRow + rows > numTotalRows)) {
+            throw new LGBMException("dataset expects " + numTotalRows + " rows, but got rows from " + startRow + " to " + (startRow + rows));
+        }
+        checkField("labels", labels, labels == null ? 0 : labels.length, true, rows);
+        checkField("weights", weights, weights == null ? 0 : weights.length, hasWeights, rows);
+        checkField("initScores", initScores, initScores == null ? 0 : initScores.length, hasInitScores, (long) rows * numClasses);
+        checkField("queries", queries, queries == null ? 0 : queries.length, hasQueries, rows);
+    }
+
+    /**
+     * @return number of values in the chunk
+     */
+    private long checkDense(int dataLength, int rows) throws LGBMException {
+        long size = (long) rows * numCols;
+        if (size > dataLength) {
+            throw new LGBMException("data array has " + dataLength + " elements, but " + rows + "x" + numCols + " matrix was expected");
+        }
+        return size;
+    }
+
+    /**
+     * @return number of non-zero values in the chunk
+     */
+    private static int checkCSR(int[] indptr, int indicesLength, int valuesLength) throws LGBMException {
+        if (indptr.length < 2) {
+            throw new LGBMException("indptr should have at least 2 elements, but got " + indptr.length);
+        }
+        int nelem = indptr[indptr.length - 1];
+        if ((indicesLength < nelem) || (valuesLength < nelem)) {
+            throw new LGBMException("indices and values should have at least " + nelem + " elements");
+        }
+        return nelem;
+    }
+
+    private static void checkField(String name, Object field, int length, boolean expected, long size) throws LGBMException {
+        if (expected && (field == null)) {
+            throw new LGBMException(name + " are required for this dataset");
+        } else if (!expected && (field != null)) {
+            throw new LGBMException(name + " are not expected, as the builder was created without them");
+        } else if (expected && (length < size)) {
+            throw new LGBMException(name + " should have at least " + size + " elements, but got " + length);
+        }
+    }
+
+    /**
+     * Metadata layout in the scratch arena: labels, weights, init scores, queries.
+     */
+    private long metadataBytes(int rows) {
+        return ScratchArena.align((long) rows * Float.BYTES) * 2
+                + (long) rows * numClasses * Double.BYTES
+                + ScratchArena.align((long) rows * Integer.BYTES);
+    }
+
+    /**
+     * @return address of the copied metadata
+     */
+    private long copyMetadata(long address, int rows, float[] labels, float[] weights, double[] initScores, int[] queries) {
+        DirectMemory.copy(labels, 0, address, rows);
+        if (weights != null) DirectMemory.copy(weights, 0, weightAddress(address, rows), rows);
+        if (initScores != null) DirectMemory.copy(initScores, 0, initScoreAddress(address, rows), rows * numClasses);
+        if (queries != null) DirectMemory.copy(queries, 0, queryAddress(address, rows), rows);
+        return address;
+    }
+
+    private static long weightAddress(long metadata, int rows) {
+        return metadata + ScratchArena.align((long) rows * Float.BYTES);
+    }
+
+    private static long initScoreAddress(long metadata, int rows) {
+        return weightAddress(metadata, rows) + ScratchArena.align((long) rows * Float.BYTES);
+    }
+
+    private long queryAddress(long metadata, int rows) {
+        return initScoreAddress(metadata, rows) + (long) rows * numClasses * Double.BYTES;
+    }
+
+    /**
+     * Sparse chunk layout in the scratch arena: indptr, indices, values, metadata. Indptr and indices are copied.
+     *
+     * @return arena base address, to be released by the caller
+     */
+    private long csrScratch(int[] indptr, int[] indices, int nelem, long valueBytes, int rows) throws LGBMException {
+        long indptrBytes = ScratchArena.align((long) indptr.length * Integer.BYTES);
+        long indicesBytes = ScratchArena.align((long) nelem * Integer.BYTES);
+        long base = ScratchArena.acquire(indptrBytes + indicesBytes + ScratchArena.align(valueBytes) + metadataBytes(rows));
+        DirectMemory.copy(indptr, 0, base, indptr.length);
+        DirectMemory.copy(indices, 0, base + indptrBytes, nelem);
+        return base;
+    }
+
+    private void pushDense(int tid, long startRow, long data, int dtype, int rows, long metadata, boolean withWeights, boolean withInitScores, boolean withQueries) throws LGBMException {
+        int result = lightgbmlibJNI.LGBM_DatasetPushRowsWithMetadata(
+                handleAddress,
+                data,
+                dtype,
+                rows,
+                numCols,
+                (int) startRow,
+                metadata,
+                withWeights ? weightAddress(metadata, rows) : 0,
+                withInitScores ? initScoreAddress(metadata, rows) : 0,
+                withQueries ? queryAddress(metadata, rows) : 0,
+                tid
+        );
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        }
+        pushedRows.addAndGet(rows);
+    }
+
+    private void pushCSR(int tid, long startRow, long base, int nindptr, int nelem, long valuesAddress, int dtype, long metadata, boolean withWeights, boolean withInitScores, boolean withQueries) throws LGBMException {
+        int rows = nindptr - 1;
+        int result = lightgbmlibJNI.LGBM_DatasetPushRowsByCSRWithMetadata(
+                handleAddress,
+                base,
+                C_API_DTYPE_INT32,
+                base + ScratchArena.align((long) nindptr * Integer.BYTES),
+                valuesAddress,
+                dtype,
+                nindptr,
+                nelem,
+                startRow,
+                metadata,
+                withWeights ? weightAddress(metadata, rows) : 0,
+                withInitScores ? initScoreAddress(metadata, rows) : 0,
+                withQueries ? queryAddress(metadata, rows) : 0,
+                tid
+        );
+        if (result < 0) {
+            throw new LGBMException(LGBM_GetLastError());
+        }
+        pushedRows.addAndGet(rows);
+    }
+}
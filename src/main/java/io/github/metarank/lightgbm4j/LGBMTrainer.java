@@ -0,0 +1,213 @@
+package io.github.metarank.lightgbm4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the boosting loop for a booster: evaluates validation datasets only every N iterations, stops early when the
+ * first metric of the first validation dataset has not improved, and notifies callbacks after each iteration:
+ * <pre>
+ *     LGBMBooster booster = LGBMBooster.create(train, "objective=binary metric=auc");
+ *     LGBMTrainer.Result result = new LGBMTrainer(booster)
+ *             .addValidData(valid)
+ *             .evalEvery(5)
+ *             .earlyStopping(20)
+ *             .train(1000);
+ *     String model = booster.saveModelToString(0, 0, LGBMBooster.FeatureImportanceType.GAIN);
+ * </pre>
+ *
+ * Metric names are fetched once and evaluation arrays are reused between iterations, so the loop does not allocate.
+ * With early stopping enabled, trees after the best iteration are removed from the booster with
+ * LGBM_BoosterRollbackOneIter, so the saved model contains only the useful trees. Without early stopping the model
+ * is kept as is, and the best iteration can still be used with saveModelToString(0, result.bestIteration, ...).
+ */
+public class LGBMTrainer {
+    private final LGBMBooster booster;
+    private final List<Callback> callbacks = new ArrayList<>();
+    private int numValid = 0;
+    private int evalEvery = 1;
+    private int earlyStoppingRounds = 0;
+
+    /**
+     * Why the training loop was stopped.
+     */
+    public enum StopReason {
+        // all the requested iterations were done
+        COMPLETED,
+        // the first metric has not improved for earlyStoppingRounds iterations
+        EARLY_STOPPING,
+        // LightGBM cannot add more splits
+        FINISHED,
+        // one of the callbacks asked to stop
+        CALLBACK
+    }
+
+    /**
+     * Called after each boosting iteration.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * @param iteration 1-based index of the finished iteration, including iterations of the init model
+         * @param evals     metrics for each validation dataset (evals[0] is for the 1st validation dataset),
+         *                  or null if this iteration was not evaluated. Arrays are reused between iterations,
+         *                  so they should be copied to be kept.
+         * @return true to stop the training
+         * @throws LGBMException
+         */
+        boolean onIteration(int iteration, double[][] evals) throws LGBMException;
+    }
+
+    /**
+     * Training loop summary.
+     */
+    public static class Result {
+        public final StopReason stopReason;
+        // number of iterations in the model after training
+        public final int iterations;
+        // 1-based iteration with the best value of the first metric, 0 if nothing was evaluated
+        public final int bestIteration;
+        // metric names of validation datasets
+        public final String[] metricNames;
+        // metrics of the 1st validation dataset at the best iteration, null if nothing was evaluated
+        public final double[] bestScore;
+
+        Result(StopReason stopReason, int iterations, int bestIteration, String[] metricNames, double[] bestScore) {
+            this.stopReason = stopReason;
+            this.iterations = iterations;
+            this.bestIteration = bestIteration;
+            this.metricNames = metricNames;
+            this.bestScore = bestScore;
+        }
+    }
+
+    /**
+     * @param booster booster to train, which may already contain trees of an init model
+     */
+    public LGBMTrainer(LGBMBooster booster) {
+        this.booster = booster;
+    }
+
+    /**
+     * Add a validation dataset to the booster.
+     *
+     * @param dataset validation dataset
+     * @return this trainer
+     * @throws LGBMException
+     */
+    public LGBMTrainer addValidData(LGBMDataset dataset) throws LGBMException {
+        booster.addValidData(dataset);
+        numValid++;
+        return this;
+    }
+
+    /**
+     * Evaluate validation datasets only every N-th iteration (and the last one). Early stopping rounds are counted
+     * in iterations, but checked only on evaluated ones, so with a period larger than the early stopping rounds the
+     * training stops at the first evaluated iteration which is at least that many iterations past the best one.
+     *
+     * @param iterations evaluation period, 1 by default
+     * @return this trainer
+     * @throws LGBMException
+     */
+    public LGBMTrainer evalEvery(int iterations) throws LGBMException {
+        if (iterations < 1) {
+            throw new LGBMException("evaluation period should be positive, but got " + iterations);
+        }
+        this.evalEvery = iterations;
+        return this;
+    }
+
+    /**
+     * Stop training when the first metric of the first validation dataset has not improved for this number of iterations,
+     * and roll the booster back to the best iteration.
+     *
+     * @param rounds number of iterations without improvement, 0 to disable
+     * @return this trainer
+     * @throws LGBMException
+     */
+    public LGBMTrainer earlyStopping(int rounds) throws LGBMException {
+        if (rounds < 0) {
+            throw new LGBMException("early stopping rounds should not be negative, but got " + rounds);
+        }
+        this.earlyStoppingRounds = rounds;
+        return this;
+    }
+
+    /**
+     * @param callback called after each iteration, in the order of addition
+     * @return this trainer
+     */
+    public LGBMTrainer addCallback(Callback callback) {
+        callbacks.add(callback);
+        return this;
+    }
+
+    /**
+     * Run the training loop.
+     *
+     * @param numIterations max number of boosting iterations to add
+     * @return training summary
+     * @throws LGBMException
+     */
+    public Result train(int numIterations) throws LGBMException {
+        if (numIterations < 1) {
+            throw new LGBMException("number of iterations should be positive, but got " + numIterations);
+        }
+        if ((earlyStoppingRounds > 0) && (numValid == 0)) {
+            throw new LGBMException("early stopping requires at least one validation dataset");
+        }
+        String[] metricNames = numValid > 0 ? booster.getEvalNames() : new String[0];
+        if ((earlyStoppingRounds > 0) && (metricNames.length == 0)) {
+            throw new LGBMException("early stopping requires at least one metric");
+        }
+        boolean higherBetter = (metricNames.length > 0) && CrossValidationRunner.isHigherBetter(metricNames[0]);
+        double[][] evals = new double[numValid][metricNames.length];
+        double[] bestScore = null;
+        int bestIteration = 0;
+        int startIteration = booster.getCurrentIteration();
+        int iteration = startIteration;
+        StopReason reason = StopReason.COMPLETED;
+        for (int i = 1; i <= numIterations; i++) {
+            if (booster.updateOneIter()) {
+                reason = StopReason.FINISHED;
+                break;
+            }
+            iteration = startIteration + i;
+            boolean evaluate = (metricNames.length > 0) && ((i % evalEvery == 0) || (i == numIterations));
+            if (evaluate) {
+                for (int valid = 0; valid < numValid; valid++) {
+                    booster.getEval(valid + 1, evals[valid]);
+                }
+                double value = evals[0][0];
+                if ((bestScore == null) || (higherBetter ? value > bestScore[0] : value < bestScore[0])) {
+                    bestIteration = iteration;
+                    bestScore = evals[0].clone();
+                }
+            }
+            if (notifyCallbacks(iteration, evaluate ? evals : null)) {
+                reason = StopReason.CALLBACK;
+                break;
+            }
+            if (evaluate && (earlyStoppingRounds > 0) && (iteration - bestIteration >= earlyStoppingRounds)) {
+                reason = StopReason.EARLY_STOPPING;
+                break;
+            }
+        }
+        if ((earlyStoppingRounds > 0) && (bestIteration > 0)) {
+            for (int i = iteration; i > bestIteration; i--) {
+                booster.rollbackOneIter();
+            }
+            iteration = bestIteration;
+        }
+        return new Result(reason, iteration, bestIteration, metricNames, bestScore);
+    }
+
+    private boolean notifyCallbacks(int iteration, double[][] evals) throws LGBMException {
+        boolean stop = false;
+        for (Callback callback : callbacks) {
+            stop |= callback.onIteration(iteration, evals);
+        }
+        return stop;
+    }
+}
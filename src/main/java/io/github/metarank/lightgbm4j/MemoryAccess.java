@@ -0,0 +1,404 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.lightgbmlibJNI;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+
+/**
+ * The only place which touches JDK internals. Raw memory access is done with sun.misc.Unsafe, which is looked up
+ * reflectively (so there is no compile-time dependency on it and the build is warning-free with --release 8), and
+ * is available on all HotSpot-based JDKs from 8 up to at least 21.
+ *
+ * If Unsafe is not available (or disabled with -Dlightgbm4j.unsafe=false), a fallback is used: memory is
+ * accessed element by element with SWIG array helpers of the native library (which is slow, but correct), and
+ * direct buffer addresses are read with plain reflection, which needs --add-opens java.base/java.nio=ALL-UNNAMED on JDK 16+.
+ */
+abstract class MemoryAccess {
+    static final String UNSAFE_PROPERTY = "lightgbm4j.unsafe";
+
+    static MemoryAccess load() {
+        if (!"false".equals(System.getProperty(UNSAFE_PROPERTY))) {
+            try {
+                return new UnsafeAccess();
+            } catch (Throwable e) {
+                // no Unsafe on this JVM, use the fallback
+            }
+        }
+        return new SwigAccess();
+    }
+
+    /**
+     * @return true if the fast Unsafe-based implementation is used
+     */
+    abstract boolean isUnsafe();
+
+    abstract long getLong(long address);
+
+    abstract double getDouble(long address);
+
+    abstract int getInt(long address);
+
+    abstract byte getByte(long address);
+
+    abstract void putLong(long address, long value);
+
+    abstract void putInt(long address, int value);
+
+    abstract long allocate(long bytes);
+
+    abstract void free(long address);
+
+    /**
+     * @return native address of the first byte of a direct buffer
+     */
+    abstract long bufferAddress(Buffer buffer) throws LGBMException;
+
+    abstract void copy(float[] src, int srcOffset, long dstAddress, int length);
+
+    abstract void copy(double[] src, int srcOffset, long dstAddress, int length);
+
+    abstract void copy(int[] src, int srcOffset, long dstAddress, int length);
+
+    abstract void copy(long[] src, int srcOffset, long dstAddress, int length);
+
+    abstract void copy(byte[] src, int srcOffset, long dstAddress, int length);
+
+    abstract void copy(long srcAddress, long dstAddress, long bytes);
+
+    abstract void copy(long srcAddress, double[] dst, int dstOffset, int length);
+
+    abstract void copy(long srcAddress, int[] dst, int dstOffset, int length);
+
+    abstract void copy(long srcAddress, byte[] dst, int dstOffset, int length);
+
+    /**
+     * sun.misc.Unsafe, called through method handles stored in static final fields, so the JIT inlines them
+     * into direct intrinsic calls.
+     */
+    static final class UnsafeAccess extends MemoryAccess {
+        // same threshold as java.nio.Bits uses, so a huge copy does not block safepoints for too long
+        private static final long COPY_CHUNK_SIZE = 1024L * 1024L;
+
+        private static final MethodHandle GET_LONG;
+        private static final MethodHandle GET_DOUBLE;
+        private static final MethodHandle GET_INT;
+        private static final MethodHandle GET_BYTE;
+        private static final MethodHandle PUT_LONG;
+        private static final MethodHandle PUT_INT;
+        private static final MethodHandle ALLOCATE;
+        private static final MethodHandle FREE;
+        private static final MethodHandle COPY;
+        private static final MethodHandle GET_OBJECT_LONG;
+        private static final long BUFFER_ADDRESS_OFFSET;
+        private static final long FLOAT_ARRAY_OFFSET;
+        private static final long DOUBLE_ARRAY_OFFSET;
+        private static final long INT_ARRAY_OFFSET;
+        private static final long LONG_ARRAY_OFFSET;
+        private static final long BYTE_ARRAY_OFFSET;
+
+        static {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field instance = unsafeClass.getDeclaredField("theUnsafe");
+                instance.setAccessible(true);
+                Object unsafe = instance.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                GET_LONG = lookup.findVirtual(unsafeClass, "getLong", MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+                GET_DOUBLE = lookup.findVirtual(unsafeClass, "getDouble", MethodType.methodType(double.class, long.class)).bindTo(unsafe);
+                GET_INT = lookup.findVirtual(unsafeClass, "getInt", MethodType.methodType(int.class, long.class)).bindTo(unsafe);
+                GET_BYTE = lookup.findVirtual(unsafeClass, "getByte", MethodType.methodType(byte.class, long.class)).bindTo(unsafe);
+                PUT_LONG = lookup.findVirtual(unsafeClass, "putLong", MethodType.methodType(void.class, long.class, long.class)).bindTo(unsafe);
+                PUT_INT = lookup.findVirtual(unsafeClass, "putInt", MethodType.methodType(void.class, long.class, int.class)).bindTo(unsafe);
+                ALLOCATE = lookup.findVirtual(unsafeClass, "allocateMemory", MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+                FREE = lookup.findVirtual(unsafeClass, "freeMemory", MethodType.methodType(void.class, long.class)).bindTo(unsafe);
+                COPY = lookup.findVirtual(unsafeClass, "copyMemory", MethodType.methodType(void.class, Object.class, long.class, Object.class, long.class, long.class)).bindTo(unsafe);
+                GET_OBJECT_LONG = lookup.findVirtual(unsafeClass, "getLong", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+                MethodHandle fieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset", MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+                MethodHandle arrayOffset = lookup.findVirtual(unsafeClass, "arrayBaseOffset", MethodType.methodType(int.class, Class.class)).bindTo(unsafe);
+                BUFFER_ADDRESS_OFFSET = (long) fieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+                FLOAT_ARRAY_OFFSET = (int) arrayOffset.invokeExact((Class<?>) float[].class);
+                DOUBLE_ARRAY_OFFSET = (int) arrayOffset.invokeExact((Class<?>) double[].class);
+                INT_ARRAY_OFFSET = (int) arrayOffset.invokeExact((Class<?>) int[].class);
+                LONG_ARRAY_OFFSET = (int) arrayOffset.invokeExact((Class<?>) long[].class);
+                BYTE_ARRAY_OFFSET = (int) arrayOffset.invokeExact((Class<?>) byte[].class);
+            } catch (Throwable e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        boolean isUnsafe() {
+            return true;
+        }
+
+        @Override
+        long getLong(long address) {
+            try {
+                return (long) GET_LONG.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        double getDouble(long address) {
+            try {
+                return (double) GET_DOUBLE.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        int getInt(long address) {
+            try {
+                return (int) GET_INT.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        byte getByte(long address) {
+            try {
+                return (byte) GET_BYTE.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void putLong(long address, long value) {
+            try {
+                PUT_LONG.invokeExact(address, value);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void putInt(long address, int value) {
+            try {
+                PUT_INT.invokeExact(address, value);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        long allocate(long bytes) {
+            try {
+                return (long) ALLOCATE.invokeExact(bytes);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void free(long address) {
+            try {
+                FREE.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        long bufferAddress(Buffer buffer) {
+            try {
+                return (long) GET_OBJECT_LONG.invokeExact((Object) buffer, BUFFER_ADDRESS_OFFSET);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void copy(float[] src, int srcOffset, long dstAddress, int length) {
+            copy(src, FLOAT_ARRAY_OFFSET + (long) srcOffset * Float.BYTES, null, dstAddress, (long) length * Float.BYTES);
+        }
+
+        @Override
+        void copy(double[] src, int srcOffset, long dstAddress, int length) {
+            copy(src, DOUBLE_ARRAY_OFFSET + (long) srcOffset * Double.BYTES, null, dstAddress, (long) length * Double.BYTES);
+        }
+
+        @Override
+        void copy(int[] src, int srcOffset, long dstAddress, int length) {
+            copy(src, INT_ARRAY_OFFSET + (long) srcOffset * Integer.BYTES, null, dstAddress, (long) length * Integer.BYTES);
+        }
+
+        @Override
+        void copy(long[] src, int srcOffset, long dstAddress, int length) {
+            copy(src, LONG_ARRAY_OFFSET + (long) srcOffset * Long.BYTES, null, dstAddress, (long) length * Long.BYTES);
+        }
+
+        @Override
+        void copy(byte[] src, int srcOffset, long dstAddress, int length) {
+            copy(src, BYTE_ARRAY_OFFSET + srcOffset, null, dstAddress, length);
+        }
+
+        @Override
+        void copy(long srcAddress, long dstAddress, long bytes) {
+            copy(null, srcAddress, null, dstAddress, bytes);
+        }
+
+        @Override
+        void copy(long srcAddress, double[] dst, int dstOffset, int length) {
+            copy(null, srcAddress, dst, DOUBLE_ARRAY_OFFSET + (long) dstOffset * Double.BYTES, (long) length * Double.BYTES);
+        }
+
+        @Override
+        void copy(long srcAddress, int[] dst, int dstOffset, int length) {
+            copy(null, srcAddress, dst, INT_ARRAY_OFFSET + (long) dstOffset * Integer.BYTES, (long) length * Integer.BYTES);
+        }
+
+        @Override
+        void copy(long srcAddress, byte[] dst, int dstOffset, int length) {
+            copy(null, srcAddress, dst, BYTE_ARRAY_OFFSET + dstOffset, length);
+        }
+
+        private static void copy(Object src, long srcOffset, Object dst, long dstOffset, long bytes) {
+            try {
+                while (bytes > 0) {
+                    long chunk = Math.min(bytes, COPY_CHUNK_SIZE);
+                    COPY.invokeExact(src, srcOffset, dst, dstOffset, chunk);
+                    srcOffset += chunk;
+                    dstOffset += chunk;
+                    bytes -= chunk;
+                }
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * A fallback without Unsafe: a JNI call per element with SWIG array helpers, like lightgbm4j did before
+     * the bulk copies were introduced. 64-bit values are accessed as void pointers, as LightGBM is only built for 64-bit.
+     */
+    static final class SwigAccess extends MemoryAccess {
+        private final Field bufferAddress;
+
+        SwigAccess() {
+            Field field;
+            try {
+                field = Buffer.class.getDeclaredField("address");
+                field.setAccessible(true);
+            } catch (Exception e) {
+                // no --add-opens java.base/java.nio on JDK 16+, so direct buffers cannot be used
+                field = null;
+            }
+            this.bufferAddress = field;
+        }
+
+        @Override
+        boolean isUnsafe() {
+            return false;
+        }
+
+        @Override
+        long getLong(long address) {
+            return lightgbmlibJNI.voidPtrArray_getitem(address, 0);
+        }
+
+        @Override
+        double getDouble(long address) {
+            return lightgbmlibJNI.doubleArray_getitem(address, 0);
+        }
+
+        @Override
+        int getInt(long address) {
+            return lightgbmlibJNI.intArray_getitem(address, 0);
+        }
+
+        @Override
+        byte getByte(long address) {
+            return (byte) lightgbmlibJNI.byteArray_getitem(address, 0);
+        }
+
+        @Override
+        void putLong(long address, long value) {
+            lightgbmlibJNI.voidPtrArray_setitem(address, 0, value);
+        }
+
+        @Override
+        void putInt(long address, int value) {
+            lightgbmlibJNI.intArray_setitem(address, 0, value);
+        }
+
+        @Override
+        long allocate(long bytes) {
+            long address = lightgbmlibJNI.new_byteArray(bytes);
+            if (address == 0) {
+                throw new OutOfMemoryError("cannot allocate " + bytes + " bytes of native memory");
+            }
+            return address;
+        }
+
+        @Override
+        void free(long address) {
+            lightgbmlibJNI.delete_byteArray(address);
+        }
+
+        @Override
+        long bufferAddress(Buffer buffer) throws LGBMException {
+            if (bufferAddress == null) {
+                throw new LGBMException("direct buffers need sun.misc.Unsafe or --add-opens java.base/java.nio=ALL-UNNAMED on this JVM");
+            }
+            try {
+                return bufferAddress.getLong(buffer);
+            } catch (IllegalAccessException e) {
+                throw new LGBMException("cannot get the direct buffer address: " + e.getMessage());
+            }
+        }
+
+        @Override
+        void copy(float[] src, int srcOffset, long dstAddress, int length) {
+            for (int i = 0; i < length; i++) lightgbmlibJNI.floatArray_setitem(dstAddress, i, src[srcOffset + i]);
+        }
+
+        @Override
+        void copy(double[] src, int srcOffset, long dstAddress, int length) {
+            for (int i = 0; i < length; i++) lightgbmlibJNI.doubleArray_setitem(dstAddress, i, src[srcOffset + i]);
+        }
+
+        @Override
+        void copy(int[] src, int srcOffset, long dstAddress, int length) {
+            for (int i = 0; i < length; i++) lightgbmlibJNI.intArray_setitem(dstAddress, i, src[srcOffset + i]);
+        }
+
+        @Override
+        void copy(long[] src, int srcOffset, long dstAddress, int length) {
+            for (int i = 0; i < length; i++) lightgbmlibJNI.voidPtrArray_setitem(dstAddress, i, src[srcOffset + i]);
+        }
+
+        @Override
+        void copy(byte[] src, int srcOffset, long dstAddress, int length) {
+            for (int i = 0; i < length; i++) lightgbmlibJNI.byteArray_setitem(dstAddress, i, (short) (src[srcOffset + i] & 0xFF));
+        }
+
+        @Override
+        void copy(long srcAddress, long dstAddress, long bytes) {
+            for (long i = 0; i < bytes; i++) lightgbmlibJNI.byteArray_setitem(dstAddress, i, lightgbmlibJNI.byteArray_getitem(srcAddress, i));
+        }
+
+        @Override
+        void copy(long srcAddress, double[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = lightgbmlibJNI.doubleArray_getitem(srcAddress, i);
+        }
+
+        @Override
+        void copy(long srcAddress, int[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = lightgbmlibJNI.intArray_getitem(srcAddress, i);
+        }
+
+        @Override
+        void copy(long srcAddress, byte[] dst, int dstOffset, int length) {
+            for (int i = 0; i < length; i++) dst[dstOffset + i] = (byte) lightgbmlibJNI.byteArray_getitem(srcAddress, i);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.metarank.lightgbm4j;
+
+/**
+ * A custom evaluation metric, computed by MetricEvaluator over a snapshot of validation predictions.
+ * Implementations are called concurrently for different snapshots, so they should be stateless.
+ */
+public interface Metric {
+    /**
+     * @return metric name, like ndcg@10
+     */
+    String getName();
+
+    /**
+     * Compute the metric value.
+     *
+     * @param data snapshot of predictions with labels and query boundaries of the dataset
+     * @return metric value
+     */
+    double evaluate(MetricData data);
+
+    /**
+     * @return is a larger metric value better?
+     */
+    default boolean isHigherBetter() {
+        return true;
+    }
+}
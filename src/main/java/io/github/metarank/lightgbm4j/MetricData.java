@@ -0,0 +1,59 @@
+package io.github.metarank.lightgbm4j;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A snapshot of predictions for a dataset, as returned by LGBMBooster.getPredict: for multiclass models the prediction
+ * for row i and class k is at the index k * numData + i. The prediction buffer is reused for later snapshots
+ * after all the metrics are computed, so it should not be retained by metrics.
+ */
+public final class MetricData {
+    private final int iteration;
+    private final DoubleBuffer predictions;
+    private final float[] labels;
+    private final int[] queryBoundaries;
+    private final int numData;
+    private final int numClasses;
+
+    MetricData(int iteration, DoubleBuffer predictions, float[] labels, int[] queryBoundaries, int numData, int numClasses) {
+        this.iteration = iteration;
+        this.predictions = predictions;
+        this.labels = labels;
+        this.queryBoundaries = queryBoundaries;
+        this.numData = numData;
+        this.numClasses = numClasses;
+    }
+
+    /**
+     * @return iteration of the snapshot
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @return predictions, should be read only with absolute get methods
+     */
+    public DoubleBuffer getPredictions() {
+        return predictions;
+    }
+
+    public float[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return query boundaries (numQueries + 1 row offsets), or null if the dataset has no queries
+     */
+    public int[] getQueryBoundaries() {
+        return queryBoundaries;
+    }
+
+    public int getNumData() {
+        return numData;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.metarank.lightgbm4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Evaluates custom metrics for validation datasets off the training thread. A call to evaluate() only snapshots
+ * current predictions into a reusable buffer (a single LGBM_BoosterGetPredict call per dataset), and metrics are
+ * computed on the executor, overlapping with the next updateOneIter:
+ * <pre>
+ *     MetricEvaluator evaluator = new MetricEvaluator(booster, executor);
+ *     evaluator.addValidData(1, validation, new NDCGMetric(5), new NDCGMetric(10));
+ *     for (int it = 1; it &lt;= 100; it++) {
+ *         booster.updateOneIter();
+ *         evaluator.evaluate(it).thenAccept(result -&gt; log(result));
+ *     }
+ * </pre>
+ *
+ * Each dataset has two snapshot buffers used in turns: if metrics for the snapshot taken two evaluations ago are
+ * still running, evaluate() waits for them, so the memory is bounded and slow metrics apply backpressure to training.
+ * evaluate() should be called from the training thread, between boosting iterations.
+ */
+public class MetricEvaluator {
+    private final LGBMBooster booster;
+    private final Executor executor;
+    private final List<ValidData> datasets = new ArrayList<>();
+
+    private static class ValidData {
+        final int dataIdx;
+        final Metric[] metrics;
+        final float[] labels;
+        final int[] queryBoundaries;
+        final int numData;
+        final int numClasses;
+        final DoubleBuffer[] buffers = new DoubleBuffer[2];
+        final CompletableFuture<?>[] pending = new CompletableFuture<?>[2];
+        int next = 0;
+
+        ValidData(int dataIdx, Metric[] metrics, float[] labels, int[] queryBoundaries, int numData, int numClasses) {
+            this.dataIdx = dataIdx;
+            this.metrics = metrics;
+            this.labels = labels;
+            this.queryBoundaries = queryBoundaries;
+            this.numData = numData;
+            this.numClasses = numClasses;
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(numData * numClasses * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }
+    }
+
+    /**
+     * Metric values for a single evaluation.
+     */
+    public static class Result {
+        public final int iteration;
+        // for each value: data index (1 for the first validation dataset), metric name and value
+        public final int[] dataIndices;
+        public final String[] names;
+        public final double[] values;
+
+        Result(int iteration, int[] dataIndices, String[] names, double[] values) {
+            this.iteration = iteration;
+            this.dataIndices = dataIndices;
+            this.names = names;
+            this.values = values;
+        }
+
+        /**
+         * @param dataIdx data index
+         * @param name    metric name
+         * @return metric value
+         * @throws IllegalArgumentException when there is no such metric
+         */
+        public double get(int dataIdx, String name) {
+            for (int i = 0; i < values.length; i++) {
+                if ((dataIndices[i] == dataIdx) && names[i].equals(name)) return values[i];
+            }
+            throw new IllegalArgumentException("no metric " + name + " for data index " + dataIdx);
+        }
+    }
+
+    /**
+     * @param booster  booster to take predictions from
+     * @param executor executor to compute metrics on
+     */
+    public MetricEvaluator(LGBMBooster booster, Executor executor) {
+        this.booster = booster;
+        this.executor = executor;
+    }
+
+    /**
+     * Register metrics for a dataset.
+     *
+     * @param dataIdx data index as in LGBMBooster.getPredict: 0 for training data, 1 for the first validation dataset, and so on
+     * @param dataset the dataset, already added to the booster
+     * @param metrics metrics to compute
+     * @throws LGBMException
+     */
+    public void addValidData(int dataIdx, LGBMDataset dataset, Metric... metrics) throws LGBMException {
+        int numData = dataset.getNumData();
+        int numClasses = booster.getNumClasses();
+        if ((long) numData * numClasses * Double.BYTES > Integer.MAX_VALUE) {
+            throw new LGBMException("dataset is too large for the prediction buffer: " + numData + " rows");
+        }
+        datasets.add(new ValidData(dataIdx, metrics, dataset.getFieldFloat("label"), dataset.getQueryBoundaries(), numData, numClasses));
+    }
+
+    /**
+     * Snapshot current predictions and compute all the registered metrics asynchronously.
+     *
+     * @param iteration current iteration, passed to the result
+     * @return future with metric values
+     * @throws LGBMException
+     */
+    public CompletableFuture<Result> evaluate(int iteration) throws LGBMException {
+        List<CompletableFuture<Double>> futures = new ArrayList<>();
+        List<Integer> dataIndices = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (ValidData data : datasets) {
+            int slot = data.next;
+            data.next = (slot + 1) % data.buffers.length;
+            if (data.pending[slot] != null) {
+                // metric failures are reported by the previous future, here we only wait for the buffer
+                data.pending[slot].handle((value, error) -> null).join();
+            }
+            booster.getPredict(data.dataIdx, data.buffers[slot]);
+            MetricData snapshot = new MetricData(iteration, data.buffers[slot], data.labels, data.queryBoundaries, data.numData, data.numClasses);
+            List<CompletableFuture<Double>> slotFutures = new ArrayList<>();
+            for (Metric metric : data.metrics) {
+                slotFutures.add(CompletableFuture.supplyAsync(() -> metric.evaluate(snapshot), executor));
+                dataIndices.add(data.dataIdx);
+                names.add(metric.getName());
+            }
+            data.pending[slot] = CompletableFuture.allOf(slotFutures.toArray(new CompletableFuture<?>[0]));
+            futures.addAll(slotFutures);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            double[] values = new double[futures.size()];
+            int[] indices = new int[futures.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = futures.get(i).join();
+                indices[i] = dataIndices.get(i);
+            }
+            return new Result(iteration, indices, names.toArray(new String[0]), values);
+        });
+    }
+}
@@ -0,0 +1,231 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batching front-end for single-row predictions. Concurrent score() calls are queued, and a background
+ * thread flushes them as a single row-major predictForMat call when either maxBatchSize rows are collected, or
+ * maxWaitNanos passed since the first queued row. So each request trades up to maxWaitNanos of extra latency for
+ * a much lower per-row overhead under heavy load.
+ *
+ * Futures are completed on the callback executor (the common ForkJoinPool by default), one task per batch, so
+ * dependent actions like thenAccept do not stall the flusher thread. They still run sequentially for all the rows
+ * of a batch, so slow callbacks should use the *Async variants.
+ *
+ * The scorer is registered with the booster, so LGBMBooster.close() closes it first, flushing all the queued rows.
+ */
+public class MicroBatchScorer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatchScorer.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final LGBMBooster booster;
+    private final int ncols;
+    private final PredictionType predictionType;
+    private final String parameter;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int outputsPerRow;
+    private final Executor callbackExecutor;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    // scratch buffers are only touched by the flusher thread
+    private final FloatBuffer input;
+    private final DoubleBuffer output;
+    private final List<Request> batch;
+    private final Thread flusher;
+    private volatile boolean isClosed = false;
+
+    private static class Request {
+        final float[] row;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(float[] row) {
+            this.row = row;
+        }
+    }
+
+    /**
+     * Create a scorer with a dedicated flusher thread, completing futures on the common ForkJoinPool.
+     *
+     * @param booster        the booster
+     * @param ncols          number of columns
+     * @param predictionType the prediction type
+     * @param parameter      prediction options
+     * @param maxBatchSize   max number of rows in a single predictForMat call
+     * @param maxWaitNanos   max time for the first row in a batch to wait for other rows, like 200000 for 200us
+     * @throws LGBMException
+     */
+    public MicroBatchScorer(LGBMBooster booster, int ncols, PredictionType predictionType, String parameter, int maxBatchSize, long maxWaitNanos) throws LGBMException {
+        this(booster, ncols, predictionType, parameter, maxBatchSize, maxWaitNanos, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a scorer with a dedicated flusher thread.
+     *
+     * @param booster          the booster
+     * @param ncols            number of columns
+     * @param predictionType   the prediction type
+     * @param parameter        prediction options
+     * @param maxBatchSize     max number of rows in a single predictForMat call
+     * @param maxWaitNanos     max time for the first row in a batch to wait for other rows, like 200000 for 200us
+     * @param callbackExecutor executor to complete futures on. If it rejects a task, futures are completed on the flusher thread.
+     * @throws LGBMException
+     */
+    public MicroBatchScorer(LGBMBooster booster, int ncols, PredictionType predictionType, String parameter, int maxBatchSize, long maxWaitNanos, Executor callbackExecutor) throws LGBMException {
+        if (maxBatchSize < 1) {
+            throw new LGBMException("batch size should be positive, but got " + maxBatchSize);
+        }
+        this.booster = booster;
+        this.ncols = ncols;
+        this.predictionType = predictionType;
+        this.parameter = parameter;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWaitNanos;
+        this.callbackExecutor = callbackExecutor;
+        this.outputsPerRow = (int) booster.calcNumPredict(1, predictionType);
+        long inputBytes = (long) maxBatchSize * ncols * Float.BYTES;
+        long outputBytes = booster.calcNumPredict(maxBatchSize, predictionType) * Double.BYTES;
+        if ((inputBytes > Integer.MAX_VALUE) || (outputBytes > Integer.MAX_VALUE)) {
+            throw new LGBMException("batch of " + maxBatchSize + " rows is too large for the batch buffers: " + inputBytes + " input bytes, " + outputBytes + " output bytes");
+        }
+        this.input = ByteBuffer.allocateDirect((int) inputBytes).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.output = ByteBuffer.allocateDirect((int) outputBytes).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        this.batch = new ArrayList<>(maxBatchSize);
+        this.flusher = new Thread(this::run, "lightgbm4j-batch-scorer");
+        flusher.setDaemon(true);
+        booster.registerScorer(this);
+        flusher.start();
+    }
+
+    /**
+     * Queue a single row for prediction.
+     *
+     * @param row input vector of ncols elements. Should not be modified until the future is completed.
+     * @return future with all predicted values for the row (one for regular models, num_class for multiclass ones).
+     */
+    public CompletableFuture<double[]> score(float[] row) {
+        Request request = new Request(row);
+        if (isClosed) {
+            request.result.completeExceptionally(new LGBMException("Scorer was already closed"));
+        } else if (row.length != ncols) {
+            request.result.completeExceptionally(new LGBMException("expected row with " + ncols + " columns, but got " + row.length));
+        } else {
+            queue.add(request);
+            if (isClosed && queue.remove(request)) {
+                // lost the race with close(), so nobody is going to flush it
+                request.result.completeExceptionally(new LGBMException("Scorer was already closed"));
+            }
+        }
+        return request.result;
+    }
+
+    private void run() {
+        try {
+            while (!isClosed || !queue.isEmpty()) {
+                Request first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + maxWaitNanos;
+                    while (batch.size() < maxBatchSize) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if ((batch.size() >= maxBatchSize) || (remaining <= 0)) break;
+                        Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            failPending(new LGBMException("Scorer was already closed"));
+        }
+    }
+
+    private void flush() {
+        int rows = batch.size();
+        Request[] requests = batch.toArray(new Request[0]);
+        batch.clear();
+        try {
+            input.clear();
+            for (Request request : requests) {
+                input.put(request.row);
+            }
+            input.position(0);
+            output.clear();
+            booster.predictForMat(input, rows, ncols, true, predictionType, parameter, output);
+            double[][] values = new double[rows][outputsPerRow];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < outputsPerRow; j++) {
+                    values[i][j] = output.get(i * outputsPerRow + j);
+                }
+            }
+            callback(() -> {
+                for (int i = 0; i < rows; i++) {
+                    requests[i].result.complete(values[i]);
+                }
+            });
+        } catch (Throwable e) {
+            logger.warn("Batch prediction failed", e);
+            callback(() -> {
+                for (Request request : requests) {
+                    request.result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    private void callback(Runnable task) {
+        try {
+            callbackExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void failPending(LGBMException error) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Flush all the already queued rows, and stop the flusher thread. Futures of the last batches may still be
+     * completing on the callback executor after it returns.
+     *
+     * @throws LGBMException
+     */
+    @Override
+    public void close() throws LGBMException {
+        if (!isClosed) {
+            isClosed = true;
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LGBMException("Interrupted while waiting for the flusher thread to finish");
+            } finally {
+                booster.unregisterScorer(this);
+            }
+        }
+    }
+}
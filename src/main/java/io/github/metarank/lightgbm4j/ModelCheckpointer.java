@@ -0,0 +1,289 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Periodically saves the model of a booster being trained, every N iterations and/or every N minutes. The model is
+ * serialized with LGBM_BoosterSaveModelToString on the training thread, and then written to a temporary file, fsynced
+ * and atomically renamed on a background thread, so the checkpoint file is always complete, even if the process is
+ * killed in the middle of a save:
+ * <pre>
+ *     try (ModelCheckpointer checkpointer = new ModelCheckpointer(booster, new File("model.txt"), 100, 10, TimeUnit.MINUTES)) {
+ *         new LGBMTrainer(booster).addCallback(checkpointer).train(10000);
+ *     }
+ * </pre>
+ *
+ * LightGBM does not allow reading a booster while another thread updates or rolls it back, so the background thread never
+ * touches the booster: training only stalls for the serialization, and the file I/O overlaps with the next iterations.
+ * The serialized model is kept in memory until it is written. If the previous checkpoint is still being written when
+ * the next one is due, the next one is postponed to the following iteration. The checkpointer should be called from
+ * the thread which trains the booster, and closed before the booster.
+ *
+ * Training is resumed from a checkpoint with resume(), and continues from the checkpoint's iteration count.
+ */
+public class ModelCheckpointer implements LGBMTrainer.Callback, AutoCloseable {
+    private final LGBMBooster booster;
+    private final File file;
+    private final int everyIterations;
+    private final long intervalNanos;
+    private final ExecutorService executor;
+    private Future<?> pending = null;
+    private int lastScheduledIteration;
+    private long lastScheduledTime;
+    private volatile int lastSavedIteration = 0;
+
+    /**
+     * @param booster         booster to save
+     * @param file            checkpoint file, overwritten by every checkpoint
+     * @param everyIterations checkpoint period in iterations, 0 to disable
+     * @param interval        checkpoint period in time, 0 to disable
+     * @param unit            time unit of the interval
+     * @throws LGBMException
+     */
+    public ModelCheckpointer(LGBMBooster booster, File file, int everyIterations, long interval, TimeUnit unit) throws LGBMException {
+        if ((everyIterations < 0) || (interval < 0)) {
+            throw new LGBMException("checkpoint periods should not be negative");
+        }
+        if ((everyIterations == 0) && (interval == 0)) {
+            throw new LGBMException("at least one checkpoint period should be set");
+        }
+        this.booster = booster;
+        this.file = file.getAbsoluteFile();
+        this.everyIterations = everyIterations;
+        this.intervalNanos = unit.toNanos(interval);
+        this.lastScheduledIteration = booster.getCurrentIteration();
+        this.lastScheduledTime = System.nanoTime();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lightgbm4j-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedule a checkpoint, if it is due.
+     *
+     * @param iteration 1-based index of the finished iteration
+     * @param evals     not used
+     * @return always false
+     * @throws LGBMException if the previous checkpoint has failed, or the model cannot be serialized
+     */
+    @Override
+    public boolean onIteration(int iteration, double[][] evals) throws LGBMException {
+        boolean due = ((everyIterations > 0) && (iteration - lastScheduledIteration >= everyIterations)) ||
+                ((intervalNanos > 0) && (System.nanoTime() - lastScheduledTime >= intervalNanos));
+        if ((pending != null) && pending.isDone()) {
+            await();
+        }
+        if (due && (pending == null)) {
+            schedule(iteration);
+        }
+        return false;
+    }
+
+    /**
+     * Schedule a checkpoint now, after the previous one is finished. Like onIteration, it should be called from the
+     * thread which trains the booster.
+     *
+     * @param iteration number of iterations to save
+     * @throws LGBMException if the previous checkpoint has failed, or the model cannot be serialized
+     */
+    public void checkpoint(int iteration) throws LGBMException {
+        await();
+        schedule(iteration);
+    }
+
+    /**
+     * @return number of iterations in the last successfully saved checkpoint, 0 if nothing was saved yet
+     */
+    public int getLastSavedIteration() {
+        return lastSavedIteration;
+    }
+
+    /**
+     * @return checkpoint file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Wait for the pending checkpoint and stop the background thread.
+     *
+     * @throws LGBMException if the pending checkpoint has failed
+     */
+    @Override
+    public void close() throws LGBMException {
+        try {
+            await();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Resume training from a checkpoint: raw scores of the checkpoint model are set as init scores of the training
+     * dataset, and checkpoint trees are merged into a new booster as its init model. Validation datasets should get init
+     * scores from the same checkpoint (see initScores) before they are added to the booster.
+     *
+     * @param checkpoint checkpoint file
+     * @param dataset    training dataset without init scores
+     * @param features   raw training features in row-major order, the same as used for the dataset
+     * @param rows       number of rows
+     * @param cols       number of columns
+     * @param parameters booster parameters
+     * @return booster, with getCurrentIteration() returning the number of iterations in the checkpoint
+     * @throws LGBMException
+     */
+    public static LGBMBooster resume(File checkpoint, LGBMDataset dataset, double[] features, int rows, int cols, String parameters) throws LGBMException {
+        try (LGBMBooster model = LGBMBooster.createFromModelfile(checkpoint.getPath())) {
+            dataset.setField("init_score", initScores(model, features, rows, cols));
+            return createMerged(model, dataset, parameters);
+        }
+    }
+
+    /**
+     * Resume training from a checkpoint, see resume(File, LGBMDataset, double[], int, int, String).
+     *
+     * @param checkpoint checkpoint file
+     * @param dataset    training dataset without init scores
+     * @param features   raw training features in row-major order, the same as used for the dataset
+     * @param rows       number of rows
+     * @param cols       number of columns
+     * @param parameters booster parameters
+     * @return booster, with getCurrentIteration() returning the number of iterations in the checkpoint
+     * @throws LGBMException
+     */
+    public static LGBMBooster resume(File checkpoint, LGBMDataset dataset, float[] features, int rows, int cols, String parameters) throws LGBMException {
+        try (LGBMBooster model = LGBMBooster.createFromModelfile(checkpoint.getPath())) {
+            dataset.setField("init_score", initScores(model, features, rows, cols));
+            return createMerged(model, dataset, parameters);
+        }
+    }
+
+    /**
+     * Raw scores of a model in the init_score field layout: for multiclass models, scores are grouped by class.
+     *
+     * @param model    checkpoint model
+     * @param features raw features in row-major order
+     * @param rows     number of rows
+     * @param cols     number of columns
+     * @return init scores
+     * @throws LGBMException
+     */
+    public static double[] initScores(LGBMBooster model, double[] features, int rows, int cols) throws LGBMException {
+        double[] raw = model.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE);
+        return classMajor(raw, rows, model.getNumClasses());
+    }
+
+    /**
+     * Raw scores of a model in the init_score field layout, see initScores(LGBMBooster, double[], int, int).
+     *
+     * @param model    checkpoint model
+     * @param features raw features in row-major order
+     * @param rows     number of rows
+     * @param cols     number of columns
+     * @return init scores
+     * @throws LGBMException
+     */
+    public static double[] initScores(LGBMBooster model, float[] features, int rows, int cols) throws LGBMException {
+        double[] raw = model.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE);
+        return classMajor(raw, rows, model.getNumClasses());
+    }
+
+    /**
+     * Predictions are row-major ([row][class]), but init scores are class-major ([class][row]).
+     */
+    static double[] classMajor(double[] raw, int rows, int numClasses) {
+        if (numClasses <= 1) {
+            return raw;
+        }
+        double[] result = new double[raw.length];
+        for (int row = 0; row < rows; row++) {
+            for (int cls = 0; cls < numClasses; cls++) {
+                result[cls * rows + row] = raw[row * numClasses + cls];
+            }
+        }
+        return result;
+    }
+
+    private static LGBMBooster createMerged(LGBMBooster model, LGBMDataset dataset, String parameters) throws LGBMException {
+        LGBMBooster booster = LGBMBooster.create(dataset, parameters);
+        try {
+            booster.merge(model);
+        } catch (LGBMException e) {
+            booster.close();
+            throw e;
+        }
+        return booster;
+    }
+
+    private void schedule(int iteration) throws LGBMException {
+        lastScheduledIteration = iteration;
+        lastScheduledTime = System.nanoTime();
+        // the SWIG wrapper retries with an out_len-sized buffer when the model does not fit the default one
+        String model = booster.saveModelToString(0, iteration, LGBMBooster.FeatureImportanceType.SPLIT);
+        if (model == null) {
+            throw new LGBMException("cannot serialize model with " + iteration + " iterations");
+        }
+        pending = executor.submit(() -> {
+            save(iteration, model);
+            return null;
+        });
+    }
+
+    /**
+     * Wait for the pending checkpoint, if any, and rethrow its failure.
+     */
+    private void await() throws LGBMException {
+        if (pending != null) {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LGBMException("checkpoint was interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LGBMException) {
+                    throw (LGBMException) e.getCause();
+                } else {
+                    throw new LGBMException("cannot save checkpoint to " + file + ": " + e.getCause());
+                }
+            } finally {
+                pending = null;
+            }
+        }
+    }
+
+    private void save(int iteration, String model) throws IOException {
+        File directory = file.getParentFile();
+        Files.createDirectories(directory.toPath());
+        // a partially written file should never have the checkpoint name
+        Path temp = new File(directory, file.getName() + "." + UUID.randomUUID() + ".tmp").toPath();
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(model.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // the rename should not become durable before the content
+                channel.force(true);
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            lastSavedIteration = iteration;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
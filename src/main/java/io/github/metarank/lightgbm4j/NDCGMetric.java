@@ -0,0 +1,62 @@
+package io.github.metarank.lightgbm4j;
+
+import java.util.Arrays;
+
+/**
+ * NDCG@k with the same definition as the LightGBM built-in ndcg metric: gain is 2^label - 1, rows with equal scores
+ * keep their dataset order, and queries without relevant rows have NDCG of 1. Requires a dataset with query groups.
+ */
+public class NDCGMetric implements Metric {
+    private final int k;
+
+    /**
+     * @param k cutoff
+     */
+    public NDCGMetric(int k) {
+        this.k = k;
+    }
+
+    @Override
+    public String getName() {
+        return "ndcg@" + k;
+    }
+
+    @Override
+    public double evaluate(MetricData data) {
+        int[] boundaries = data.getQueryBoundaries();
+        if (boundaries == null) {
+            throw new IllegalArgumentException("ndcg requires a dataset with query groups");
+        }
+        float[] labels = data.getLabels();
+        double sum = 0.0;
+        for (int query = 0; query + 1 < boundaries.length; query++) {
+            int from = boundaries[query];
+            int size = boundaries[query + 1] - from;
+            Integer[] order = new Integer[size];
+            float[] ideal = new float[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = from + i;
+                ideal[i] = labels[from + i];
+            }
+            // a stable sort, so ties are ranked in the dataset order
+            Arrays.sort(order, (a, b) -> Double.compare(data.getPredictions().get(b), data.getPredictions().get(a)));
+            Arrays.sort(ideal);
+            double maxDcg = 0.0;
+            double dcg = 0.0;
+            for (int i = 0; i < Math.min(k, size); i++) {
+                maxDcg += gain(ideal[size - 1 - i]) * discount(i);
+                dcg += gain(labels[order[i]]) * discount(i);
+            }
+            sum += maxDcg > 0 ? dcg / maxDcg : 1.0;
+        }
+        return sum / (boundaries.length - 1);
+    }
+
+    private static double gain(float label) {
+        return (1L << (int) label) - 1;
+    }
+
+    private static double discount(int position) {
+        return 1.0 / (Math.log(position + 2.0) / Math.log(2.0));
+    }
+}
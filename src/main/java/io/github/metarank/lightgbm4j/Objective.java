@@ -0,0 +1,40 @@
+package io.github.metarank.lightgbm4j;
+
+/**
+ * A custom objective function, evaluated by ObjectiveDriver in parallel over disjoint row partitions.
+ *
+ * For each row in the partition, the implementation should read current raw scores from ObjectiveDriver.getScores()
+ * and write gradients and hessians with ObjectiveDriver.getGrad()/getHess(), using only absolute buffer
+ * get/put methods, as buffers are shared between concurrent partitions. For multiclass models all the buffers have
+ * the class-major layout: value for the row i and class k is at the index k * numData + i.
+ *
+ * A squared error objective:
+ * <pre>
+ *     Objective squaredError = (driver, from, to) -&gt; {
+ *         for (int i = from; i &lt; to; i++) {
+ *             driver.getGrad().put(i, (float) (2 * (driver.getScores().get(i) - driver.getLabels()[i])));
+ *             driver.getHess().put(i, 2.0f);
+ *         }
+ *     };
+ * </pre>
+ */
+@FunctionalInterface
+public interface Objective {
+    /**
+     * Compute gradients and hessians for rows [from, to). For grouped objectives the range contains only whole queries.
+     *
+     * @param driver driver with current scores, labels and output buffers
+     * @param from   first row of the partition
+     * @param to     row after the last row of the partition
+     */
+    void gradients(ObjectiveDriver driver, int from, int to);
+
+    /**
+     * Grouped objectives (like ranking ones) need all the rows of a query in the same partition.
+     *
+     * @return should partitions be aligned to query boundaries?
+     */
+    default boolean isGrouped() {
+        return false;
+    }
+}
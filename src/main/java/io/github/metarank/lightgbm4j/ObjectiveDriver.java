@@ -0,0 +1,193 @@
+package io.github.metarank.lightgbm4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Drives the training with a custom Objective. On each iteration current raw scores of the training data are copied
+ * into a reusable direct buffer, gradients are computed in parallel over row partitions on a ForkJoinPool, and passed
+ * back to LightGBM from the reusable direct gradient buffers, so no per-iteration arrays are allocated:
+ * <pre>
+ *     LGBMBooster booster = LGBMBooster.create(dataset, "objective=none metric=rmse");
+ *     ObjectiveDriver driver = new ObjectiveDriver(booster, dataset, squaredError);
+ *     for (int it = 0; it &lt; 100; it++) driver.updateOneIter();
+ * </pre>
+ *
+ * The booster should be created with objective=none, so the scores are raw. For grouped objectives partitions are aligned
+ * to the query boundaries of the training dataset.
+ */
+public class ObjectiveDriver {
+    // partitions per pool thread, so uneven partitions are balanced by work stealing
+    static final int PARTITIONS_PER_THREAD = 4;
+    static final int MIN_PARTITION_ROWS = 1024;
+
+    private final LGBMBooster booster;
+    private final Objective objective;
+    private final ForkJoinPool pool;
+    private final int numData;
+    private final int numClasses;
+    private final float[] labels;
+    private final int[] queryBoundaries;
+    private final DoubleBuffer scores;
+    private final FloatBuffer grad;
+    private final FloatBuffer hess;
+    // [from, to) row ranges
+    private final int[] partitions;
+
+    /**
+     * Create a driver, using the common ForkJoinPool.
+     *
+     * @param booster   booster created with objective=none
+     * @param train     training dataset of the booster
+     * @param objective objective function
+     * @throws LGBMException
+     */
+    public ObjectiveDriver(LGBMBooster booster, LGBMDataset train, Objective objective) throws LGBMException {
+        this(booster, train, objective, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a driver.
+     *
+     * @param booster   booster created with objective=none
+     * @param train     training dataset of the booster
+     * @param objective objective function
+     * @param pool      pool to compute gradients on
+     * @throws LGBMException
+     */
+    public ObjectiveDriver(LGBMBooster booster, LGBMDataset train, Objective objective, ForkJoinPool pool) throws LGBMException {
+        this.booster = booster;
+        this.objective = objective;
+        this.pool = pool;
+        this.numData = train.getNumData();
+        this.numClasses = booster.getNumClasses();
+        this.labels = train.getFieldFloat("label");
+        this.queryBoundaries = train.getQueryBoundaries();
+        if (objective.isGrouped() && (queryBoundaries == null)) {
+            throw new LGBMException("grouped objective requires a training dataset with query groups");
+        }
+        long size = (long) numData * numClasses;
+        if (size * Double.BYTES > Integer.MAX_VALUE) {
+            throw new LGBMException("training dataset is too large for the score buffer: " + size + " values");
+        }
+        this.scores = ByteBuffer.allocateDirect((int) size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        this.grad = ByteBuffer.allocateDirect((int) size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.hess = ByteBuffer.allocateDirect((int) size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.partitions = partitions(numData, pool.getParallelism() * PARTITIONS_PER_THREAD, objective.isGrouped() ? queryBoundaries : null);
+    }
+
+    /**
+     * Do a single boosting iteration with the custom objective.
+     *
+     * @return true if the booster cannot split anymore
+     * @throws LGBMException
+     */
+    public boolean updateOneIter() throws LGBMException {
+        booster.getPredict(0, scores);
+        pool.invoke(new PartitionTask(0, partitions.length / 2));
+        return booster.updateOneIterCustom(grad, hess);
+    }
+
+    /**
+     * Split rows into up to numPartitions ranges of similar size. When query boundaries are defined, ranges are
+     * aligned to them.
+     *
+     * @return flattened [from, to) pairs
+     */
+    static int[] partitions(int numData, int numPartitions, int[] queryBoundaries) {
+        int step = Math.max(MIN_PARTITION_ROWS, (numData + numPartitions - 1) / numPartitions);
+        List<Integer> bounds = new ArrayList<>();
+        int from = 0;
+        while (from < numData) {
+            int to = Math.min(numData, from + step);
+            if ((queryBoundaries != null) && (to < numData)) {
+                int pos = Arrays.binarySearch(queryBoundaries, to);
+                // move to the end of the query containing the row
+                to = pos >= 0 ? to : queryBoundaries[-pos - 1];
+            }
+            bounds.add(from);
+            bounds.add(to);
+            from = to;
+        }
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    private class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        PartitionTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                objective.gradients(ObjectiveDriver.this, partitions[from * 2], partitions[from * 2 + 1]);
+            } else if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PartitionTask(from, mid), new PartitionTask(mid, to));
+            }
+        }
+    }
+
+    /**
+     * @return current raw scores, in a class-major layout
+     */
+    public DoubleBuffer getScores() {
+        return scores;
+    }
+
+    /**
+     * @return gradient output buffer, in a class-major layout
+     */
+    public FloatBuffer getGrad() {
+        return grad;
+    }
+
+    /**
+     * @return hessian output buffer, in a class-major layout
+     */
+    public FloatBuffer getHess() {
+        return hess;
+    }
+
+    /**
+     * @return labels of the training dataset
+     */
+    public float[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return query boundaries (numQueries + 1 row offsets) of the training dataset, or null if it has no queries
+     */
+    public int[] getQueryBoundaries() {
+        return queryBoundaries;
+    }
+
+    /**
+     * @return number of training rows
+     */
+    public int getNumData() {
+        return numData;
+    }
+
+    /**
+     * @return number of classes
+     */
+    public int getNumClasses() {
+        return numClasses;
+    }
+}
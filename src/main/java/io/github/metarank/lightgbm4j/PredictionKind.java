@@ -0,0 +1,34 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+/**
+ * Prediction types supported by the pure-Java evaluators (TreeEnsemble, CompiledTreeEnsemble and QuickScorer).
+ * Unlike PredictionType, which reads its constants from the native library, this enum can be used in a JVM without
+ * the native library loaded.
+ */
+public enum PredictionKind {
+    NORMAL,
+    RAW_SCORE,
+    LEAF_INDEX;
+
+    /**
+     * Map a native prediction type to a pure-Java one. It touches PredictionType, so it requires the native library.
+     *
+     * @param predictionType native prediction type
+     * @return the same prediction kind
+     * @throws LGBMException for C_API_PREDICT_CONTRIB, which is not supported
+     */
+    public static PredictionKind of(PredictionType predictionType) throws LGBMException {
+        switch (predictionType) {
+            case C_API_PREDICT_NORMAL:
+                return NORMAL;
+            case C_API_PREDICT_RAW_SCORE:
+                return RAW_SCORE;
+            case C_API_PREDICT_LEAF_INDEX:
+                return LEAF_INDEX;
+            default:
+                throw new LGBMException("prediction type " + predictionType + " is not supported");
+        }
+    }
+}
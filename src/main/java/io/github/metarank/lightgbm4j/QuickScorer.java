@@ -0,0 +1,276 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.util.Arrays;
+
+/**
+ * A QuickScorer-style batch evaluator (Lucchese et al, "QuickScorer: a Fast Algorithm to Rank Documents with
+ * Additive Ensembles of Regression Trees") for models with many small trees, like the typical lambdarank ones.
+ *
+ * Instead of traversing trees one by one, all the split nodes are grouped by feature and sorted by threshold. Each tree
+ * has a 64-bit vector of reachable leaves (in the left-to-right order), and every node with a threshold below the
+ * feature value (so the document goes right) clears the bits of its left subtree leaves. The exit leaf of each tree is then
+ * the lowest remaining bit. Documents are processed in blocks, feature by feature, so node arrays stay in cache.
+ *
+ * Zero and NaN feature values are evaluated with the exact per-node LightGBM missing value rules, so raw scores and
+ * leaf indices are identical to TreeEnsemble and the native predictForMat. Only models with numerical splits and at most
+ * 64 leaves per tree are supported.
+ */
+public final class QuickScorer {
+    static final int MAX_LEAVES = 64;
+    static final int BLOCK_SIZE = 16;
+
+    private final TreeEnsemble ensemble;
+    private final int numTrees;
+
+    // split nodes, grouped by feature and sorted by threshold within a feature
+    private final int[] featureStart;
+    private final double[] nodeThreshold;
+    private final int[] nodeTree;
+    private final long[] nodeMask;
+    private final byte[] nodeDecision;
+
+    // per tree leaves in the left-to-right order
+    private final int[] treeLeafOffset;
+    private final double[] leafValue;
+    private final int[] leafIndex;
+
+    private QuickScorer(TreeEnsemble ensemble) {
+        this.ensemble = ensemble;
+        this.numTrees = ensemble.numTrees;
+        int nodes = ensemble.splitFeature.length;
+        this.treeLeafOffset = new int[numTrees];
+        this.leafValue = new double[ensemble.leafValue.length];
+        this.leafIndex = new int[ensemble.leafValue.length];
+        long[] masks = new long[nodes];
+        int[] trees = new int[nodes];
+        for (int tree = 0; tree < numTrees; tree++) {
+            treeLeafOffset[tree] = ensemble.treeLeafOffset[tree];
+            collect(tree, ensemble.treeRoot[tree], new int[]{0}, masks, trees);
+        }
+
+        // feature boundaries in the sorted node arrays
+        featureStart = new int[ensemble.numFeatures + 1];
+        for (int node = 0; node < nodes; node++) {
+            featureStart[ensemble.splitFeature[node] + 1]++;
+        }
+        for (int f = 0; f < ensemble.numFeatures; f++) {
+            featureStart[f + 1] += featureStart[f];
+        }
+        Integer[] order = new Integer[nodes];
+        for (int i = 0; i < nodes; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int byFeature = Integer.compare(ensemble.splitFeature[a], ensemble.splitFeature[b]);
+            return byFeature != 0 ? byFeature : Double.compare(ensemble.threshold[a], ensemble.threshold[b]);
+        });
+        nodeThreshold = new double[nodes];
+        nodeTree = new int[nodes];
+        nodeMask = new long[nodes];
+        nodeDecision = new byte[nodes];
+        for (int i = 0; i < nodes; i++) {
+            int node = order[i];
+            nodeThreshold[i] = ensemble.threshold[node];
+            nodeTree[i] = trees[node];
+            nodeMask[i] = masks[node];
+            nodeDecision[i] = ensemble.decisionType[node];
+        }
+    }
+
+    /**
+     * Number leaves left to right, and build a mask clearing the left subtree leaves for each node.
+     *
+     * @return bitset of leaves in the subtree
+     */
+    private long collect(int tree, int node, int[] nextLeaf, long[] masks, int[] trees) {
+        if (node < 0) {
+            int position = nextLeaf[0]++;
+            int leaf = ~node;
+            leafValue[treeLeafOffset[tree] + position] = ensemble.leafValue[leaf];
+            leafIndex[treeLeafOffset[tree] + position] = leaf - ensemble.treeLeafOffset[tree];
+            return 1L << position;
+        } else {
+            long left = collect(tree, ensemble.leftChild[node], nextLeaf, masks, trees);
+            long right = collect(tree, ensemble.rightChild[node], nextLeaf, masks, trees);
+            masks[node] = ~left;
+            trees[node] = tree;
+            return left | right;
+        }
+    }
+
+    /**
+     * Check if the model can be evaluated with QuickScorer: it should have only numerical splits, and
+     * at most 64 leaves per tree.
+     *
+     * @param ensemble parsed model
+     * @return true if it's supported
+     */
+    public static boolean isSupported(TreeEnsemble ensemble) {
+        for (int tree = 0; tree < ensemble.numTrees; tree++) {
+            int end = tree + 1 < ensemble.numTrees ? ensemble.treeLeafOffset[tree + 1] : ensemble.leafValue.length;
+            if (end - ensemble.treeLeafOffset[tree] > MAX_LEAVES) return false;
+        }
+        for (byte decision : ensemble.decisionType) {
+            if ((decision & TreeEnsemble.CATEGORICAL_MASK) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Build a QuickScorer evaluator for the model.
+     *
+     * @param ensemble parsed model
+     * @return evaluator
+     * @throws LGBMException when the model has categorical splits or trees with more than 64 leaves
+     */
+    public static QuickScorer create(TreeEnsemble ensemble) throws LGBMException {
+        if (!isSupported(ensemble)) {
+            throw new LGBMException("QuickScorer supports only numerical splits and trees with at most " + MAX_LEAVES + " leaves");
+        }
+        return new QuickScorer(ensemble);
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        checkInput(input.length, rows, cols);
+        int width = ensemble.numPredict(kind);
+        double[] output = new double[rows * width];
+        double[] block = new double[BLOCK_SIZE * ensemble.numFeatures];
+        long[] vectors = new long[BLOCK_SIZE * numTrees];
+        for (int from = 0; from < rows; from += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, rows - from);
+            for (int d = 0; d < count; d++) {
+                int row = from + d;
+                for (int f = 0; f < ensemble.numFeatures; f++) {
+                    double value = f < cols ? (isRowMajor ? input[row * cols + f] : input[f * rows + row]) : 0.0;
+                    block[d * ensemble.numFeatures + f] = TreeEnsemble.featureValue(value);
+                }
+            }
+            scoreBlock(block, count, vectors, kind, output, from * width);
+        }
+        return output;
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        checkInput(input.length, rows, cols);
+        int width = ensemble.numPredict(kind);
+        double[] output = new double[rows * width];
+        double[] block = new double[BLOCK_SIZE * ensemble.numFeatures];
+        long[] vectors = new long[BLOCK_SIZE * numTrees];
+        for (int from = 0; from < rows; from += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, rows - from);
+            for (int d = 0; d < count; d++) {
+                int row = from + d;
+                for (int f = 0; f < ensemble.numFeatures; f++) {
+                    double value = f < cols ? (isRowMajor ? input[row * cols + f] : input[f * rows + row]) : 0.0;
+                    block[d * ensemble.numFeatures + f] = TreeEnsemble.featureValue(value);
+                }
+            }
+            scoreBlock(block, count, vectors, kind, output, from * width);
+        }
+        return output;
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    private void checkInput(int length, int rows, int cols) throws LGBMException {
+        if ((long) rows * cols > length) {
+            throw new LGBMException("input array has " + length + " elements, but " + rows + "x" + cols + " matrix was expected");
+        }
+    }
+
+    private void scoreBlock(double[] block, int count, long[] vectors, PredictionKind kind, double[] output, int outputOffset) throws LGBMException {
+        int features = ensemble.numFeatures;
+        Arrays.fill(vectors, 0, count * numTrees, -1L);
+        for (int f = 0; f < features; f++) {
+            int start = featureStart[f];
+            int end = featureStart[f + 1];
+            if (start == end) continue;
+            for (int d = 0; d < count; d++) {
+                double value = block[d * features + f];
+                int base = d * numTrees;
+                if ((value == 0.0) || Double.isNaN(value)) {
+                    // missing values depend on the per-node missing type, so all the nodes are checked
+                    for (int i = start; i < end; i++) {
+                        if (goesRight(i, value)) {
+                            vectors[base + nodeTree[i]] &= nodeMask[i];
+                        }
+                    }
+                } else {
+                    for (int i = start; i < end; i++) {
+                        if (value > nodeThreshold[i]) {
+                            vectors[base + nodeTree[i]] &= nodeMask[i];
+                        } else {
+                            // thresholds are sorted, so all the next nodes go left too
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        int width = ensemble.numPredict(kind);
+        int classes = ensemble.numTreesPerIteration;
+        for (int d = 0; d < count; d++) {
+            int base = d * numTrees;
+            int offset = outputOffset + d * width;
+            if (kind == PredictionKind.LEAF_INDEX) {
+                for (int t = 0; t < numTrees; t++) {
+                    output[offset + t] = leafIndex[treeLeafOffset[t] + Long.numberOfTrailingZeros(vectors[base + t])];
+                }
+            } else {
+                for (int t = 0; t < numTrees; t++) {
+                    output[offset + t % classes] += leafValue[treeLeafOffset[t] + Long.numberOfTrailingZeros(vectors[base + t])];
+                }
+                if (kind == PredictionKind.NORMAL) {
+                    ensemble.rawToNormal(output, offset);
+                }
+            }
+        }
+    }
+
+    private boolean goesRight(int node, double value) {
+        int decision = nodeDecision[node];
+        int missingType = (decision >> 2) & 3;
+        if (Double.isNaN(value) && (missingType != TreeEnsemble.MISSING_NAN)) {
+            value = 0.0;
+        }
+        if (((missingType == TreeEnsemble.MISSING_ZERO) && (value == 0.0)) || ((missingType == TreeEnsemble.MISSING_NAN) && Double.isNaN(value))) {
+            return (decision & TreeEnsemble.DEFAULT_LEFT_MASK) == 0;
+        } else {
+            return value > nodeThreshold[node];
+        }
+    }
+}
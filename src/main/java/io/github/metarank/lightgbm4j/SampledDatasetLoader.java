@@ -0,0 +1,418 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.SWIGTYPE_p_void;
+import com.microsoft.ml.lightgbm.lightgbmlibJNI;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.microsoft.ml.lightgbm.lightgbmlib.LGBM_GetLastError;
+
+/**
+ * An out-of-core dataset loader for training sets, which do not fit into the JVM heap. Rows are read in two passes:
+ * <ul>
+ *     <li>the first pass collects a sample of rows chosen by LightGBM (LGBM_SampleIndices, so the size of the sample
+ *     is controlled by the bin_construct_sample_cnt parameter), and builds bin mappers from it
+ *     with LGBM_DatasetCreateFromSampledColumn,</li>
+ *     <li>the second pass streams all the rows in fixed-size chunks into the dataset with LGBMDatasetBuilder.</li>
+ * </ul>
+ * So only the sample and a single chunk are kept on heap at a time. The row source should be an Iterable,
+ * which can be iterated multiple times in the same order, like a file:
+ * <pre>
+ *     LGBMDataset dataset = SampledDatasetLoader.loadFile(new File("train.csv"), ",", true, 0, "max_bin=255");
+ * </pre>
+ * With the same parameters the bin mappers are the same as for createFromMat over all the rows.
+ */
+public final class SampledDatasetLoader {
+    static final int DEFAULT_CHUNK_ROWS = 4096;
+    // kZeroThreshold in LightGBM: smaller values are treated as zeros and are not included into the sample
+    static final double ZERO_THRESHOLD = 1e-35;
+
+    private SampledDatasetLoader() {
+    }
+
+    /**
+     * Load a dataset from an unknown number of rows. The rows are iterated three times: to count them,
+     * to collect the sample and to push them to the dataset.
+     *
+     * @param rows        row source, each row contains all the feature values and the label
+     * @param labelColumn index of the label in each row
+     * @param parameters  dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     */
+    public static LGBMDataset load(Iterable<double[]> rows, int labelColumn, String parameters) throws LGBMException {
+        long numRows = 0;
+        Iterator<double[]> iterator = rows.iterator();
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                numRows++;
+            }
+        } finally {
+            close(iterator);
+        }
+        return load(rows, numRows, labelColumn, parameters, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * Load a dataset from a known number of rows.
+     *
+     * @param rows        row source, each row contains all the feature values and the label
+     * @param numRows     number of rows in the source
+     * @param labelColumn index of the label in each row
+     * @param parameters  dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     */
+    public static LGBMDataset load(Iterable<double[]> rows, long numRows, int labelColumn, String parameters) throws LGBMException {
+        return load(rows, numRows, labelColumn, parameters, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * Load a dataset from a known number of rows.
+     *
+     * @param rows        row source, each row contains all the feature values and the label
+     * @param numRows     number of rows in the source
+     * @param labelColumn index of the label in each row
+     * @param parameters  dataset parameters
+     * @param chunkRows   number of rows pushed to the dataset at once
+     * @return dataset
+     * @throws LGBMException
+     */
+    public static LGBMDataset load(Iterable<double[]> rows, long numRows, int labelColumn, String parameters, int chunkRows) throws LGBMException {
+        if ((numRows <= 0) || (numRows > Integer.MAX_VALUE)) {
+            throw new LGBMException("dataset should have between 1 and " + Integer.MAX_VALUE + " rows, but got " + numRows);
+        }
+        if (chunkRows < 1) {
+            throw new LGBMException("chunk size should be positive, but got " + chunkRows);
+        }
+        Sample sample = collectSample(rows, (int) numRows, labelColumn, parameters);
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.init(
+                createFromSample(sample, (int) numRows, parameters), numRows, sample.numFeatures, false, false, false, 1, 1
+        );
+        try {
+            double[] chunk = new double[chunkRows * sample.numFeatures];
+            float[] labels = new float[chunkRows];
+            int size = 0;
+            Iterator<double[]> iterator = rows.iterator();
+            try {
+                while (iterator.hasNext()) {
+                    double[] row = iterator.next();
+                    checkRow(row, sample.numFeatures);
+                    copyFeatures(row, labelColumn, chunk, size * sample.numFeatures);
+                    labels[size++] = (float) row[labelColumn];
+                    if (size == chunkRows) {
+                        builder.pushRows(chunk, size, labels);
+                        size = 0;
+                    }
+                }
+            } finally {
+                close(iterator);
+            }
+            if (size > 0) {
+                builder.pushRows(chunk, size, labels);
+            }
+            return builder.finish();
+        } catch (LGBMException | RuntimeException e) {
+            builder.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Load a dataset from a delimited text file (like CSV or TSV) with numeric values. Empty values and NA are
+     * treated as missing. The file is read three times: to count rows, to collect the sample and to push all the rows.
+     *
+     * @param file        source file
+     * @param delimiter   column delimiter regex, like "," or "\t"
+     * @param hasHeader   should the first line be skipped?
+     * @param labelColumn index of the label column
+     * @param parameters  dataset parameters
+     * @return dataset
+     * @throws LGBMException
+     * @throws IOException
+     */
+    public static LGBMDataset loadFile(File file, String delimiter, boolean hasHeader, int labelColumn, String parameters) throws LGBMException, IOException {
+        DelimitedFile rows = new DelimitedFile(file, delimiter, hasHeader);
+        try {
+            return load(rows, rows.count(), labelColumn, parameters, DEFAULT_CHUNK_ROWS);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sampled non-zero feature values in a column-major layout, with indices of rows in the sample.
+     */
+    static class Sample {
+        final int numFeatures;
+        final int numSampleRows;
+        final double[][] values;
+        final int[][] indices;
+        final int[] counts;
+
+        Sample(int numFeatures, int numSampleRows) {
+            this.numFeatures = numFeatures;
+            this.numSampleRows = numSampleRows;
+            this.values = new double[numFeatures][16];
+            this.indices = new int[numFeatures][16];
+            this.counts = new int[numFeatures];
+        }
+
+        void add(int sampleRow, int feature, double value) {
+            if ((Math.abs(value) > ZERO_THRESHOLD) || Double.isNaN(value)) {
+                int count = counts[feature];
+                if (count == values[feature].length) {
+                    values[feature] = Arrays.copyOf(values[feature], count * 2);
+                    indices[feature] = Arrays.copyOf(indices[feature], count * 2);
+                }
+                values[feature][count] = value;
+                indices[feature][count] = sampleRow;
+                counts[feature]++;
+            }
+        }
+    }
+
+    static Sample collectSample(Iterable<double[]> rows, int numRows, int labelColumn, String parameters) throws LGBMException {
+        int[] sampleIndices = sampleIndices(numRows, parameters);
+        Sample sample = null;
+        int rowIndex = 0;
+        int next = 0;
+        Iterator<double[]> iterator = rows.iterator();
+        try {
+            while (iterator.hasNext()) {
+                double[] row = iterator.next();
+                if (sample == null) {
+                    if ((labelColumn < 0) || (labelColumn >= row.length) || (row.length < 2)) {
+                        throw new LGBMException("label column " + labelColumn + " is out of range for a row with " + row.length + " values");
+                    }
+                    sample = new Sample(row.length - 1, sampleIndices.length);
+                }
+                if ((next < sampleIndices.length) && (rowIndex == sampleIndices[next])) {
+                    checkRow(row, sample.numFeatures);
+                    for (int col = 0, feature = 0; col < row.length; col++) {
+                        if (col != labelColumn) {
+                            sample.add(next, feature++, row[col]);
+                        }
+                    }
+                    next++;
+                }
+                rowIndex++;
+            }
+        } finally {
+            close(iterator);
+        }
+        if ((sample == null) || (next < sampleIndices.length)) {
+            throw new LGBMException("expected " + numRows + " rows, but the source has only " + rowIndex);
+        }
+        return sample;
+    }
+
+    private static int[] sampleIndices(int numRows, String parameters) throws LGBMException {
+        int count;
+        long countAddress = ScratchArena.acquire(Long.BYTES);
+        try {
+            int result = lightgbmlibJNI.LGBM_GetSampleCount(numRows, parameters, countAddress);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            count = DirectMemory.getInt(countAddress);
+        } finally {
+            ScratchArena.release(countAddress);
+        }
+        long base = ScratchArena.acquire(Long.BYTES + (long) count * Integer.BYTES);
+        try {
+            long indicesAddress = base + Long.BYTES;
+            int result = lightgbmlibJNI.LGBM_SampleIndices(numRows, parameters, indicesAddress, base);
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            int[] indices = new int[DirectMemory.getInt(base)];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = DirectMemory.getInt(indicesAddress + (long) i * Integer.BYTES);
+            }
+            return indices;
+        } finally {
+            ScratchArena.release(base);
+        }
+    }
+
+    /**
+     * Build bin mappers from the sample. Native layout: double* values[numFeatures], int* indices[numFeatures],
+     * int counts[numFeatures], out handle slot, and then per-column values and indices.
+     */
+    private static SWIGTYPE_p_void createFromSample(Sample sample, int numRows, String parameters) throws LGBMException {
+        int ncol = sample.numFeatures;
+        long valuePointersOffset = 0;
+        long indexPointersOffset = (long) ncol * Long.BYTES;
+        long countsOffset = indexPointersOffset + (long) ncol * Long.BYTES;
+        long outOffset = countsOffset + ScratchArena.align((long) ncol * Integer.BYTES);
+        long size = outOffset + Long.BYTES;
+        for (int feature = 0; feature < ncol; feature++) {
+            size += ScratchArena.align((long) sample.counts[feature] * Double.BYTES) + ScratchArena.align((long) sample.counts[feature] * Integer.BYTES);
+        }
+        long buffer = DirectMemory.allocate(size);
+        try {
+            long columnAddress = buffer + outOffset + Long.BYTES;
+            for (int feature = 0; feature < ncol; feature++) {
+                int count = sample.counts[feature];
+                long indicesAddress = columnAddress + ScratchArena.align((long) count * Double.BYTES);
+                DirectMemory.copy(sample.values[feature], 0, columnAddress, count);
+                DirectMemory.copy(sample.indices[feature], 0, indicesAddress, count);
+                DirectMemory.putLong(buffer + valuePointersOffset + (long) feature * Long.BYTES, columnAddress);
+                DirectMemory.putLong(buffer + indexPointersOffset + (long) feature * Long.BYTES, indicesAddress);
+                DirectMemory.putInt(buffer + countsOffset + (long) feature * Integer.BYTES, count);
+                columnAddress = indicesAddress + ScratchArena.align((long) count * Integer.BYTES);
+            }
+            int result = lightgbmlibJNI.LGBM_DatasetCreateFromSampledColumn(
+                    buffer + valuePointersOffset,
+                    buffer + indexPointersOffset,
+                    ncol,
+                    buffer + countsOffset,
+                    sample.numSampleRows,
+                    numRows,
+                    numRows,
+                    parameters,
+                    buffer + outOffset
+            );
+            if (result < 0) {
+                throw new LGBMException(LGBM_GetLastError());
+            }
+            return DirectMemory.wrap(DirectMemory.getLong(buffer + outOffset));
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    private static void checkRow(double[] row, int numFeatures) throws LGBMException {
+        if (row.length != numFeatures + 1) {
+            throw new LGBMException("all rows should have " + (numFeatures + 1) + " values, but got a row with " + row.length);
+        }
+    }
+
+    /**
+     * Iterators of file-backed sources keep the file open, so they are closed after each pass, even a failed one.
+     */
+    private static void close(Iterator<double[]> iterator) {
+        if (iterator instanceof Closeable) {
+            try {
+                ((Closeable) iterator).close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void copyFeatures(double[] row, int labelColumn, double[] chunk, int offset) {
+        System.arraycopy(row, 0, chunk, offset, labelColumn);
+        System.arraycopy(row, labelColumn + 1, chunk, offset + labelColumn, row.length - labelColumn - 1);
+    }
+
+    /**
+     * Rows of a delimited text file. Each iterator opens the file again, and is Closeable: the file is closed
+     * after the last line, or when the iterator is closed.
+     */
+    static class DelimitedFile implements Iterable<double[]> {
+        private final File file;
+        private final String delimiter;
+        private final boolean hasHeader;
+
+        DelimitedFile(File file, String delimiter, boolean hasHeader) {
+            this.file = file;
+            this.delimiter = delimiter;
+            this.hasHeader = hasHeader;
+        }
+
+        /**
+         * @return number of non-empty data lines, without parsing them
+         */
+        long count() throws IOException {
+            long count = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                if (hasHeader) reader.readLine();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public Iterator<double[]> iterator() {
+            try {
+                BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+                try {
+                    if (hasHeader) reader.readLine();
+                    return new LineIterator(reader);
+                } catch (IOException | RuntimeException e) {
+                    reader.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private class LineIterator implements Iterator<double[]>, Closeable {
+            private final BufferedReader reader;
+            private String line;
+            private long lineNumber;
+
+            LineIterator(BufferedReader reader) {
+                this.reader = reader;
+                this.lineNumber = hasHeader ? 1 : 0;
+                advance();
+            }
+
+            private void advance() {
+                try {
+                    do {
+                        line = reader.readLine();
+                        lineNumber++;
+                    } while ((line != null) && line.isEmpty());
+                    if (line == null) close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return line != null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                line = null;
+                reader.close();
+            }
+
+            @Override
+            public double[] next() {
+                if (line == null) throw new NoSuchElementException();
+                String[] tokens = line.split(delimiter, -1);
+                double[] row = new double[tokens.length];
+                for (int i = 0; i < tokens.length; i++) {
+                    String token = tokens[i].trim();
+                    if (token.isEmpty() || token.equals("NA")) {
+                        row[i] = Double.NaN;
+                    } else {
+                        try {
+                            row[i] = Double.parseDouble(token);
+                        } catch (NumberFormatException e) {
+                            throw new UncheckedIOException(new IOException("cannot parse value '" + token + "' on line " + lineNumber + " of " + file));
+                        }
+                    }
+                }
+                advance();
+                return row;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.metarank.lightgbm4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A per-thread direct memory region for temporary native buffers (input copies, output values, out-length slots),
+ * so prediction calls do not malloc/free native memory on each invocation. Every acquire() should be paired with
+ * a release() in a finally block:
+ * <pre>
+ *     long base = ScratchArena.acquire(bytes);
+ *     try {
+ *         // native call
+ *     } finally {
+ *         ScratchArena.release(base);
+ *     }
+ * </pre>
+ *
+ * The region grows in powers of two up to MAX_RETAINED_BYTES (16MB by default, can be changed with the
+ * -Dlightgbm4j.scratch.maxRetainedBytes=N system property) and is never shrunk. It's a regular direct ByteBuffer
+ * held by a thread local, so it is reclaimed by GC after the owning thread dies. Larger requests, and nested ones
+ * while the region is already acquired, get a one-off malloc'ed block, which is freed on release().
+ */
+final class ScratchArena {
+    // capped at 1GB, so the power-of-two capacity always fits a ByteBuffer
+    static final long MAX_RETAINED_BYTES = Math.min(Long.getLong("lightgbm4j.scratch.maxRetainedBytes", 16L * 1024 * 1024), 1L << 30);
+    private static final int MIN_BYTES = 4096;
+
+    private static final class Region {
+        private ByteBuffer buffer = null;
+        private long address = 0L;
+        private boolean acquired = false;
+    }
+
+    private static final ThreadLocal<Region> arena = ThreadLocal.withInitial(Region::new);
+
+    private ScratchArena() {
+    }
+
+    /**
+     * Get a native memory block with at least the requested capacity. The block is only valid until release(),
+     * and should not be used from other threads.
+     *
+     * @param bytes required capacity
+     * @return address of the block, to be passed to release()
+     * @throws LGBMException if the per-thread region cannot be resolved to a native address
+     */
+    static long acquire(long bytes) throws LGBMException {
+        Region region = arena.get();
+        if ((bytes > MAX_RETAINED_BYTES) || region.acquired) {
+            return DirectMemory.allocate(bytes);
+        }
+        if ((region.buffer == null) || (region.buffer.capacity() < bytes)) {
+            int capacity = MIN_BYTES;
+            while (capacity < bytes) capacity *= 2;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            region.address = DirectMemory.address(buffer);
+            region.buffer = buffer;
+        }
+        region.acquired = true;
+        return region.address;
+    }
+
+    /**
+     * Return a block taken with acquire(): the per-thread region is kept for the next call, one-off blocks are freed.
+     *
+     * @param address address returned by acquire()
+     */
+    static void release(long address) {
+        Region region = arena.get();
+        if (region.acquired && (address == region.address)) {
+            region.acquired = false;
+        } else {
+            DirectMemory.free(address);
+        }
+    }
+
+    /**
+     * Round the size up to a multiple of 8 bytes, so all the regions within the arena are aligned for doubles.
+     */
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.metarank.lightgbm4j;
+
+/**
+ * A block of trees, compiled to bytecode by TreeClassWriter.
+ */
+interface TreeBlock {
+    /**
+     * Add raw scores of all the trees in the block to the output, in the tree order.
+     *
+     * @param features feature values, already clamped with TreeEnsemble.featureValue
+     * @param output   raw scores per class
+     */
+    void addScores(double[] features, double[] output);
+}
@@ -0,0 +1,508 @@
+package io.github.metarank.lightgbm4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal class file emitter for CompiledTreeEnsemble. Each tree becomes a static method with nested if/else
+ * branches on constant thresholds, and the generated class implements TreeBlock to sum them.
+ *
+ * Classes are emitted with version 49 (Java 5), so no StackMapTable frames are needed: the JVM still verifies
+ * them with the type-inferring verifier.
+ */
+final class TreeClassWriter {
+    // HotSpot does not JIT-compile methods with more bytecode than that (-XX:-DontCompileHugeMethods)
+    static final int HUGE_METHOD_LIMIT = 8000;
+    // constant pool indices are u2, leave some room for the class/method entries
+    static final int MAX_CONSTANTS = 60000;
+
+    private static final String TREE_BLOCK = TreeBlock.class.getName().replace('.', '/');
+    private static final String CLASS_PREFIX = TreeClassWriter.class.getName().replace('.', '/') + "$Generated";
+    private static final AtomicLong counter = new AtomicLong();
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DLOAD_1 = 0x27;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE_1 = 0x48;
+    private static final int DASTORE = 0x52;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int D2I = 0x8e;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFGT = 0x9d;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final TreeEnsemble ensemble;
+    private final String className;
+    private final ConstantPool pool = new ConstantPool();
+    private final int codeAttribute = pool.utf8("Code");
+    private final List<byte[]> methods = new ArrayList<>();
+    private final ByteArrayOutputStream scores = new ByteArrayOutputStream();
+    private int trees = 0;
+
+    TreeClassWriter(TreeEnsemble ensemble) {
+        this.ensemble = ensemble;
+        this.className = CLASS_PREFIX + counter.incrementAndGet();
+    }
+
+    /**
+     * Emit the tree code.
+     *
+     * @return tree method bytecode
+     */
+    private static byte[] treeCode(TreeEnsemble ensemble, int tree, ConstantPool pool) {
+        Code code = new Code();
+        emitNode(ensemble, ensemble.treeRoot[tree], code, pool);
+        return code.toByteArray();
+    }
+
+    /**
+     * Can the tree be compiled into a method, which is small enough to be JIT-compiled?
+     */
+    static boolean fits(TreeEnsemble ensemble, int tree) {
+        // code size does not depend on constant indices, so a throwaway pool is fine
+        return treeCode(ensemble, tree, new ConstantPool()).length <= HUGE_METHOD_LIMIT;
+    }
+
+    int constants() {
+        return pool.size();
+    }
+
+    int trees() {
+        return trees;
+    }
+
+    /**
+     * Add a tree to this class. The tree should fit into a single method.
+     */
+    void addTree(int tree) {
+        byte[] code = treeCode(ensemble, tree, pool);
+        String name = "t" + tree;
+        methods.add(method(ACC_PRIVATE | ACC_STATIC, name, "([D)D", 4, 3, code));
+        // out[k] = out[k] + t(features)
+        Code call = new Code();
+        call.op(ALOAD_2);
+        pushInt(call, pool, tree % ensemble.numTreesPerIteration);
+        call.op(DUP2);
+        call.op(DALOAD);
+        call.op(ALOAD_1);
+        call.op(INVOKESTATIC);
+        call.u2(pool.methodref(className, name, "([D)D"));
+        call.op(DADD);
+        call.op(DASTORE);
+        byte[] bytes = call.toByteArray();
+        scores.write(bytes, 0, bytes.length);
+        trees++;
+    }
+
+    /**
+     * Build and load the class.
+     */
+    TreeBlock define() throws LGBMException {
+        Code init = new Code();
+        init.op(ALOAD_0);
+        init.op(INVOKESPECIAL);
+        init.u2(pool.methodref("java/lang/Object", "<init>", "()V"));
+        init.op(RETURN);
+        Code add = new Code();
+        byte[] calls = scores.toByteArray();
+        add.bytes(calls);
+        add.op(RETURN);
+        List<byte[]> all = new ArrayList<>();
+        all.add(method(ACC_PUBLIC, "<init>", "()V", 1, 1, init.toByteArray()));
+        all.add(method(ACC_PUBLIC, "addScores", "([D[D)V", 6, 3, add.toByteArray()));
+        all.addAll(methods);
+        try {
+            int thisClass = pool.classRef(className);
+            int superClass = pool.classRef("java/lang/Object");
+            int iface = pool.classRef(TREE_BLOCK);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            pool.write(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(0);
+            out.writeShort(all.size());
+            for (byte[] method : all) {
+                out.write(method);
+            }
+            out.writeShort(0);
+            out.flush();
+            Class<?> clazz = defineClass(bytes.toByteArray(), className.replace('/', '.'));
+            return (TreeBlock) clazz.getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | LinkageError e) {
+            throw new LGBMException("cannot define a compiled tree class: " + e);
+        }
+    }
+
+    private byte[] method(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        Code out = new Code();
+        out.u2(access);
+        out.u2(pool.utf8(name));
+        out.u2(pool.utf8(descriptor));
+        out.u2(1);
+        out.u2(codeAttribute);
+        out.u4(12 + code.length);
+        out.u2(maxStack);
+        out.u2(maxLocals);
+        out.u4(code.length);
+        out.bytes(code);
+        out.u2(0);
+        out.u2(0);
+        return out.toByteArray();
+    }
+
+    private static void emitNode(TreeEnsemble e, int node, Code code, ConstantPool pool) {
+        if (node < 0) {
+            code.op(LDC2_W);
+            code.u2(pool.doubleConst(e.leafValue[~node]));
+            code.op(DRETURN);
+            return;
+        }
+        // v = features[feature]
+        code.op(ALOAD_0);
+        pushInt(code, pool, e.splitFeature[node]);
+        code.op(DALOAD);
+        code.op(DSTORE_1);
+        Label left = new Label();
+        Label right = new Label();
+        int decision = e.decisionType[node];
+        if ((decision & TreeEnsemble.CATEGORICAL_MASK) != 0) {
+            // NaN goes right, (int) NaN would be 0 otherwise
+            code.op(DLOAD_1);
+            code.op(DLOAD_1);
+            code.op(DCMPL);
+            code.jump(IFNE, right);
+            code.op(DLOAD_1);
+            code.op(D2I);
+            TreeSet<Integer> categories = new TreeSet<>();
+            for (int word = 0; word < e.catLength[node]; word++) {
+                int bits = e.catBitset[e.catStart[node] + word];
+                for (int bit = 0; bit < 32; bit++) {
+                    if (((bits >>> bit) & 1) != 0) categories.add(word * 32 + bit);
+                }
+            }
+            code.lookupSwitch(categories, left, right);
+        } else {
+            int missingType = (decision >> 2) & 3;
+            Label defaultBranch = (decision & TreeEnsemble.DEFAULT_LEFT_MASK) != 0 ? left : right;
+            if (missingType == TreeEnsemble.MISSING_NAN) {
+                code.op(DLOAD_1);
+                code.op(DLOAD_1);
+                code.op(DCMPL);
+                code.jump(IFNE, defaultBranch);
+            } else {
+                // NaN is treated as zero
+                Label notNan = new Label();
+                code.op(DLOAD_1);
+                code.op(DLOAD_1);
+                code.op(DCMPL);
+                code.jump(IFEQ, notNan);
+                code.op(DCONST_0);
+                code.op(DSTORE_1);
+                code.mark(notNan);
+                if (missingType == TreeEnsemble.MISSING_ZERO) {
+                    // features are already clamped, so IsZero is an exact zero check
+                    code.op(DLOAD_1);
+                    code.op(DCONST_0);
+                    code.op(DCMPL);
+                    code.jump(IFEQ, defaultBranch);
+                }
+            }
+            code.op(DLOAD_1);
+            code.op(LDC2_W);
+            code.u2(pool.doubleConst(e.threshold[node]));
+            code.op(DCMPG);
+            code.jump(IFGT, right);
+        }
+        code.mark(left);
+        emitNode(e, e.leftChild[node], code, pool);
+        code.mark(right);
+        emitNode(e, e.rightChild[node], code, pool);
+    }
+
+    private static void pushInt(Code code, ConstantPool pool, int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.op(BIPUSH);
+            code.u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.op(SIPUSH);
+            code.u2(value);
+        } else {
+            code.op(LDC_W);
+            code.u2(pool.intConst(value));
+        }
+    }
+
+    /**
+     * Define the class in the package of TreeBlock: as a hidden class on JDK 15+, with Lookup.defineClass on JDK 9+,
+     * and with ClassLoader.defineClass on JDK 8. Only hidden classes can be unloaded after the model is no longer used.
+     */
+    private static Class<?> defineClass(byte[] bytes, String name) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Method defineHidden = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(optionClass, 0).getClass());
+            MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHidden.invoke(lookup, bytes, true, Array.newInstance(optionClass, 0));
+            return hidden.lookupClass();
+        } catch (ClassNotFoundException | NoSuchMethodException jdk14) {
+            try {
+                Method define = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+                return (Class<?>) define.invoke(lookup, (Object) bytes);
+            } catch (NoSuchMethodException jdk8) {
+                Method define = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class);
+                define.setAccessible(true);
+                return (Class<?>) define.invoke(TreeClassWriter.class.getClassLoader(), name, bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    static final class Label {
+        int position = -1;
+    }
+
+    /**
+     * A growable bytecode buffer with forward branch patching.
+     */
+    static final class Code {
+        private byte[] buf = new byte[256];
+        private int size = 0;
+        private final Map<Label, List<int[]>> fixups = new HashMap<>();
+
+        int size() {
+            return size;
+        }
+
+        void u1(int value) {
+            ensure(1);
+            buf[size++] = (byte) value;
+        }
+
+        void op(int opcode) {
+            u1(opcode);
+        }
+
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void bytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buf, size, value.length);
+            size += value.length;
+        }
+
+        void jump(int opcode, Label target) {
+            int at = size;
+            op(opcode);
+            reference(target, at, size, 2);
+            u2(0);
+        }
+
+        void lookupSwitch(TreeSet<Integer> keys, Label match, Label otherwise) {
+            int at = size;
+            op(LOOKUPSWITCH);
+            while (size % 4 != 0) u1(0);
+            reference(otherwise, at, size, 4);
+            u4(0);
+            u4(keys.size());
+            for (int key : keys) {
+                u4(key);
+                reference(match, at, size, 4);
+                u4(0);
+            }
+        }
+
+        void mark(Label label) {
+            label.position = size;
+            List<int[]> refs = fixups.remove(label);
+            if (refs != null) {
+                for (int[] ref : refs) patch(ref[0], ref[1], ref[2], size - ref[0]);
+            }
+        }
+
+        private void reference(Label label, int instruction, int offset, int width) {
+            if (label.position >= 0) {
+                patch(instruction, offset, width, label.position - instruction);
+            } else {
+                fixups.computeIfAbsent(label, l -> new ArrayList<>()).add(new int[]{instruction, offset, width});
+            }
+        }
+
+        private void patch(int instruction, int offset, int width, int delta) {
+            if (width == 2) {
+                buf[offset] = (byte) (delta >>> 8);
+                buf[offset + 1] = (byte) delta;
+            } else {
+                buf[offset] = (byte) (delta >>> 24);
+                buf[offset + 1] = (byte) (delta >>> 16);
+                buf[offset + 2] = (byte) (delta >>> 8);
+                buf[offset + 3] = (byte) delta;
+            }
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                byte[] next = new byte[Math.max(buf.length * 2, size + extra)];
+                System.arraycopy(buf, 0, next, 0, size);
+                buf = next;
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[size];
+            System.arraycopy(buf, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    /**
+     * Class file constant pool with deduplication.
+     */
+    static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int METHODREF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final Map<String, Integer> index = new HashMap<>();
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private int next = 1;
+
+        int size() {
+            return next;
+        }
+
+        int utf8(String value) {
+            String key = "U" + value;
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            try {
+                DataOutputStream out = new DataOutputStream(data);
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add(key, 1);
+        }
+
+        int intConst(int value) {
+            String key = "I" + value;
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            data.write(INTEGER);
+            writeInt(value);
+            return add(key, 1);
+        }
+
+        int doubleConst(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            String key = "D" + bits;
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            data.write(DOUBLE);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+            // doubles take two constant pool slots
+            return add(key, 2);
+        }
+
+        int classRef(String name) {
+            String key = "C" + name;
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            int nameIndex = utf8(name);
+            data.write(CLASS);
+            writeShort(nameIndex);
+            return add(key, 1);
+        }
+
+        int methodref(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            int classIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int typeIndex = utf8(descriptor);
+            int nameAndType = next;
+            data.write(NAME_AND_TYPE);
+            writeShort(nameIndex);
+            writeShort(typeIndex);
+            next++;
+            data.write(METHODREF);
+            writeShort(classIndex);
+            writeShort(nameAndType);
+            return add(key, 1);
+        }
+
+        private int add(String key, int slots) {
+            int result = next;
+            index.put(key, result);
+            next += slots;
+            return result;
+        }
+
+        private void writeShort(int value) {
+            data.write(value >>> 8);
+            data.write(value);
+        }
+
+        private void writeInt(int value) {
+            writeShort(value >>> 16);
+            writeShort(value);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeShort(next);
+            data.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pure-Java evaluator for LightGBM models, parsed from the text format produced by LGBMBooster.saveModelToString.
+ * It does no JNI calls at all, so there's no native call overhead, and JIT can inline the whole tree traversal.
+ * Methods taking a PredictionKind work without the native library, PredictionType overloads need it loaded, as
+ * PredictionType constants are read from the native library.
+ *
+ * All the trees are flattened into a set of primitive arrays. Split decisions (numerical thresholds, categorical
+ * bitsets, zero/NaN missing value handling) follow the LightGBM ones exactly, and trees are summed in the same
+ * order, so raw scores and leaf indices are identical to the native predictForMat. Normal predictions apply the same
+ * objective transformation, but may differ in the last bit, as java.lang.Math and libm exp() are not guaranteed
+ * to match.
+ *
+ * Linear trees and SHAP contributions are not supported. An instance is immutable and thread-safe.
+ */
+public final class TreeEnsemble {
+    static final double ZERO_THRESHOLD = 1e-35f;
+    static final int CATEGORICAL_MASK = 1;
+    static final int DEFAULT_LEFT_MASK = 2;
+    static final int MISSING_NONE = 0;
+    static final int MISSING_ZERO = 1;
+    static final int MISSING_NAN = 2;
+
+    private enum Transform {
+        IDENTITY, SIGMOID, SOFTMAX, SIGMOID_OVA, EXP, SQUARE, CROSS_ENTROPY, CROSS_ENTROPY_LAMBDA
+    }
+
+    final int numFeatures;
+    final int numClasses;
+    final int numTreesPerIteration;
+    final int numTrees;
+    final boolean averageOutput;
+    private final Transform transform;
+    private final double sigmoid;
+
+    // per tree: root node, or ~leaf for single-leaf trees
+    final int[] treeRoot;
+    final int[] treeLeafOffset;
+
+    // per split node, child references are global: node index when >= 0, ~leaf index otherwise
+    final int[] splitFeature;
+    final double[] threshold;
+    final byte[] decisionType;
+    final int[] leftChild;
+    final int[] rightChild;
+    final int[] catStart;
+    final int[] catLength;
+    final int[] catBitset;
+
+    // per leaf
+    final double[] leafValue;
+
+    private TreeEnsemble(int numFeatures, int numClasses, int numTreesPerIteration, boolean averageOutput,
+                         Transform transform, double sigmoid, List<Map<String, String>> trees) throws LGBMException {
+        this.numFeatures = numFeatures;
+        this.numClasses = numClasses;
+        this.numTreesPerIteration = numTreesPerIteration;
+        this.numTrees = trees.size();
+        this.averageOutput = averageOutput;
+        this.transform = transform;
+        this.sigmoid = sigmoid;
+        if (numTrees % numTreesPerIteration != 0) {
+            throw new LGBMException("model has " + numTrees + " trees, which is not a multiple of " + numTreesPerIteration + " trees per iteration");
+        }
+
+        int totalNodes = 0;
+        int totalLeaves = 0;
+        int totalCats = 0;
+        for (Map<String, String> tree : trees) {
+            int leaves = parseInt(tree, "num_leaves");
+            totalLeaves += leaves;
+            totalNodes += leaves - 1;
+            if (parseInt(tree, "num_cat") > 0) {
+                totalCats += parseInts(tree, "cat_threshold").length;
+            }
+        }
+        treeRoot = new int[numTrees];
+        treeLeafOffset = new int[numTrees];
+        splitFeature = new int[totalNodes];
+        threshold = new double[totalNodes];
+        decisionType = new byte[totalNodes];
+        leftChild = new int[totalNodes];
+        rightChild = new int[totalNodes];
+        catStart = new int[totalNodes];
+        catLength = new int[totalNodes];
+        catBitset = new int[totalCats];
+        leafValue = new double[totalLeaves];
+
+        int nodeOffset = 0;
+        int leafOffset = 0;
+        int catOffset = 0;
+        for (int t = 0; t < numTrees; t++) {
+            Map<String, String> tree = trees.get(t);
+            if (parseInt(tree, "is_linear") != 0) {
+                throw new LGBMException("linear trees are not supported");
+            }
+            int leaves = parseInt(tree, "num_leaves");
+            int nodes = leaves - 1;
+            double[] values = parseDoubles(tree, "leaf_value");
+            if (values.length != leaves) {
+                throw new LGBMException("tree " + t + " has " + leaves + " leaves, but " + values.length + " leaf values");
+            }
+            System.arraycopy(values, 0, leafValue, leafOffset, leaves);
+            treeLeafOffset[t] = leafOffset;
+            if (nodes == 0) {
+                treeRoot[t] = ~leafOffset;
+            } else {
+                treeRoot[t] = nodeOffset;
+                int[] features = parseInts(tree, "split_feature");
+                double[] thresholds = parseDoubles(tree, "threshold");
+                int[] decisions = parseInts(tree, "decision_type");
+                int[] left = parseInts(tree, "left_child");
+                int[] right = parseInts(tree, "right_child");
+                int[] boundaries = new int[0];
+                int[] bitsets = new int[0];
+                if (parseInt(tree, "num_cat") > 0) {
+                    boundaries = parseInts(tree, "cat_boundaries");
+                    bitsets = parseInts(tree, "cat_threshold");
+                    System.arraycopy(bitsets, 0, catBitset, catOffset, bitsets.length);
+                }
+                for (int i = 0; i < nodes; i++) {
+                    int node = nodeOffset + i;
+                    splitFeature[node] = features[i];
+                    threshold[node] = thresholds[i];
+                    decisionType[node] = (byte) decisions[i];
+                    leftChild[node] = left[i] >= 0 ? nodeOffset + left[i] : ~(leafOffset + ~left[i]);
+                    rightChild[node] = right[i] >= 0 ? nodeOffset + right[i] : ~(leafOffset + ~right[i]);
+                    if ((decisions[i] & CATEGORICAL_MASK) != 0) {
+                        int catIndex = (int) thresholds[i];
+                        catStart[node] = catOffset + boundaries[catIndex];
+                        catLength[node] = boundaries[catIndex + 1] - boundaries[catIndex];
+                    }
+                }
+                catOffset += bitsets.length;
+            }
+            nodeOffset += nodes;
+            leafOffset += leaves;
+        }
+    }
+
+    /**
+     * Parse the model from the LightGBM text format.
+     *
+     * @param model model string, as produced by LGBMBooster.saveModelToString or a LightGBM model file contents
+     * @return parsed model
+     * @throws LGBMException when the model cannot be parsed or uses unsupported features
+     */
+    public static TreeEnsemble fromModelString(String model) throws LGBMException {
+        String[] lines = model.split("\\r?\\n");
+        Map<String, String> header = new HashMap<>();
+        List<Map<String, String>> trees = new ArrayList<>();
+        Map<String, String> current = header;
+        for (String line : lines) {
+            if (line.startsWith("end of trees")) {
+                break;
+            } else if (line.startsWith("Tree=")) {
+                current = new HashMap<>();
+                trees.add(current);
+            } else if (!line.isEmpty()) {
+                int eq = line.indexOf('=');
+                if (eq < 0) {
+                    current.put(line.trim(), "");
+                } else {
+                    current.put(line.substring(0, eq), line.substring(eq + 1));
+                }
+            }
+        }
+        if (!header.containsKey("max_feature_idx")) {
+            throw new LGBMException("cannot parse model: no max_feature_idx in the header");
+        }
+        int numFeatures = parseInt(header, "max_feature_idx") + 1;
+        int numClasses = parseInt(header, "num_class");
+        int numTreesPerIteration = parseInt(header, "num_tree_per_iteration");
+        boolean averageOutput = header.containsKey("average_output");
+
+        Transform transform = Transform.IDENTITY;
+        double sigmoid = 1.0;
+        String objective = header.get("objective");
+        if (objective != null && !objective.isEmpty()) {
+            String[] tokens = objective.split(" ");
+            boolean sqrt = false;
+            for (int i = 1; i < tokens.length; i++) {
+                if (tokens[i].startsWith("sigmoid:")) {
+                    sigmoid = Double.parseDouble(tokens[i].substring("sigmoid:".length()));
+                } else if (tokens[i].equals("sqrt")) {
+                    sqrt = true;
+                }
+            }
+            switch (tokens[0]) {
+                case "binary":
+                    transform = Transform.SIGMOID;
+                    break;
+                case "multiclass":
+                    transform = Transform.SOFTMAX;
+                    break;
+                case "multiclassova":
+                    transform = Transform.SIGMOID_OVA;
+                    break;
+                case "poisson":
+                case "gamma":
+                case "tweedie":
+                    transform = Transform.EXP;
+                    break;
+                case "cross_entropy":
+                    transform = Transform.CROSS_ENTROPY;
+                    break;
+                case "cross_entropy_lambda":
+                    transform = Transform.CROSS_ENTROPY_LAMBDA;
+                    break;
+                case "regression":
+                case "regression_l1":
+                case "huber":
+                case "fair":
+                case "quantile":
+                case "mape":
+                    transform = sqrt ? Transform.SQUARE : Transform.IDENTITY;
+                    break;
+                case "lambdarank":
+                case "rank_xendcg":
+                case "custom":
+                case "none":
+                    transform = Transform.IDENTITY;
+                    break;
+                default:
+                    throw new LGBMException("unsupported objective: " + objective);
+            }
+        }
+        return new TreeEnsemble(numFeatures, numClasses, numTreesPerIteration, averageOutput, transform, sigmoid, trees);
+    }
+
+    /**
+     * Make a pure-Java copy of the current booster state.
+     *
+     * @param booster the booster
+     * @return parsed model
+     * @throws LGBMException
+     */
+    public static TreeEnsemble fromBooster(LGBMBooster booster) throws LGBMException {
+        return fromModelString(booster.saveModelToString(0, 0, LGBMBooster.FeatureImportanceType.SPLIT));
+    }
+
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public int getNumTrees() {
+        return numTrees;
+    }
+
+    /**
+     * Number of predicted values for a single row, the same as LGBMBooster.calcNumPredict(1, predictionType).
+     *
+     * @param kind the prediction kind
+     * @return number of values
+     * @throws LGBMException
+     */
+    public int numPredict(PredictionKind kind) throws LGBMException {
+        switch (kind) {
+            case NORMAL:
+            case RAW_SCORE:
+                return numClasses;
+            case LEAF_INDEX:
+                return numTrees;
+            default:
+                throw new LGBMException("prediction kind " + kind + " is not supported");
+        }
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        checkInput(input.length, rows, cols);
+        int width = numPredict(kind);
+        double[] output = new double[rows * width];
+        for (int row = 0; row < rows; row++) {
+            if (isRowMajor) {
+                predict(input, row * cols, 1, cols, kind, output, row * width);
+            } else {
+                predict(input, row, rows, cols, kind, output, row * width);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Make a prediction for a dense matrix, with the same output layout as LGBMBooster.predictForMat.
+     *
+     * @param input          input matrix, as a 1D array
+     * @param rows           number of rows
+     * @param cols           number of cols
+     * @param isRowMajor     is the 1d encoding a row-major?
+     * @param kind           the prediction kind
+     * @return array of predictions
+     * @throws LGBMException
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionKind kind) throws LGBMException {
+        checkInput(input.length, rows, cols);
+        int width = numPredict(kind);
+        double[] output = new double[rows * width];
+        double[] row = new double[cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                row[c] = isRowMajor ? input[r * cols + c] : input[c * rows + r];
+            }
+            predict(row, 0, 1, cols, kind, output, r * width);
+        }
+        return output;
+    }
+
+    /**
+     * Make a prediction for a single row.
+     *
+     * @param row            input vector
+     * @param kind           the prediction kind
+     * @return first predicted value
+     * @throws LGBMException
+     */
+    public double predictForMatSingleRow(double[] row, PredictionKind kind) throws LGBMException {
+        if (kind == PredictionKind.RAW_SCORE && numClasses == 1) {
+            // the most common case, done without allocations
+            return rawScore(row, 0, 1, row.length, 0);
+        } else {
+            double[] output = new double[numPredict(kind)];
+            predict(row, 0, 1, row.length, kind, output, 0);
+            return output[0];
+        }
+    }
+
+    /**
+     * Make a prediction for a single row, writing all the predicted values into the output array.
+     *
+     * @param row            input vector
+     * @param kind           the prediction kind
+     * @param output         output array
+     * @param outputOffset   offset in the output array
+     * @return number of predicted values written
+     * @throws LGBMException
+     */
+    public int predict(double[] row, PredictionKind kind, double[] output, int outputOffset) throws LGBMException {
+        int width = numPredict(kind);
+        if (output.length - outputOffset < width) {
+            throw new LGBMException("output array has " + (output.length - outputOffset) + " elements after the offset, but " + width + " are needed");
+        }
+        predict(row, 0, 1, row.length, kind, output, outputOffset);
+        return width;
+    }
+
+    /**
+     * Same as numPredict with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     *
+     * @throws LGBMException for C_API_PREDICT_CONTRIB, which is not supported
+     */
+    public int numPredict(PredictionType predictionType) throws LGBMException {
+        return numPredict(PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(double[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMat with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double[] predictForMat(float[] input, int rows, int cols, boolean isRowMajor, PredictionType predictionType) throws LGBMException {
+        return predictForMat(input, rows, cols, isRowMajor, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predictForMatSingleRow with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public double predictForMatSingleRow(double[] row, PredictionType predictionType) throws LGBMException {
+        return predictForMatSingleRow(row, PredictionKind.of(predictionType));
+    }
+
+    /**
+     * Same as predict with a PredictionKind, but takes the native PredictionType, so it requires the native library.
+     */
+    public int predict(double[] row, PredictionType predictionType, double[] output, int outputOffset) throws LGBMException {
+        return predict(row, PredictionKind.of(predictionType), output, outputOffset);
+    }
+
+    private void checkInput(int length, int rows, int cols) throws LGBMException {
+        if ((long) rows * cols > length) {
+            throw new LGBMException("input array has " + length + " elements, but " + rows + "x" + cols + " matrix was expected");
+        }
+    }
+
+    private void predict(double[] data, int offset, int stride, int cols, PredictionKind kind, double[] output, int outputOffset) throws LGBMException {
+        switch (kind) {
+            case LEAF_INDEX:
+                for (int t = 0; t < numTrees; t++) {
+                    output[outputOffset + t] = ~traverse(t, data, offset, stride, cols) - treeLeafOffset[t];
+                }
+                break;
+            case RAW_SCORE:
+                rawScores(data, offset, stride, cols, output, outputOffset);
+                break;
+            case NORMAL:
+                rawScores(data, offset, stride, cols, output, outputOffset);
+                rawToNormal(output, outputOffset);
+                break;
+            default:
+                throw new LGBMException("prediction kind " + kind + " is not supported");
+        }
+    }
+
+    private void rawScores(double[] data, int offset, int stride, int cols, double[] output, int outputOffset) {
+        for (int k = 0; k < numTreesPerIteration; k++) {
+            output[outputOffset + k] = rawScore(data, offset, stride, cols, k);
+        }
+    }
+
+    private double rawScore(double[] data, int offset, int stride, int cols, int treeClass) {
+        double sum = 0.0;
+        for (int t = treeClass; t < numTrees; t += numTreesPerIteration) {
+            sum += leafValue[~traverse(t, data, offset, stride, cols)];
+        }
+        return sum;
+    }
+
+    /**
+     * @return ~leaf, with a global leaf index
+     */
+    int traverse(int tree, double[] data, int offset, int stride, int cols) {
+        int node = treeRoot[tree];
+        while (node >= 0) {
+            int feature = splitFeature[node];
+            double value = feature < cols ? featureValue(data[offset + feature * stride]) : 0.0;
+            if ((decisionType[node] & CATEGORICAL_MASK) != 0) {
+                node = categoricalDecision(node, value);
+            } else {
+                node = numericalDecision(node, value);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * LightGBM skips near-zero values when building the sparse feature vector, so they become exact zeros.
+     */
+    static double featureValue(double value) {
+        if ((Math.abs(value) > ZERO_THRESHOLD) || Double.isNaN(value)) {
+            return value;
+        } else {
+            return 0.0;
+        }
+    }
+
+    static boolean isZero(double value) {
+        return (value >= -ZERO_THRESHOLD) && (value <= ZERO_THRESHOLD);
+    }
+
+    int numericalDecision(int node, double value) {
+        int decision = decisionType[node];
+        int missingType = (decision >> 2) & 3;
+        if (Double.isNaN(value) && (missingType != MISSING_NAN)) {
+            value = 0.0;
+        }
+        if (((missingType == MISSING_ZERO) && isZero(value)) || ((missingType == MISSING_NAN) && Double.isNaN(value))) {
+            return (decision & DEFAULT_LEFT_MASK) != 0 ? leftChild[node] : rightChild[node];
+        } else {
+            return value <= threshold[node] ? leftChild[node] : rightChild[node];
+        }
+    }
+
+    int categoricalDecision(int node, double value) {
+        if (Double.isNaN(value)) {
+            return rightChild[node];
+        }
+        int category = (int) value;
+        if (category < 0) {
+            return rightChild[node];
+        }
+        int word = category >>> 5;
+        if (word >= catLength[node]) {
+            return rightChild[node];
+        }
+        return ((catBitset[catStart[node] + word] >>> (category & 31)) & 1) != 0 ? leftChild[node] : rightChild[node];
+    }
+
+    /**
+     * Convert raw scores to normal ones, in place.
+     */
+    void rawToNormal(double[] output, int offset) {
+        if (averageOutput) {
+            // like in LightGBM, only normal predictions of random forests are averaged, raw ones are not
+            int iterations = numTrees / numTreesPerIteration;
+            for (int k = 0; k < numTreesPerIteration; k++) {
+                output[offset + k] /= iterations;
+            }
+        }
+        convertOutput(output, offset);
+    }
+
+    private void convertOutput(double[] output, int offset) {
+        switch (transform) {
+            case SIGMOID:
+                output[offset] = 1.0 / (1.0 + Math.exp(-sigmoid * output[offset]));
+                break;
+            case SIGMOID_OVA:
+                for (int k = 0; k < numClasses; k++) {
+                    output[offset + k] = 1.0 / (1.0 + Math.exp(-sigmoid * output[offset + k]));
+                }
+                break;
+            case SOFTMAX:
+                double max = output[offset];
+                for (int k = 1; k < numClasses; k++) {
+                    max = Math.max(max, output[offset + k]);
+                }
+                double sum = 0.0;
+                for (int k = 0; k < numClasses; k++) {
+                    output[offset + k] = Math.exp(output[offset + k] - max);
+                    sum += output[offset + k];
+                }
+                for (int k = 0; k < numClasses; k++) {
+                    output[offset + k] /= sum;
+                }
+                break;
+            case EXP:
+                output[offset] = Math.exp(output[offset]);
+                break;
+            case SQUARE:
+                double value = output[offset];
+                output[offset] = Math.signum(value) * value * value;
+                break;
+            case CROSS_ENTROPY:
+                output[offset] = 1.0 / (1.0 + Math.exp(-output[offset]));
+                break;
+            case CROSS_ENTROPY_LAMBDA:
+                output[offset] = Math.log1p(Math.exp(output[offset]));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static int parseInt(Map<String, String> fields, String key) throws LGBMException {
+        String value = fields.get(key);
+        if (value == null) {
+            if (key.equals("is_linear") || key.equals("num_cat")) {
+                return 0;
+            }
+            throw new LGBMException("cannot parse model: missing field " + key);
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new LGBMException("cannot parse model: field " + key + " has non-numeric value '" + value + "'");
+        }
+    }
+
+    private static String[] tokens(Map<String, String> fields, String key) throws LGBMException {
+        String value = fields.get(key);
+        if (value == null) {
+            throw new LGBMException("cannot parse model: missing field " + key);
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split(" ");
+    }
+
+    private static int[] parseInts(Map<String, String> fields, String key) throws LGBMException {
+        String[] tokens = tokens(fields, key);
+        int[] result = new int[tokens.length];
+        try {
+            for (int i = 0; i < tokens.length; i++) {
+                // cat_threshold bitsets are unsigned 32-bit ints
+                result[i] = (int) Long.parseLong(tokens[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new LGBMException("cannot parse model: field " + key + " has non-numeric values");
+        }
+        return result;
+    }
+
+    private static double parseDouble(String token) {
+        // LightGBM prints infinite values the C++ way
+        switch (token) {
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "nan":
+            case "-nan":
+                return Double.NaN;
+            default:
+                return Double.parseDouble(token);
+        }
+    }
+
+    private static double[] parseDoubles(Map<String, String> fields, String key) throws LGBMException {
+        String[] tokens = tokens(fields, key);
+        double[] result = new double[tokens.length];
+        try {
+            for (int i = 0; i < tokens.length; i++) {
+                result[i] = parseDouble(tokens[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new LGBMException("cannot parse model: field " + key + " has non-numeric values");
+        }
+        return result;
+    }
+}
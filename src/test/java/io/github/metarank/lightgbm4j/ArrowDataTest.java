@@ -0,0 +1,152 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.metarank.lightgbm4j.CancerFixture.COLS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArrowDataTest {
+    @Test
+    public void testTrainAndPredict() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        float[] labels = cancer[1];
+        int rows = labels.length;
+        LGBMDataset dense = LGBMDataset.createFromMat(features, rows, COLS, true, "", null);
+        dense.setField("label", labels);
+
+        // two record batches
+        int split = 50;
+        NativeStructs arrow = new NativeStructs();
+        long schema = arrow.structSchema(COLS);
+        long[] chunks = new long[]{arrow.structArray(features, 0, split), arrow.structArray(features, split, rows)};
+        LGBMDataset dataset = LGBMDataset.createFromArrow(chunks, schema, "", dense);
+        dataset.setFieldFromArrow("label", new long[]{arrow.floatArray(labels, 0, rows)}, arrow.schema("f", "label", 0, 0));
+        assertEquals(rows, dataset.getNumData());
+        assertArrayEquals(labels, dataset.getFieldFloat("label"));
+
+        LGBMBooster denseBooster = LGBMBooster.create(dense, "objective=binary min_data_in_leaf=5");
+        LGBMBooster arrowBooster = LGBMBooster.create(dataset, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            denseBooster.updateOneIter();
+            arrowBooster.updateOneIter();
+        }
+        double[] expected = denseBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE);
+        assertArrayEquals(expected, arrowBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE));
+        long[] predictChunks = new long[]{arrow.structArray(features, 0, split), arrow.structArray(features, split, rows)};
+        assertArrayEquals(expected, arrowBooster.predictForArrow(predictChunks, arrow.structSchema(COLS), PredictionType.C_API_PREDICT_RAW_SCORE));
+        assertThrows(LGBMException.class, () -> arrowBooster.predictForArrow(new long[0], schema, PredictionType.C_API_PREDICT_RAW_SCORE));
+        denseBooster.close();
+        arrowBooster.close();
+        dataset.close();
+        dense.close();
+    }
+
+    @Test
+    public void testRestore() throws LGBMException {
+        NativeStructs arrow = new NativeStructs();
+        float[] values = {1, 2, 3};
+        long[] chunks = {arrow.floatArray(values, 0, 3), arrow.floatArray(values, 0, 2)};
+        // fake release callbacks, never called
+        DirectMemory.putLong(chunks[0] + ArrowData.ARRAY_RELEASE_OFFSET, 1);
+        DirectMemory.putLong(chunks[1] + ArrowData.ARRAY_RELEASE_OFFSET, 2);
+        long moved = ArrowData.move(chunks);
+        try {
+            assertEquals(0, DirectMemory.getLong(chunks[0] + ArrowData.ARRAY_RELEASE_OFFSET));
+            assertEquals(0, DirectMemory.getLong(chunks[1] + ArrowData.ARRAY_RELEASE_OFFSET));
+            // the second chunk is already released by the consumer
+            DirectMemory.putLong(moved + ArrowData.ARRAY_SIZE + ArrowData.ARRAY_RELEASE_OFFSET, 0);
+            ArrowData.restore(chunks, moved);
+            assertEquals(1, DirectMemory.getLong(chunks[0] + ArrowData.ARRAY_RELEASE_OFFSET));
+            assertEquals(3, DirectMemory.getLong(chunks[0] + ArrowData.ARRAY_LENGTH_OFFSET));
+            assertEquals(0, DirectMemory.getLong(chunks[1] + ArrowData.ARRAY_RELEASE_OFFSET));
+            assertEquals(0, DirectMemory.getLong(moved + ArrowData.ARRAY_RELEASE_OFFSET));
+        } finally {
+            DirectMemory.free(moved);
+        }
+    }
+
+    /**
+     * Minimal Arrow C Data Interface writer for float32 columns. Structs have no release callbacks, and all the
+     * memory is owned by direct buffers, which are kept reachable by this object.
+     */
+    static class NativeStructs {
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        long structSchema(int cols) throws LGBMException {
+            long[] children = new long[cols];
+            for (int i = 0; i < cols; i++) {
+                children[i] = schema("f", "f" + i, 0, 0);
+            }
+            return schema("+s", "", cols, pointers(children));
+        }
+
+        long schema(String format, String name, long numChildren, long children) throws LGBMException {
+            ByteBuffer schema = allocate(72);
+            schema.putLong(0, string(format));
+            schema.putLong(8, string(name));
+            schema.putLong(32, numChildren);
+            schema.putLong(40, children);
+            return DirectMemory.address(schema);
+        }
+
+        long structArray(float[] rowMajor, int from, int to) throws LGBMException {
+            long[] children = new long[COLS];
+            for (int col = 0; col < COLS; col++) {
+                float[] column = new float[to - from];
+                for (int row = from; row < to; row++) {
+                    column[row - from] = rowMajor[row * COLS + col];
+                }
+                children[col] = floatArray(column, 0, column.length);
+            }
+            return array(to - from, 1, pointers(new long[]{0}), COLS, pointers(children));
+        }
+
+        long floatArray(float[] values, int from, int to) throws LGBMException {
+            ByteBuffer data = allocate((to - from) * Float.BYTES);
+            for (int i = from; i < to; i++) {
+                data.putFloat((i - from) * Float.BYTES, values[i]);
+            }
+            return array(to - from, 2, pointers(new long[]{0, DirectMemory.address(data)}), 0, 0);
+        }
+
+        private long array(long length, long numBuffers, long buffers, long numChildren, long children) throws LGBMException {
+            ByteBuffer array = allocate(ArrowData.ARRAY_SIZE);
+            array.putLong(0, length);
+            array.putLong(24, numBuffers);
+            array.putLong(32, numChildren);
+            array.putLong(40, buffers);
+            array.putLong(48, children);
+            return DirectMemory.address(array);
+        }
+
+        private long pointers(long[] values) throws LGBMException {
+            ByteBuffer buffer = allocate(values.length * Long.BYTES);
+            for (int i = 0; i < values.length; i++) {
+                buffer.putLong(i * Long.BYTES, values[i]);
+            }
+            return DirectMemory.address(buffer);
+        }
+
+        private long string(String value) throws LGBMException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = allocate(bytes.length + 1);
+            buffer.put(bytes);
+            return DirectMemory.address(buffer);
+        }
+
+        private ByteBuffer allocate(int size) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(size, 8)).order(ByteOrder.nativeOrder());
+            buffers.add(buffer);
+            return buffer;
+        }
+    }
+}
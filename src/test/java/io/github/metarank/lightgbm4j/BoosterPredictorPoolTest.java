@@ -0,0 +1,78 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoosterPredictorPoolTest {
+    @Test
+    public void testConcurrentScoring() throws Exception {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        double expected = booster.predictForMatSingleRow(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_NORMAL);
+        BoosterPredictorPool pool = new BoosterPredictorPool(booster, PredictionType.C_API_PREDICT_NORMAL, 9, "num_threads=1", 4);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Callable<Double>> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                tasks.add(() -> pool.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+            } else {
+                tasks.add(() -> pool.score(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+            }
+        }
+        for (Future<Double> result : executor.invokeAll(tasks)) {
+            assertEquals(expected, result.get(), 0.0000001);
+        }
+        executor.shutdown();
+        assertTrue(pool.getSize() <= 4);
+        pool.close();
+        assertEquals(0, pool.getSize());
+        assertThrows(LGBMException.class, () -> pool.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testContinuedTraining() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        float[] row = new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9};
+        BoosterPredictorPool pool = new BoosterPredictorPool(booster, PredictionType.C_API_PREDICT_NORMAL, 9, "", 1);
+        assertEquals(booster.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL), pool.score(row), 0.0000001);
+        booster.updateOneIter();
+        booster.updateOneIter();
+        // the stale config is re-created with the new trees
+        assertEquals(booster.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL), pool.score(row), 0.0000001);
+        // the float config is replaced with a double one, as the pool has a single slot
+        pool.score(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertEquals(1, pool.getSize());
+        pool.close();
+        booster.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testClosedWithBooster() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        BoosterPredictorPool pool = new BoosterPredictorPool(booster, PredictionType.C_API_PREDICT_NORMAL, 9, "");
+        assertTrue(Double.isFinite(pool.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9})));
+        booster.close();
+        assertThrows(LGBMException.class, () -> pool.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertThrows(LGBMException.class, () -> new BoosterPredictorPool(booster, PredictionType.C_API_PREDICT_NORMAL, 9, ""));
+        dataset.close();
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.metarank.lightgbm4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Raw values of src/test/resources/cancer.csv, for tests which need the feature matrix itself (predictions, parity
+ * with datasets built from the same floats). Tests which only need a labeled dataset should use
+ * CancerIntegrationTest.datasetFromFile().
+ */
+public class CancerFixture {
+    static final int COLS = 9;
+
+    /**
+     * @return row-major features as a first element, labels as a second one
+     */
+    static float[][] load() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("src/test/resources/cancer.csv"));
+        int rows = lines.size() - 1;
+        float[] features = new float[rows * COLS];
+        float[] labels = new float[rows];
+        for (int row = 0; row < rows; row++) {
+            String[] tokens = lines.get(row + 1).split(",");
+            for (int col = 0; col < COLS; col++) {
+                features[row * COLS + col] = Float.parseFloat(tokens[col]);
+            }
+            labels[row] = Float.parseFloat(tokens[COLS]);
+        }
+        return new float[][]{features, labels};
+    }
+}
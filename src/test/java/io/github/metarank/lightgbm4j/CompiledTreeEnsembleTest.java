@@ -0,0 +1,68 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledTreeEnsembleTest {
+    @Test
+    public void testBinaryParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary num_leaves=8 min_data_in_leaf=5");
+        for (int i = 0; i < 10; i++) booster.updateOneIter();
+        CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(booster);
+        assertEquals(10, compiled.getCompiledTrees());
+        assertArrayEquals(
+                booster.predictForMat(cancer[0], rows, CancerFixture.COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                compiled.predictForMat(cancer[0], rows, CancerFixture.COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertArrayEquals(
+                booster.predictForMat(cancer[0], rows, CancerFixture.COLS, true, PredictionType.C_API_PREDICT_NORMAL),
+                compiled.predictForMat(cancer[0], rows, CancerFixture.COLS, true, PredictionType.C_API_PREDICT_NORMAL),
+                0.000000000001
+        );
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testMissingCategoricalMulticlassParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        int cols = CancerFixture.COLS + 1;
+        double[] features = new double[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < CancerFixture.COLS; col++) {
+                double value = cancer[0][row * CancerFixture.COLS + col];
+                features[row * cols + col] = (row + col) % 7 == 0 ? Double.NaN : ((row + col) % 5 == 0 ? 0.0 : value);
+            }
+            features[row * cols + CancerFixture.COLS] = row % 9;
+        }
+        LGBMDataset dataset = LGBMDataset.createFromMat(features, rows, cols, true, "categorical_feature=9 min_data_per_group=5 cat_smooth=1", null);
+        dataset.setField("label", cancer[1]);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=multiclass num_class=2 num_leaves=8 min_data_in_leaf=5");
+        for (int i = 0; i < 10; i++) booster.updateOneIter();
+        CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(booster);
+        TreeEnsemble interpreted = compiled.getEnsemble();
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_RAW_SCORE),
+                compiled.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertArrayEquals(
+                interpreted.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_NORMAL),
+                compiled.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_NORMAL)
+        );
+        double[] out = new double[2];
+        double[] row = new double[cols];
+        System.arraycopy(features, 0, row, 0, cols);
+        assertEquals(2, compiled.predict(row, PredictionType.C_API_PREDICT_NORMAL, out, 0));
+        assertEquals(interpreted.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL), out[0]);
+        dataset.close();
+        booster.close();
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrossValidationRunnerTest {
+    @Test
+    public void testParallelFolds() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        try (CrossValidator cv = CrossValidator.create(dataset, 3, 42L, "")) {
+            CrossValidationRunner.Result result = CrossValidationRunner.run(cv, "objective=binary metric=auc,binary_logloss min_data_in_leaf=5 num_threads=8", 20, 0, 4);
+            assertArrayEquals(new String[]{"auc", "binary_logloss"}, result.metricNames);
+            assertEquals(20, result.mean.length);
+            assertEquals(20, result.stdev.length);
+            assertTrue(result.bestIteration >= 1);
+            assertTrue(result.getBestMean()[0] > 0.5);
+        }
+        dataset.close();
+    }
+
+    @Test
+    public void testEarlyStopping() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        try (CrossValidator cv = CrossValidator.create(dataset, 3, 42L, "")) {
+            CrossValidationRunner.Result result = CrossValidationRunner.run(cv, "objective=binary metric=binary_logloss learning_rate=0.5 min_data_in_leaf=5", 1000, 3, 2);
+            assertTrue(result.mean.length < 1000);
+            assertEquals(result.bestIteration + 3, result.mean.length);
+        }
+        dataset.close();
+    }
+
+    @Test
+    public void testFinishedFolds() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        try (CrossValidator cv = CrossValidator.create(dataset, 3, 42L, "")) {
+            // no fold can be split, so all of them are finished after the first iteration
+            CrossValidationRunner.Result result = CrossValidationRunner.run(cv, "objective=binary metric=binary_logloss min_data_in_leaf=" + rows, 100, 0, 2);
+            assertEquals(1, result.mean.length);
+            assertEquals(1, result.bestIteration);
+        }
+        dataset.close();
+    }
+
+    @Test
+    public void testParameters() {
+        assertEquals("objective=binary num_threads=4", CrossValidationRunner.withThreads("objective=binary  nthreads=16", 4));
+        assertEquals("num_threads=2", CrossValidationRunner.withThreads("", 2));
+        assertTrue(CrossValidationRunner.isHigherBetter("ndcg@10"));
+        assertFalse(CrossValidationRunner.isHigherBetter("binary_logloss"));
+    }
+}
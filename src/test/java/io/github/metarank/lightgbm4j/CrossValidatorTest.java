@@ -0,0 +1,83 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrossValidatorTest {
+    @Test
+    public void testSubset() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        float[] labels = dataset.getFieldFloat("label");
+        LGBMDataset subset = dataset.subset(new int[]{10, 2, 5}, "");
+        assertEquals(3, subset.getNumData());
+        assertEquals(dataset.getNumFeatures(), subset.getNumFeatures());
+        assertArrayEquals(new float[]{labels[2], labels[5], labels[10]}, subset.getFieldFloat("label"));
+        assertThrows(LGBMException.class, () -> dataset.subset(new int[]{rows}, ""));
+        assertThrows(LGBMException.class, () -> dataset.subset(new int[0], ""));
+        subset.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testFolds() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        try (CrossValidator cv = CrossValidator.create(dataset, 3, 42L, "")) {
+            assertEquals(3, cv.getFolds().size());
+            int[] seen = new int[rows];
+            for (CrossValidator.Fold fold : cv.getFolds()) {
+                assertEquals(rows, fold.trainRows.length + fold.validRows.length);
+                assertEquals(fold.trainRows.length, fold.train.getNumData());
+                assertEquals(fold.validRows.length, fold.valid.getNumData());
+                for (int row : fold.validRows) seen[row]++;
+                LGBMBooster booster = LGBMBooster.create(fold.train, "objective=binary metric=auc min_data_in_leaf=5");
+                booster.addValidData(fold.valid);
+                for (int i = 0; i < 5; i++) booster.updateOneIter();
+                assertTrue(booster.getEval(1)[0] > 0.5);
+                booster.close();
+            }
+            // each row is validated exactly once
+            for (int count : seen) assertEquals(1, count);
+        }
+        dataset.close();
+    }
+
+    @Test
+    public void testGroupFolds() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        int[] groups = new int[(rows + 9) / 10];
+        Arrays.fill(groups, 10);
+        groups[groups.length - 1] = rows - 10 * (groups.length - 1);
+        dataset.setField("group", groups);
+        try (CrossValidator cv = CrossValidator.create(dataset, 4, 1L, "")) {
+            for (CrossValidator.Fold fold : cv.getFolds()) {
+                // whole queries only
+                for (int row : fold.validRows) {
+                    assertTrue(Arrays.binarySearch(fold.validRows, (row / 10) * 10) >= 0);
+                }
+                int[] validGroups = fold.valid.getQueryBoundaries();
+                int[] trainGroups = fold.train.getQueryBoundaries();
+                assertEquals(groups.length + 2, validGroups.length + trainGroups.length);
+            }
+        }
+        assertThrows(LGBMException.class, () -> CrossValidator.create(dataset, 1, 1L, ""));
+        dataset.close();
+    }
+
+    @Test
+    public void testSplitRows() throws LGBMException {
+        int[][] folds = CrossValidator.splitRows(10, 3, 0L);
+        assertEquals(4, folds[0].length);
+        assertEquals(3, folds[1].length);
+        assertEquals(3, folds[2].length);
+        assertArrayEquals(new int[]{0, 1, 2, 3}, CrossValidator.complement(new int[]{4, 5, 6}, 4 + 3));
+        assertThrows(LGBMException.class, () -> CrossValidator.splitRows(2, 3, 0L));
+        assertThrows(LGBMException.class, () -> CrossValidator.splitGroups(new int[]{0, 5, 10}, 3, 0L));
+    }
+}
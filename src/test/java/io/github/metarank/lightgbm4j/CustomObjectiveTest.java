@@ -3,6 +3,11 @@ package io.github.metarank.lightgbm4j;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class CustomObjectiveTest {
 
@@ -31,4 +36,34 @@ public class CustomObjectiveTest {
         booster.close();
         dataset.close();
     }
+
+    @Test
+    void testDirectBufferGradients() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster arrayBooster = LGBMBooster.create(dataset, "objective=none metric=rmse label=name:Classification");
+        LGBMBooster bufferBooster = LGBMBooster.create(dataset, "objective=none metric=rmse label=name:Classification");
+        float[] y = dataset.getFieldFloat("label");
+        // allocated once and refilled in place on each iteration
+        FloatBuffer gradBuffer = ByteBuffer.allocateDirect(y.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        FloatBuffer hessBuffer = ByteBuffer.allocateDirect(y.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int it = 0; it < 10; it++) {
+            double[] yhat = arrayBooster.getPredict(0);
+            float[] grad = new float[y.length];
+            float[] hess = new float[y.length];
+            for (int i = 0; i < y.length; i++) {
+                grad[i] = (float) (2 * (yhat[i] - y[i]));
+                hess[i] = 2;
+                gradBuffer.put(i, grad[i]);
+                hessBuffer.put(i, hess[i]);
+            }
+            arrayBooster.updateOneIterCustom(grad, hess);
+            bufferBooster.updateOneIterCustom(gradBuffer, hessBuffer);
+            assertArrayEquals(arrayBooster.getPredict(0), bufferBooster.getPredict(0));
+        }
+        assertThrows(LGBMException.class, () -> bufferBooster.updateOneIterCustom(new float[1], new float[1]));
+        assertThrows(LGBMException.class, () -> bufferBooster.updateOneIterCustom(FloatBuffer.allocate(y.length), FloatBuffer.allocate(y.length)));
+        arrayBooster.close();
+        bufferBooster.close();
+        dataset.close();
+    }
 }
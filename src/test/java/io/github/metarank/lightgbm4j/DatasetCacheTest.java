@@ -0,0 +1,94 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetCacheTest {
+    private static final String PARAMS = "header=true label=name:Classification";
+
+    @Test
+    public void testCacheMissAndHit() throws LGBMException, IOException {
+        File dir = Files.createTempDirectory("lgbm-cache").toFile();
+        DatasetCache cache = new DatasetCache(dir);
+        File source = new File("src/test/resources/cancer.csv");
+        LGBMDataset built = cache.createFromFile(source, PARAMS);
+        File cached = cache.file(DatasetCache.key(DatasetCache.hash(source), PARAMS));
+        assertTrue(cached.exists());
+        // no leftover temp files
+        assertEquals(1, dir.listFiles().length);
+
+        LGBMDataset loaded = cache.createFromFile(source, PARAMS);
+        assertEquals(built.getNumData(), loaded.getNumData());
+        assertEquals(built.getNumFeatures(), loaded.getNumFeatures());
+        assertArrayEquals(built.getFieldFloat("label"), loaded.getFieldFloat("label"));
+        assertArrayEquals(built.getFeatureNames(), loaded.getFeatureNames());
+        loaded.close();
+        built.close();
+    }
+
+    @Test
+    public void testFactoryNotCalledOnHit() throws LGBMException, IOException {
+        File dir = Files.createTempDirectory("lgbm-cache").toFile();
+        DatasetCache cache = new DatasetCache(dir);
+        LGBMDataset first = cache.getOrCreate("cancer", PARAMS, () -> LGBMDataset.createFromFile("src/test/resources/cancer.csv", PARAMS, null));
+        LGBMDataset second = cache.getOrCreate("cancer", PARAMS, () -> {
+            throw new LGBMException("should not be called");
+        });
+        assertEquals(first.getNumData(), second.getNumData());
+        second.close();
+        first.close();
+    }
+
+    @Test
+    public void testSaveBinary() throws LGBMException, IOException {
+        File dir = Files.createTempDirectory("lgbm-bin").toFile();
+        String path = new File(dir, "cancer.bin").getPath();
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", PARAMS, null);
+        dataset.saveBinary(path);
+        LGBMDataset loaded = LGBMDataset.createFromFile(path, "", null);
+        assertEquals(dataset.getNumData(), loaded.getNumData());
+        loaded.close();
+        dataset.close();
+        assertThrows(LGBMException.class, () -> dataset.saveBinary(path));
+    }
+
+    @Test
+    public void testKey() {
+        String key = DatasetCache.key("source", "max_bin=255 header=true");
+        assertEquals(key, DatasetCache.key("source", "header=true  max_bin=255"));
+        assertEquals(key, DatasetCache.key("source", "header=true max_bin=255 learning_rate=0.1 num_leaves=63 objective=binary"));
+        assertNotEquals(key, DatasetCache.key("source", "header=true max_bin=63"));
+        assertNotEquals(key, DatasetCache.key("other", "header=true max_bin=255"));
+        assertEquals(Arrays.asList("header=true", "min_data_in_leaf=5"), DatasetCache.datasetParameters("min_data_in_leaf=5 num_leaves=8 header=true"));
+    }
+
+    @Test
+    public void testSidecarFilesInSourceKey() throws IOException {
+        File dir = Files.createTempDirectory("lgbm-cache").toFile();
+        File source = new File(dir, "train.csv");
+        Files.write(source.toPath(), "1,2\n0,3\n".getBytes(StandardCharsets.UTF_8));
+        String plain = DatasetCache.sourceKey(source);
+        assertEquals(DatasetCache.hash(source), plain);
+        File weights = new File(dir, "train.csv.weight");
+        Files.write(weights.toPath(), "1\n2\n".getBytes(StandardCharsets.UTF_8));
+        String weighted = DatasetCache.sourceKey(source);
+        assertNotEquals(plain, weighted);
+        Files.write(weights.toPath(), "1\n3\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(weighted, DatasetCache.sourceKey(source));
+        File queries = new File(dir, "train.csv.query");
+        Files.write(queries.toPath(), "2\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(weighted, DatasetCache.sourceKey(source));
+        queries.delete();
+        weights.delete();
+        assertEquals(plain, DatasetCache.sourceKey(source));
+        source.delete();
+        dir.delete();
+    }
+}
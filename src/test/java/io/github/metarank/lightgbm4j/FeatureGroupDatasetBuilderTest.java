@@ -0,0 +1,70 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static io.github.metarank.lightgbm4j.CancerFixture.COLS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeatureGroupDatasetBuilderTest {
+    @Test
+    public void testComposeGroups() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        int split = 4;
+        LGBMDataset full = LGBMDataset.createFromMat(cancer[0], rows, COLS, true, "", null);
+        full.setField("label", cancer[1]);
+        LGBMDataset left = LGBMDataset.createFromMat(columns(cancer[0], rows, 0, split), rows, split, true, "", null);
+        left.setField("label", cancer[1]);
+        left.setFeatureNames(new String[]{"f0", "f1", "f2", "f3"});
+        LGBMDataset right = LGBMDataset.createFromMat(columns(cancer[0], rows, split, COLS), rows, COLS - split, true, "", null);
+        right.setFeatureNames(new String[]{"f4", "f5", "f6", "f7", "f8"});
+
+        LGBMDataset composed = new FeatureGroupDatasetBuilder().add(left).add(right).build();
+        assertEquals(rows, composed.getNumData());
+        assertEquals(COLS, composed.getNumFeatures());
+        assertArrayEquals(new String[]{"f0", "f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8"}, composed.getFeatureNames());
+        assertArrayEquals(cancer[1], composed.getFieldFloat("label"));
+        // groups are not modified
+        assertEquals(split, left.getNumFeatures());
+
+        LGBMBooster fullBooster = LGBMBooster.create(full, "objective=binary min_data_in_leaf=5");
+        LGBMBooster composedBooster = LGBMBooster.create(composed, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            fullBooster.updateOneIter();
+            composedBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                fullBooster.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                composedBooster.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        fullBooster.close();
+        composedBooster.close();
+        composed.close();
+        left.close();
+        right.close();
+        full.close();
+    }
+
+    @Test
+    public void testValidation() throws LGBMException {
+        assertThrows(LGBMException.class, () -> new FeatureGroupDatasetBuilder().build());
+        LGBMDataset a = LGBMDataset.createFromMat(new float[]{1, 2, 3, 4}, 2, 2, true, "", null);
+        LGBMDataset b = LGBMDataset.createFromMat(new float[]{1, 2, 3}, 3, 1, true, "", null);
+        assertThrows(LGBMException.class, () -> new FeatureGroupDatasetBuilder().add(a).add(b).build());
+        assertThrows(LGBMException.class, () -> a.addFeaturesFrom(b));
+        a.close();
+        b.close();
+    }
+
+    private static float[] columns(float[] rowMajor, int rows, int from, int to) {
+        int width = to - from;
+        float[] result = new float[rows * width];
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(rowMajor, row * COLS + from, result, row * width, width);
+        }
+        return result;
+    }
+}
@@ -4,6 +4,11 @@ import com.microsoft.ml.lightgbm.PredictionType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.Random;
 
 import static com.microsoft.ml.lightgbm.lightgbmlibConstants.C_API_DTYPE_FLOAT32;
@@ -164,6 +169,70 @@ public class LGBMBoosterTest {
         booster.close();
     }
 
+    @Test
+    public void testPredictForMatDirectBuffers() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        float[] floats = new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 9, 8, 7, 6, 5, 4, 3, 2, 1};
+        double[] doubles = new double[floats.length];
+        FloatBuffer floatInput = ByteBuffer.allocateDirect(floats.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        DoubleBuffer doubleInput = ByteBuffer.allocateDirect(floats.length * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        for (int i = 0; i < floats.length; i++) {
+            doubles[i] = floats[i];
+            floatInput.put(i, floats[i]);
+            doubleInput.put(i, floats[i]);
+        }
+        DoubleBuffer output = ByteBuffer.allocateDirect(2 * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        double[] expected = booster.predictForMat(floats, 2, 9, true, PredictionType.C_API_PREDICT_NORMAL);
+        for (int i = 0; i < 10; i++) {
+            long written = booster.predictForMat(floatInput, 2, 9, true, PredictionType.C_API_PREDICT_NORMAL, output);
+            assertEquals(2, written);
+            assertEquals(expected[0], output.get(0), 0.000001);
+            assertEquals(expected[1], output.get(1), 0.000001);
+            written = booster.predictForMat(doubleInput, 2, 9, true, PredictionType.C_API_PREDICT_NORMAL, output);
+            assertEquals(2, written);
+            assertEquals(expected[0], output.get(0), 0.000001);
+            assertEquals(expected[1], output.get(1), 0.000001);
+        }
+        assertArrayEquals(expected, booster.predictForMat(doubles, 2, 9, true, PredictionType.C_API_PREDICT_NORMAL), 0.000001);
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testPredictForMatDirectBuffersValidation() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        FloatBuffer heap = FloatBuffer.allocate(9);
+        FloatBuffer bigEndian = ByteBuffer.allocateDirect(9 * 4).order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+        FloatBuffer tooSmall = ByteBuffer.allocateDirect(4 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        DoubleBuffer output = ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        assertThrows(LGBMException.class, () -> booster.predictForMat(heap, 1, 9, true, PredictionType.C_API_PREDICT_NORMAL, output));
+        if (ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN) {
+            assertThrows(LGBMException.class, () -> booster.predictForMat(bigEndian, 1, 9, true, PredictionType.C_API_PREDICT_NORMAL, output));
+        }
+        assertThrows(LGBMException.class, () -> booster.predictForMat(tooSmall, 1, 9, true, PredictionType.C_API_PREDICT_NORMAL, output));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testCalcNumPredict() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        assertEquals(10, booster.calcNumPredict(10, PredictionType.C_API_PREDICT_NORMAL));
+        assertEquals(20, booster.calcNumPredict(10, PredictionType.C_API_PREDICT_LEAF_INDEX));
+        assertEquals(100, booster.calcNumPredict(10, PredictionType.C_API_PREDICT_CONTRIB));
+        dataset.close();
+        booster.close();
+    }
+
     @Test
     public void testAddValidData() throws LGBMException {
         LGBMDataset ds = LGBMDataset.createFromMat(new float[]{1.0f, 1.0f, 1.0f, 1.0f}, 2, 2, true, "", null);
@@ -384,6 +453,190 @@ public class LGBMBoosterTest {
         booster.close();
     }
 
+    @Test void testPredictFastReuse() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        LGBMBooster.FastConfig config = booster.predictForMatSingleRowFastInit(PredictionType.C_API_PREDICT_NORMAL, C_API_DTYPE_FLOAT64, 9, "");
+        for (int i = 0; i < 100; i++) {
+            double[] row = new double[]{i, 2, 3, 4, 5, 6, 7, 8, 9};
+            double expected = booster.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL);
+            assertEquals(expected, booster.predictForMatSingleRowFast(config, row, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+            assertEquals(expected, booster.predictForMatSingleRowFastCritical(config, row), 0.0000001);
+        }
+        config.close();
+        config.close();
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictFastCriticalMultiValue() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        LGBMBooster.FastConfig config = booster.predictForMatSingleRowFastInit(PredictionType.C_API_PREDICT_CONTRIB, C_API_DTYPE_FLOAT64, 9, "");
+        double[] row = new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9};
+        double[] out = new double[10];
+        int count = booster.predictForMatSingleRowFastCritical(config, row, out);
+        assertEquals(10, count);
+        double[] expected = booster.predictForMat(row, 1, 9, true, PredictionType.C_API_PREDICT_CONTRIB);
+        assertArrayEquals(expected, out, 0.0000001);
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFastCritical(config, row, new double[1]));
+        config.close();
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictFastValidation() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        LGBMBooster.FastConfig config = booster.predictForMatSingleRowFastInit(PredictionType.C_API_PREDICT_NORMAL, C_API_DTYPE_FLOAT32, 9, "");
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(config, new float[]{1, 2, 3}, PredictionType.C_API_PREDICT_NORMAL));
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(config, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_NORMAL));
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFastCritical(config, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(config, new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_RAW_SCORE));
+        config.close();
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(config, new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_NORMAL));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testPredictFastLegacyConfig() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        // the native handle is taken over by the legacy config, so only the legacy one is closed
+        LGBMBooster.FastConfig source = booster.predictForMatSingleRowFastInit(PredictionType.C_API_PREDICT_NORMAL, C_API_DTYPE_FLOAT64, 9, "");
+        LGBMBooster.FastConfig legacy = new LGBMBooster.FastConfig(source.handle);
+        double[] row = new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9};
+        double expected = booster.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL);
+        assertEquals(expected, booster.predictForMatSingleRowFast(legacy, row, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+        assertEquals(expected, booster.predictForMatSingleRowFastCritical(legacy, row), 0.0000001);
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(legacy, new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_NORMAL));
+        legacy.close();
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictCSRFastCritical() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        LGBMBooster.FastConfig config = booster.predictForCSRSingleRowFastInit(PredictionType.C_API_PREDICT_NORMAL, C_API_DTYPE_FLOAT64, 9, "");
+        int[] indices = new int[]{0, 2, 4, 6, 8, 0};
+        double[] values = new double[]{1, 3, 5, 7, 9, 0};
+        double sparse = booster.predictForCSRSingleRowFastCritical(config, indices, values, 5);
+        double dense = booster.predictForMatSingleRow(new double[]{1, 0, 3, 0, 5, 0, 7, 0, 9}, PredictionType.C_API_PREDICT_NORMAL);
+        assertEquals(dense, sparse, 0.0000001);
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFastCritical(config, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertThrows(LGBMException.class, () -> booster.predictForMatSingleRowFast(config, new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, PredictionType.C_API_PREDICT_RAW_SCORE));
+        config.close();
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictInto() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        float[] input = randomArray(10 * 9);
+        double[] expected = booster.predictForMat(input, 10, 9, true, PredictionType.C_API_PREDICT_NORMAL);
+        double[] output = new double[12];
+        long written = booster.predictInto(input, 10, 9, true, PredictionType.C_API_PREDICT_NORMAL, output, 2);
+        assertEquals(10, written);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected[i], output[i + 2]);
+        }
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(10 * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        assertEquals(10, booster.predictInto(input, 10, 9, true, PredictionType.C_API_PREDICT_NORMAL, buffer));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected[i], buffer.get(i));
+        }
+        assertThrows(LGBMException.class, () -> booster.predictInto(input, 10, 9, true, PredictionType.C_API_PREDICT_NORMAL, new double[10], 1));
+        assertThrows(LGBMException.class, () -> booster.predictInto(input, 11, 9, true, PredictionType.C_API_PREDICT_NORMAL, new double[11], 0));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictExactSize() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        double[] input = new double[5 * 9];
+        assertEquals(5 * 10, booster.predictForMat(input, 5, 9, true, PredictionType.C_API_PREDICT_CONTRIB).length);
+        assertEquals(5 * 3, booster.predictForMat(input, 5, 9, true, PredictionType.C_API_PREDICT_LEAF_INDEX).length);
+        double[] output = new double[5 * 10];
+        assertEquals(5 * 10, booster.predictInto(input, 5, 9, true, PredictionType.C_API_PREDICT_CONTRIB, output, 0));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictCSR() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        // 3 rows: every second column, empty row, full row
+        double[] dense = new double[]{1, 0, 3, 0, 5, 0, 7, 0, 9, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        int[] indptr = new int[]{0, 5, 5, 14};
+        int[] indices = new int[]{0, 2, 4, 6, 8, 0, 1, 2, 3, 4, 5, 6, 7, 8};
+        double[] values = new double[]{1, 3, 5, 7, 9, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        float[] floatValues = new float[values.length];
+        for (int i = 0; i < values.length; i++) floatValues[i] = (float) values[i];
+        double[] expected = booster.predictForMat(dense, 3, 9, true, PredictionType.C_API_PREDICT_NORMAL);
+        assertArrayEquals(expected, booster.predictForCSR(indptr, indices, values, 9, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+        assertArrayEquals(expected, booster.predictForCSR(indptr, indices, floatValues, 9, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+        assertEquals(expected[0], booster.predictForCSRSingleRow(indices, values, 5, 9, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+        assertEquals(expected[0], booster.predictForCSRSingleRow(indices, floatValues, 5, 9, PredictionType.C_API_PREDICT_NORMAL), 0.0000001);
+
+        IntBuffer indptrBuffer = ByteBuffer.allocateDirect(indptr.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer().put(indptr);
+        IntBuffer indicesBuffer = ByteBuffer.allocateDirect(indices.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer().put(indices);
+        DoubleBuffer valuesBuffer = ByteBuffer.allocateDirect(values.length * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer().put(values);
+        DoubleBuffer output = ByteBuffer.allocateDirect(3 * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        indptrBuffer.flip();
+        indicesBuffer.flip();
+        valuesBuffer.flip();
+        assertEquals(3, booster.predictForCSR(indptrBuffer, indicesBuffer, valuesBuffer, 3, 9, PredictionType.C_API_PREDICT_NORMAL, output));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected[i], output.get(i), 0.0000001);
+        }
+        assertThrows(LGBMException.class, () -> booster.predictForCSR(new int[]{0, 20}, indices, values, 9, PredictionType.C_API_PREDICT_NORMAL));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test void testPredictCSRFast() throws LGBMException {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        LGBMBooster.FastConfig config = booster.predictForCSRSingleRowFastInit(PredictionType.C_API_PREDICT_NORMAL, C_API_DTYPE_FLOAT32, 9, "");
+        double dense = booster.predictForMatSingleRow(new double[]{0, 2, 0, 4, 0, 6, 0, 8, 0}, PredictionType.C_API_PREDICT_NORMAL);
+        for (int i = 0; i < 3; i++) {
+            double sparse = booster.predictForCSRSingleRowFast(config, new int[]{1, 3, 5, 7}, new float[]{2, 4, 6, 8}, 4);
+            assertEquals(dense, sparse, 0.0000001);
+        }
+        assertThrows(LGBMException.class, () -> booster.predictForCSRSingleRowFast(config, new int[]{1, 3, 5, 7}, new double[]{2, 4, 6, 8}, 4));
+        assertThrows(LGBMException.class, () -> booster.predictForCSRSingleRowFast(config, new int[]{1, 3}, new float[]{2, 4, 6, 8}, 4));
+        config.close();
+        dataset.close();
+        booster.close();
+    }
+
     private float[] randomArray(int size) {
         float[] result = new float[size];
         Random rnd = new Random();
@@ -0,0 +1,194 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.github.metarank.lightgbm4j.CancerFixture.COLS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LGBMDatasetBuilderTest {
+    @Test
+    public void testStreamingParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        float[] labels = cancer[1];
+        int rows = labels.length;
+        LGBMDataset full = LGBMDataset.createFromMat(features, rows, COLS, true, "", null);
+        full.setField("label", labels);
+
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(full, rows, COLS);
+        int chunk = 17;
+        for (int start = 0; start < rows; start += chunk) {
+            int size = Math.min(chunk, rows - start);
+            builder.pushRows(
+                    Arrays.copyOfRange(features, start * COLS, (start + size) * COLS),
+                    size,
+                    Arrays.copyOfRange(labels, start, start + size)
+            );
+        }
+        assertEquals(rows, builder.getPushedRows());
+        LGBMDataset streamed = builder.finish();
+        assertEquals(rows, streamed.getNumData());
+        assertArrayEquals(labels, streamed.getFieldFloat("label"));
+
+        LGBMBooster fullBooster = LGBMBooster.create(full, "objective=binary min_data_in_leaf=5");
+        LGBMBooster streamedBooster = LGBMBooster.create(streamed, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            fullBooster.updateOneIter();
+            streamedBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                fullBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                streamedBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        fullBooster.close();
+        streamedBooster.close();
+        streamed.close();
+        full.close();
+    }
+
+    @Test
+    public void testStreamingMetadata() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        LGBMDataset reference = LGBMDataset.createFromMat(cancer[0], rows, COLS, true, "", null);
+        float[] weights = new float[rows];
+        double[] initScores = new double[rows];
+        int[] queries = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            weights[i] = 1.0f + (i % 3);
+            initScores[i] = 0.1 * (i % 5);
+            queries[i] = i / 10;
+        }
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(reference, rows, COLS, true, true, true, 1);
+        builder.pushRows(cancer[0], rows, cancer[1], weights, initScores, queries);
+        LGBMDataset dataset = builder.finish();
+        assertArrayEquals(weights, dataset.getFieldFloat("weight"));
+        assertEquals((rows + 9) / 10 + 1, dataset.getFieldInt("group").length);
+        dataset.close();
+        reference.close();
+    }
+
+    @Test
+    public void testParallelPush() throws Exception {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        float[] labels = cancer[1];
+        int rows = labels.length;
+        int threads = 4;
+        LGBMDataset full = LGBMDataset.createFromMat(features, rows, COLS, true, "", null);
+        full.setField("label", labels);
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(full, rows, COLS, false, false, false, 1, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        int partition = (rows + threads - 1) / threads;
+        for (int tid = 0; tid < threads; tid++) {
+            int thread = tid;
+            futures.add(executor.submit(() -> {
+                int from = thread * partition;
+                int to = Math.min(rows, from + partition);
+                // push each partition in small chunks
+                for (int start = from; start < to; start += 5) {
+                    int size = Math.min(5, to - start);
+                    builder.pushRows(
+                            thread,
+                            start,
+                            Arrays.copyOfRange(features, start * COLS, (start + size) * COLS),
+                            size,
+                            Arrays.copyOfRange(labels, start, start + size),
+                            null,
+                            null,
+                            null
+                    );
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        LGBMDataset streamed = builder.finish();
+        assertArrayEquals(labels, streamed.getFieldFloat("label"));
+        assertSameModel(full, streamed, features, rows);
+        assertThrows(LGBMException.class, () -> LGBMDatasetBuilder.create(full, rows, COLS, false, false, false, 1, 0));
+        streamed.close();
+        full.close();
+    }
+
+    @Test
+    public void testPushCSR() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        float[] labels = cancer[1];
+        int rows = labels.length;
+        LGBMDataset full = LGBMDataset.createFromMat(features, rows, COLS, true, "", null);
+        full.setField("label", labels);
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(full, rows, COLS);
+        int[] indptr = new int[rows + 1];
+        int[] indices = new int[rows * COLS];
+        double[] values = new double[rows * COLS];
+        int nelem = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < COLS; col++) {
+                float value = features[row * COLS + col];
+                if (value != 0.0f) {
+                    indices[nelem] = col;
+                    values[nelem] = value;
+                    nelem++;
+                }
+            }
+            indptr[row + 1] = nelem;
+        }
+        builder.pushRowsCSR(0, 0, indptr, indices, values, labels, null, null, null);
+        LGBMDataset streamed = builder.finish();
+        assertEquals(rows, streamed.getNumData());
+        assertSameModel(full, streamed, features, rows);
+        streamed.close();
+        full.close();
+    }
+
+    private void assertSameModel(LGBMDataset expected, LGBMDataset actual, float[] features, int rows) throws LGBMException {
+        LGBMBooster expectedBooster = LGBMBooster.create(expected, "objective=binary min_data_in_leaf=5");
+        LGBMBooster actualBooster = LGBMBooster.create(actual, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            expectedBooster.updateOneIter();
+            actualBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                expectedBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                actualBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        expectedBooster.close();
+        actualBooster.close();
+    }
+
+    @Test
+    public void testValidation() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        LGBMDataset reference = LGBMDataset.createFromMat(cancer[0], rows, COLS, true, "", null);
+        LGBMDatasetBuilder builder = LGBMDatasetBuilder.create(reference, 10, COLS);
+        // too small data array
+        assertThrows(LGBMException.class, () -> builder.pushRows(new float[COLS], 2, new float[2]));
+        // unexpected weights
+        assertThrows(LGBMException.class, () -> builder.pushRows(new float[COLS], 1, new float[1], new float[1], null, null));
+        // too many rows
+        assertThrows(LGBMException.class, () -> builder.pushRows(0, 5, new float[COLS * 6], 6, new float[6], null, null, null));
+        // unknown thread id
+        assertThrows(LGBMException.class, () -> builder.pushRows(1, 0, new float[COLS], 1, new float[1], null, null, null));
+        assertThrows(LGBMException.class, () -> builder.pushRows(new float[COLS * 11], 11, new float[11]));
+        builder.pushRows(new float[COLS * 5], 5, new float[5]);
+        // not all rows were pushed
+        assertThrows(LGBMException.class, builder::finish);
+        builder.close();
+        assertThrows(LGBMException.class, () -> builder.pushRows(new float[COLS], 1, new float[1]));
+        reference.close();
+    }
+}
@@ -1,10 +1,16 @@
 package io.github.metarank.lightgbm4j;
 
+import com.microsoft.ml.lightgbm.PredictionType;
 import io.github.metarank.lightgbm4j.LGBMDataset;
 import io.github.metarank.lightgbm4j.LGBMException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -90,6 +96,113 @@ public class LGBMDatasetTest {
         ds.close();
     }
 
+    // 3x4 matrix:
+    // 1 0 0 2
+    // 0 0 3 0
+    // 4 5 0 6
+    @Test void testCreateFromCSR() throws LGBMException {
+        int[] indptr = new int[]{0, 2, 3, 6};
+        int[] indices = new int[]{0, 3, 2, 0, 1, 3};
+        float[] values = new float[]{1, 2, 3, 4, 5, 6};
+        LGBMDataset ds = LGBMDataset.createFromCSR(indptr, indices, values, 4, "min_data_in_bin=1", null);
+        assertEquals(3, ds.getNumData());
+        ds.close();
+        LGBMDataset ds64 = LGBMDataset.createFromCSR(new long[]{0, 2, 3, 6}, indices, new double[]{1, 2, 3, 4, 5, 6}, 4, "min_data_in_bin=1", null);
+        assertEquals(3, ds64.getNumData());
+        ds64.close();
+    }
+
+    @Test void testCreateFromCSC() throws LGBMException {
+        int[] colptr = new int[]{0, 2, 3, 4, 6};
+        int[] indices = new int[]{0, 2, 2, 1, 0, 2};
+        double[] values = new double[]{1, 4, 5, 3, 2, 6};
+        LGBMDataset ds = LGBMDataset.createFromCSC(colptr, indices, values, 3, "min_data_in_bin=1", null);
+        assertEquals(3, ds.getNumData());
+        ds.close();
+        LGBMDataset ds64 = LGBMDataset.createFromCSC(new long[]{0, 2, 3, 4, 6}, indices, new float[]{1, 4, 5, 3, 2, 6}, 3, "min_data_in_bin=1", null);
+        assertEquals(3, ds64.getNumData());
+        ds64.close();
+    }
+
+    @Test void testSparseMatchesDense() throws LGBMException {
+        float[] dense = new float[]{1, 0, 0, 2, 0, 0, 3, 0, 4, 5, 0, 6};
+        LGBMDataset reference = LGBMDataset.createFromMat(dense, 3, 4, true, "min_data_in_bin=1", null);
+        LGBMDataset sparse = LGBMDataset.createFromCSR(new int[]{0, 2, 3, 6}, new int[]{0, 3, 2, 0, 1, 3}, new float[]{1, 2, 3, 4, 5, 6}, 4, "min_data_in_bin=1", reference);
+        assertEquals(reference.getNumData(), sparse.getNumData());
+        assertEquals(reference.getNumFeatures(), sparse.getNumFeatures());
+        assertThrows(LGBMException.class, () -> LGBMDataset.createFromCSR(new int[]{0, 10}, new int[]{0}, new float[]{1}, 4, "", null));
+        sparse.close();
+        reference.close();
+    }
+
+    @Test void testCreateFromMats() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int cols = CancerFixture.COLS;
+        int rows = cancer[1].length;
+        int[] rowsPerBlock = new int[]{40, 40, rows - 80};
+        List<float[]> blocks = new ArrayList<>();
+        int start = 0;
+        for (int blockRows : rowsPerBlock) {
+            blocks.add(Arrays.copyOfRange(cancer[0], start * cols, (start + blockRows) * cols));
+            start += blockRows;
+        }
+        LGBMDataset full = LGBMDataset.createFromMat(cancer[0], rows, cols, true, "", null);
+        full.setField("label", cancer[1]);
+        LGBMDataset chunked = LGBMDataset.createFromMats(blocks, rowsPerBlock, cols, true, "", full);
+        chunked.setField("label", cancer[1]);
+        assertEquals(rows, chunked.getNumData());
+        assertEquals(full.getNumFeatures(), chunked.getNumFeatures());
+
+        LGBMBooster fullBooster = LGBMBooster.create(full, "objective=binary min_data_in_leaf=5");
+        LGBMBooster chunkedBooster = LGBMBooster.create(chunked, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            fullBooster.updateOneIter();
+            chunkedBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                fullBooster.predictForMat(cancer[0], rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                chunkedBooster.predictForMat(cancer[0], rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertThrows(LGBMException.class, () -> LGBMDataset.createFromMats(blocks, new int[]{40, 40, rows}, cols, true, "", null));
+        assertThrows(LGBMException.class, () -> LGBMDataset.createFromMats(new double[][]{new double[cols]}, new int[]{1, 1}, cols, true, "", null));
+        fullBooster.close();
+        chunkedBooster.close();
+        chunked.close();
+        full.close();
+    }
+
+    @Test
+    public void testSerializedReference() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        int cols = CancerFixture.COLS;
+        LGBMDataset full = LGBMDataset.createFromMat(cancer[0], rows, cols, true, "", null);
+        full.setField("label", cancer[1]);
+        byte[] reference = full.serializeReference();
+        assertTrue(reference.length > 0);
+
+        // as if it was done in another process, with no access to the full dataset
+        LGBMDataset restored = LGBMDataset.createFromSerializedReference(reference, cancer[0], rows, cols, cancer[1], "");
+        assertEquals(rows, restored.getNumData());
+        assertEquals(full.getNumFeatures(), restored.getNumFeatures());
+
+        LGBMBooster fullBooster = LGBMBooster.create(full, "objective=binary min_data_in_leaf=5");
+        LGBMBooster restoredBooster = LGBMBooster.create(restored, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            fullBooster.updateOneIter();
+            restoredBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                fullBooster.predictForMat(cancer[0], rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                restoredBooster.predictForMat(cancer[0], rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        fullBooster.close();
+        restoredBooster.close();
+        restored.close();
+        full.close();
+        assertThrows(LGBMException.class, full::serializeReference);
+    }
+
     @Test void testDoubleClose() throws LGBMException {
         LGBMDataset ds = LGBMDataset.createFromMat(new float[]{1.0f, 1.0f, 1.0f, 1.0f}, 2, 2, true, "", null);
         ds.close();
@@ -0,0 +1,123 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LGBMTrainerTest {
+    @Test
+    public void testEarlyStoppingRollback() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        int[] validRows = CrossValidator.splitRows(rows, 3, 42L)[0];
+        LGBMDataset train = dataset.subset(CrossValidator.complement(validRows, rows), "");
+        LGBMDataset valid = dataset.subset(validRows, "");
+        LGBMBooster booster = LGBMBooster.create(train, "objective=binary metric=binary_logloss learning_rate=0.5 min_data_in_leaf=5");
+        LGBMTrainer.Result result = new LGBMTrainer(booster)
+                .addValidData(valid)
+                .earlyStopping(3)
+                .train(1000);
+        assertEquals(LGBMTrainer.StopReason.EARLY_STOPPING, result.stopReason);
+        assertTrue(result.bestIteration >= 1);
+        assertEquals(result.bestIteration, result.iterations);
+        assertEquals(result.bestIteration, booster.getCurrentIteration());
+        assertArrayEquals(new String[]{"binary_logloss"}, result.metricNames);
+        double[] eval = new double[1];
+        booster.getEval(1, eval);
+        assertEquals(result.bestScore[0], eval[0], 0.000001);
+        booster.close();
+        valid.close();
+        train.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testEarlyStoppingOnEvaluatedIterations() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int rows = dataset.getNumData();
+        int[] validRows = CrossValidator.splitRows(rows, 3, 42L)[0];
+        LGBMDataset train = dataset.subset(CrossValidator.complement(validRows, rows), "");
+        LGBMDataset valid = dataset.subset(validRows, "");
+        LGBMBooster booster = LGBMBooster.create(train, "objective=binary metric=binary_logloss learning_rate=0.5 min_data_in_leaf=5");
+        List<Integer> evaluated = new ArrayList<>();
+        List<Integer> all = new ArrayList<>();
+        // evaluation period is longer than the early stopping rounds
+        LGBMTrainer.Result result = new LGBMTrainer(booster)
+                .addValidData(valid)
+                .evalEvery(10)
+                .earlyStopping(5)
+                .addCallback((iteration, evals) -> {
+                    all.add(iteration);
+                    if (evals != null) evaluated.add(iteration);
+                    return false;
+                })
+                .train(1000);
+        assertEquals(LGBMTrainer.StopReason.EARLY_STOPPING, result.stopReason);
+        int last = all.get(all.size() - 1);
+        // stopped right after an evaluation, not on an unevaluated iteration
+        assertEquals(last, (int) evaluated.get(evaluated.size() - 1));
+        assertEquals(0, last % 10);
+        assertEquals(0, result.bestIteration % 10);
+        assertTrue(last > result.bestIteration);
+        assertEquals(result.bestIteration, booster.getCurrentIteration());
+        booster.close();
+        valid.close();
+        train.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testEvalEvery() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary metric=auc min_data_in_leaf=5");
+        List<Integer> evaluated = new ArrayList<>();
+        List<Integer> all = new ArrayList<>();
+        LGBMTrainer.Result result = new LGBMTrainer(booster)
+                .addValidData(dataset)
+                .evalEvery(4)
+                .addCallback((iteration, evals) -> {
+                    all.add(iteration);
+                    if (evals != null) evaluated.add(iteration);
+                    return false;
+                })
+                .train(10);
+        assertEquals(LGBMTrainer.StopReason.COMPLETED, result.stopReason);
+        assertEquals(10, all.size());
+        assertEquals(10, booster.getCurrentIteration());
+        assertEquals(3, evaluated.size());
+        assertEquals(4, (int) evaluated.get(0));
+        assertEquals(10, (int) evaluated.get(2));
+        booster.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testCallbackStop() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary min_data_in_leaf=5");
+        LGBMTrainer.Result result = new LGBMTrainer(booster)
+                .addCallback((iteration, evals) -> iteration >= 5)
+                .train(100);
+        assertEquals(LGBMTrainer.StopReason.CALLBACK, result.stopReason);
+        assertEquals(5, result.iterations);
+        assertEquals(0, result.bestIteration);
+        assertNull(result.bestScore);
+        booster.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testValidation() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary");
+        LGBMTrainer trainer = new LGBMTrainer(booster);
+        assertThrows(LGBMException.class, () -> trainer.evalEvery(0));
+        assertThrows(LGBMException.class, () -> trainer.earlyStopping(10).train(10));
+        booster.close();
+        dataset.close();
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricEvaluatorTest {
+    @Test
+    public void testNDCGParity() throws LGBMException, IOException {
+        LGBMDataset train = CancerIntegrationTest.datasetFromFile();
+        int rows = train.getNumData();
+        int[] groups = new int[(rows + 9) / 10];
+        Arrays.fill(groups, 10);
+        groups[groups.length - 1] = rows - 10 * (groups.length - 1);
+        train.setField("group", groups);
+        LGBMDataset valid = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", train);
+        valid.setField("group", groups);
+        LGBMBooster booster = LGBMBooster.create(train, "objective=lambdarank metric=ndcg eval_at=5,10 min_data_in_leaf=5");
+        booster.addValidData(valid);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MetricEvaluator evaluator = new MetricEvaluator(booster, executor);
+        evaluator.addValidData(1, valid, new NDCGMetric(5), new NDCGMetric(10));
+        List<CompletableFuture<MetricEvaluator.Result>> results = new ArrayList<>();
+        List<double[]> expected = new ArrayList<>();
+        for (int it = 1; it <= 10; it++) {
+            booster.updateOneIter();
+            results.add(evaluator.evaluate(it));
+            expected.add(booster.getEval(1));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            MetricEvaluator.Result result = results.get(i).join();
+            assertEquals(i + 1, result.iteration);
+            assertArrayEquals(new String[]{"ndcg@5", "ndcg@10"}, result.names);
+            assertEquals(expected.get(i)[0], result.get(1, "ndcg@5"), 1e-9);
+            assertEquals(expected.get(i)[1], result.get(1, "ndcg@10"), 1e-9);
+        }
+        executor.shutdown();
+        booster.close();
+        valid.close();
+        train.close();
+    }
+
+    @Test
+    public void testFailingMetric() throws LGBMException, IOException {
+        LGBMDataset train = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(train, "objective=binary min_data_in_leaf=5");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MetricEvaluator evaluator = new MetricEvaluator(booster, executor);
+        // no query groups in the dataset
+        evaluator.addValidData(0, train, new NDCGMetric(5));
+        for (int it = 1; it <= 3; it++) {
+            booster.updateOneIter();
+            CompletableFuture<MetricEvaluator.Result> result = evaluator.evaluate(it);
+            assertThrows(CompletionException.class, result::join);
+        }
+        executor.shutdown();
+        booster.close();
+        train.close();
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatchScorerTest {
+    @Test
+    public void testBatchedScoring() throws Exception {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        booster.updateOneIter();
+        MicroBatchScorer scorer = new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 16, 200000);
+        List<float[]> rows = new ArrayList<>();
+        List<CompletableFuture<double[]>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            float[] row = new float[]{i, 2, 3, 4, 5, 6, 7, 8, 9};
+            rows.add(row);
+            results.add(scorer.score(row));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            double expected = booster.predictForMatSingleRow(rows.get(i), PredictionType.C_API_PREDICT_NORMAL);
+            double[] result = results.get(i).get();
+            assertEquals(1, result.length);
+            assertEquals(expected, result[0], 0.0000001);
+        }
+        scorer.close();
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        MicroBatchScorer scorer = new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 16, 200000);
+        assertThrows(ExecutionException.class, () -> scorer.score(new float[]{1, 2, 3}).get());
+        scorer.close();
+        assertThrows(ExecutionException.class, () -> scorer.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}).get());
+        // 100M rows * 9 cols * 4 bytes overflows int
+        assertThrows(LGBMException.class, () -> new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 100_000_000, 200000));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testClosedWithBooster() throws Exception {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        MicroBatchScorer scorer = new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 16, 200000);
+        List<CompletableFuture<double[]>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(scorer.score(new float[]{i, 2, 3, 4, 5, 6, 7, 8, 9}));
+        }
+        // the scorer is drained before the native booster is freed
+        booster.close();
+        for (CompletableFuture<double[]> result : results) {
+            assertEquals(1, result.get().length);
+        }
+        assertThrows(ExecutionException.class, () -> scorer.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9}).get());
+        scorer.close();
+        assertThrows(LGBMException.class, () -> new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 16, 200000));
+        dataset.close();
+    }
+
+    @Test
+    public void testSlowCallback() throws Exception {
+        LGBMDataset dataset = LGBMDataset.createFromFile("src/test/resources/cancer.csv", "header=true label=name:Classification", null);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary label=name:Classification");
+        booster.updateOneIter();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        // batches of 2 rows, flushed as soon as both rows are queued
+        MicroBatchScorer scorer = new MicroBatchScorer(booster, 9, PredictionType.C_API_PREDICT_NORMAL, "", 2, TimeUnit.SECONDS.toNanos(60), executor);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<double[]> first = scorer.score(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        first.thenAccept(values -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<double[]> second = scorer.score(new float[]{2, 2, 3, 4, 5, 6, 7, 8, 9});
+        CompletableFuture<double[]> third = scorer.score(new float[]{3, 2, 3, 4, 5, 6, 7, 8, 9});
+        CompletableFuture<double[]> fourth = scorer.score(new float[]{4, 2, 3, 4, 5, 6, 7, 8, 9});
+        // the next batch is not blocked by the callback of the first one
+        assertEquals(1, third.get(10, TimeUnit.SECONDS).length);
+        assertEquals(1, fourth.get(10, TimeUnit.SECONDS).length);
+        assertFalse(second.isDone());
+        release.countDown();
+        assertEquals(1, second.get(10, TimeUnit.SECONDS).length);
+        scorer.close();
+        executor.shutdown();
+        booster.close();
+        dataset.close();
+    }
+}
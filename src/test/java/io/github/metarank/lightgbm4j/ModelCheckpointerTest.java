@@ -0,0 +1,146 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.metarank.lightgbm4j.CancerFixture.COLS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelCheckpointerTest {
+    @Test
+    public void testCheckpointAndResume() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        File directory = Files.createTempDirectory("lgbm-checkpoint").toFile();
+        File file = new File(directory, "model.txt");
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary min_data_in_leaf=5");
+        ModelCheckpointer checkpointer = new ModelCheckpointer(booster, file, 5, 0, TimeUnit.MINUTES);
+        new LGBMTrainer(booster).addCallback(checkpointer).train(20);
+        checkpointer.checkpoint(20);
+        checkpointer.close();
+        assertEquals(20, checkpointer.getLastSavedIteration());
+        assertTrue(file.exists());
+        assertEquals(1, directory.listFiles().length);
+        double[] expected = booster.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_NORMAL);
+        booster.close();
+        dataset.close();
+
+        LGBMDataset resumedDataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster resumed = ModelCheckpointer.resume(file, resumedDataset, cancer[0], rows, COLS, "objective=binary min_data_in_leaf=5");
+        assertEquals(20, resumed.getCurrentIteration());
+        double[] restored = resumed.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_NORMAL);
+        assertArrayEquals(expected, restored, 0.000001);
+        LGBMTrainer.Result result = new LGBMTrainer(resumed).train(5);
+        assertEquals(25, result.iterations);
+        assertEquals(25, resumed.getCurrentIteration());
+        resumed.close();
+        resumedDataset.close();
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testOverlapWithTrainingAndRollback() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        File directory = Files.createTempDirectory("lgbm-checkpoint").toFile();
+        File file = new File(directory, "model.txt");
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        int[] validRows = CrossValidator.splitRows(rows, 3, 42L)[0];
+        LGBMDataset train = dataset.subset(CrossValidator.complement(validRows, rows), "");
+        LGBMDataset valid = dataset.subset(validRows, "");
+        LGBMBooster booster = LGBMBooster.create(train, "objective=binary metric=binary_logloss learning_rate=0.5 min_data_in_leaf=5");
+        // a checkpoint is due after every iteration, so writes overlap with the next updates and the early stopping rollback
+        ModelCheckpointer checkpointer = new ModelCheckpointer(booster, file, 1, 0, TimeUnit.MINUTES);
+        LGBMTrainer.Result result = new LGBMTrainer(booster)
+                .addValidData(valid)
+                .earlyStopping(3)
+                .addCallback(checkpointer)
+                .train(1000);
+        assertEquals(LGBMTrainer.StopReason.EARLY_STOPPING, result.stopReason);
+        for (int i = 0; i < 5; i++) {
+            booster.updateOneIter();
+            checkpointer.onIteration(booster.getCurrentIteration(), null);
+            booster.rollbackOneIter();
+        }
+        checkpointer.checkpoint(result.iterations);
+        checkpointer.close();
+        assertEquals(result.iterations, checkpointer.getLastSavedIteration());
+        assertEquals(1, directory.listFiles().length);
+        LGBMBooster restored = LGBMBooster.createFromModelfile(file.getPath());
+        assertEquals(result.iterations, restored.getCurrentIteration());
+        assertArrayEquals(
+                booster.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                restored.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                0.000001
+        );
+        restored.close();
+        booster.close();
+        valid.close();
+        train.close();
+        dataset.close();
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testResumeCustomObjective() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        String parameters = "objective=none metric=rmse min_data_in_leaf=5";
+        Objective squaredError = (driver, from, to) -> {
+            for (int i = from; i < to; i++) {
+                driver.getGrad().put(i, (float) (2 * (driver.getScores().get(i) - driver.getLabels()[i])));
+                driver.getHess().put(i, 2.0f);
+            }
+        };
+        File file = File.createTempFile("lgbm-checkpoint", ".txt");
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, parameters);
+        ObjectiveDriver driver = new ObjectiveDriver(booster, dataset, squaredError);
+        for (int it = 0; it < 10; it++) driver.updateOneIter();
+        assertEquals(10, booster.getIterations());
+        booster.saveModel(0, 0, LGBMBooster.FeatureImportanceType.SPLIT, file.getPath());
+        booster.close();
+        dataset.close();
+
+        LGBMDataset resumedDataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster resumed = ModelCheckpointer.resume(file, resumedDataset, cancer[0], rows, COLS, parameters);
+        ObjectiveDriver resumedDriver = new ObjectiveDriver(resumed, resumedDataset, squaredError);
+        for (int it = 0; it < 5; it++) resumedDriver.updateOneIter();
+        assertEquals(15, resumed.getCurrentIteration());
+        // predictions should use all the trees, including the custom ones added after the merge
+        assertEquals(15, resumed.getIterations());
+        double[] predicted = resumed.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE);
+        LGBMBooster reloaded = LGBMBooster.loadModelFromString(resumed.saveModelToString(0, 0, LGBMBooster.FeatureImportanceType.SPLIT));
+        double[] expected = reloaded.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE);
+        assertArrayEquals(expected, predicted, 0.000001);
+        reloaded.close();
+        resumed.close();
+        resumedDataset.close();
+        file.delete();
+    }
+
+    @Test
+    public void testClassMajor() {
+        double[] raw = {1, 2, 3, 4, 5, 6};
+        assertArrayEquals(new double[]{1, 3, 5, 2, 4, 6}, ModelCheckpointer.classMajor(raw, 3, 2), 0.0);
+        assertArrayEquals(raw, ModelCheckpointer.classMajor(raw, 6, 1), 0.0);
+    }
+
+    @Test
+    public void testValidation() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary");
+        assertThrows(LGBMException.class, () -> new ModelCheckpointer(booster, new File("model.txt"), 0, 0, TimeUnit.MINUTES));
+        assertThrows(LGBMException.class, () -> new ModelCheckpointer(booster, new File("model.txt"), -1, 10, TimeUnit.MINUTES));
+        booster.close();
+        dataset.close();
+    }
+}
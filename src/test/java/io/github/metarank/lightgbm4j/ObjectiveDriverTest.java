@@ -0,0 +1,78 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectiveDriverTest {
+    private static final Objective SQUARED_ERROR = (driver, from, to) -> {
+        for (int i = from; i < to; i++) {
+            driver.getGrad().put(i, (float) (2 * (driver.getScores().get(i) - driver.getLabels()[i])));
+            driver.getHess().put(i, 2.0f);
+        }
+    };
+
+    @Test
+    public void testParallelObjectiveParity() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster arrayBooster = LGBMBooster.create(dataset, "objective=none metric=rmse label=name:Classification");
+        LGBMBooster driverBooster = LGBMBooster.create(dataset, "objective=none metric=rmse label=name:Classification");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ObjectiveDriver driver = new ObjectiveDriver(driverBooster, dataset, SQUARED_ERROR, pool);
+        float[] y = dataset.getFieldFloat("label");
+        for (int it = 0; it < 10; it++) {
+            double[] yhat = arrayBooster.getPredict(0);
+            float[] grad = new float[y.length];
+            float[] hess = new float[y.length];
+            for (int i = 0; i < y.length; i++) {
+                grad[i] = (float) (2 * (yhat[i] - y[i]));
+                hess[i] = 2;
+            }
+            arrayBooster.updateOneIterCustom(grad, hess);
+            driver.updateOneIter();
+            assertArrayEquals(arrayBooster.getPredict(0), driverBooster.getPredict(0));
+        }
+        pool.shutdown();
+        arrayBooster.close();
+        driverBooster.close();
+        dataset.close();
+    }
+
+    @Test
+    public void testGroupedPartitions() {
+        int[] boundaries = new int[]{0, 700, 1500, 1600, 3000, 5000};
+        int[] partitions = ObjectiveDriver.partitions(5000, 4, boundaries);
+        assertEquals(0, partitions[0]);
+        assertEquals(5000, partitions[partitions.length - 1]);
+        for (int i = 0; i < partitions.length; i += 2) {
+            assertTrue(Arrays.binarySearch(boundaries, partitions[i]) >= 0);
+            assertTrue(Arrays.binarySearch(boundaries, partitions[i + 1]) >= 0);
+            if (i > 0) assertEquals(partitions[i - 1], partitions[i]);
+        }
+        // not grouped: fixed-size ranges, at least MIN_PARTITION_ROWS each
+        assertArrayEquals(new int[]{0, 1024, 1024, 2000}, ObjectiveDriver.partitions(2000, 8, null));
+    }
+
+    @Test
+    public void testGroupedRequiresQueries() throws LGBMException, IOException {
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=none metric=rmse label=name:Classification");
+        Objective grouped = new Objective() {
+            @Override
+            public void gradients(ObjectiveDriver driver, int from, int to) {
+            }
+
+            @Override
+            public boolean isGrouped() {
+                return true;
+            }
+        };
+        assertThrows(LGBMException.class, () -> new ObjectiveDriver(booster, dataset, grouped));
+        booster.close();
+        dataset.close();
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A benchmark harness comparing QuickScorer with the other scoring paths on a ranking model shape: num_leaves=8,
+ * 46 features (as in MQ2008) and a re-ranking batch of documents. The model is synthetic (random splits on uniform
+ * features), so it can be generated without training data and loaded both by TreeEnsemble and the native library.
+ * It's not a unit test, run it manually after mvn test-compile:
+ * <pre>
+ *     java -cp target/classes:target/test-classes:$(cat classpath.txt) io.github.metarank.lightgbm4j.QuickScorerBenchmark [trees] [rows]
+ * </pre>
+ * where classpath.txt comes from mvn dependency:build-classpath -Dmdep.outputFile=classpath.txt. The pure-Java
+ * evaluators do not need the native library; native predictForMat is skipped if it cannot be loaded.
+ */
+public class QuickScorerBenchmark {
+    static final int FEATURES = 46;
+    static final int LEAVES = 8;
+    private static final long WARMUP_NANOS = 3_000_000_000L;
+    private static final long ROUND_NANOS = 1_000_000_000L;
+    private static final int ROUNDS = 5;
+
+    @FunctionalInterface
+    interface Scorer {
+        double[] score() throws LGBMException;
+    }
+
+    public static void main(String[] args) throws LGBMException {
+        int trees = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Random random = new Random(42L);
+        String model = rankingModel(trees, LEAVES, FEATURES, random);
+        float[] input = new float[rows * FEATURES];
+        for (int i = 0; i < input.length; i++) input[i] = random.nextFloat();
+
+        TreeEnsemble ensemble = TreeEnsemble.fromModelString(model);
+        QuickScorer quick = QuickScorer.create(ensemble);
+        CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(ensemble);
+        PredictionKind raw = PredictionKind.RAW_SCORE;
+        double[] expected = ensemble.predictForMat(input, rows, FEATURES, true, raw);
+        if (!Arrays.equals(expected, quick.predictForMat(input, rows, FEATURES, true, raw))) {
+            throw new IllegalStateException("QuickScorer scores differ from TreeEnsemble ones");
+        }
+
+        System.out.println(String.format(Locale.ROOT, "model: %d trees, %d leaves, %d features; batch of %d rows", trees, LEAVES, FEATURES, rows));
+        double quickNanos = report("QuickScorer", rows, () -> quick.predictForMat(input, rows, FEATURES, true, raw), Double.NaN);
+        report("TreeEnsemble", rows, () -> ensemble.predictForMat(input, rows, FEATURES, true, raw), quickNanos);
+        report("CompiledTreeEnsemble", rows, () -> compiled.predictForMat(input, rows, FEATURES, true, raw), quickNanos);
+        if (!nativeAvailable()) {
+            System.out.println("LGBMBooster.predictForMat: skipped, native library is not available");
+            return;
+        }
+        // PredictionType constants are read from the native library, so it's only touched after it's loaded
+        PredictionType nativeRaw = PredictionType.C_API_PREDICT_RAW_SCORE;
+        LGBMBooster booster = LGBMBooster.loadModelFromString(model);
+        try {
+            if (!Arrays.equals(expected, booster.predictForMat(input, rows, FEATURES, true, nativeRaw))) {
+                throw new IllegalStateException("native scores differ from TreeEnsemble ones");
+            }
+            report("LGBMBooster.predictForMat", rows, () -> booster.predictForMat(input, rows, FEATURES, true, nativeRaw), quickNanos);
+        } finally {
+            booster.close();
+        }
+    }
+
+    private static boolean nativeAvailable() {
+        try {
+            LGBMBooster.loadNative();
+            return LGBMBooster.isNativeLoaded();
+        } catch (IOException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Measure the median time per row over a few rounds, after a warmup.
+     *
+     * @return nanoseconds per row
+     */
+    static double report(String name, int rows, Scorer scorer, double baselineNanos) throws LGBMException {
+        double sink = 0;
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            sink += scorer.score()[0];
+        }
+        double[] perRow = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long calls = 0;
+            long start = System.nanoTime();
+            long now;
+            do {
+                sink += scorer.score()[0];
+                calls++;
+                now = System.nanoTime();
+            } while (now - start < ROUND_NANOS);
+            perRow[round] = (double) (now - start) / calls / rows;
+        }
+        Arrays.sort(perRow);
+        double median = perRow[ROUNDS / 2];
+        String relative = Double.isNaN(baselineNanos) ? "" : String.format(Locale.ROOT, ", %.1fx the QuickScorer time", median / baselineNanos);
+        System.out.println(String.format(Locale.ROOT, "%-26s %10.1f ns/row%s (checksum %s)", name, median, relative, sink != 0));
+        return median;
+    }
+
+    /**
+     * Generate a LightGBM model string for a lambdarank model with random leaf-wise grown trees.
+     */
+    static String rankingModel(int trees, int leaves, int features, Random random) {
+        StringBuilder names = new StringBuilder();
+        StringBuilder infos = new StringBuilder();
+        for (int f = 0; f < features; f++) {
+            names.append(f == 0 ? "" : " ").append("f").append(f);
+            infos.append(f == 0 ? "" : " ").append("[0:1]");
+        }
+        StringBuilder result = new StringBuilder()
+                .append("tree\nversion=v4\nnum_class=1\nnum_tree_per_iteration=1\nlabel_index=0\n")
+                .append("max_feature_idx=").append(features - 1).append('\n')
+                .append("objective=lambdarank\n")
+                .append("feature_names=").append(names).append('\n')
+                .append("feature_infos=").append(infos).append("\n\n");
+        for (int t = 0; t < trees; t++) {
+            result.append("Tree=").append(t).append('\n').append(tree(leaves, features, random)).append('\n');
+        }
+        return result.append("end of trees\n").toString();
+    }
+
+    /**
+     * A tree grown the same way LightGBM does: each split turns leaf L into internal node i, with leaf L as its left
+     * child and a new leaf i + 1 as the right one.
+     */
+    private static String tree(int leaves, int features, Random random) {
+        int nodes = leaves - 1;
+        int[] feature = new int[nodes];
+        double[] threshold = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+        // parent node of each leaf, and if it's a left child
+        int[] leafParent = new int[leaves];
+        boolean[] leafIsLeft = new boolean[leaves];
+        leafParent[0] = -1;
+        for (int node = 0; node < nodes; node++) {
+            int leaf = random.nextInt(node + 1);
+            feature[node] = random.nextInt(features);
+            threshold[node] = random.nextDouble();
+            left[node] = ~leaf;
+            right[node] = ~(node + 1);
+            int parent = leafParent[leaf];
+            if (parent >= 0) {
+                if (leafIsLeft[leaf]) left[parent] = node;
+                else right[parent] = node;
+            }
+            leafParent[leaf] = node;
+            leafIsLeft[leaf] = true;
+            leafParent[node + 1] = node;
+            leafIsLeft[node + 1] = false;
+        }
+        double[] values = new double[leaves];
+        for (int i = 0; i < leaves; i++) values[i] = random.nextGaussian() * 0.1;
+        return "num_leaves=" + leaves + "\nnum_cat=0\n" +
+                "split_feature=" + join(feature) + "\n" +
+                "split_gain=" + join(new double[nodes], 1.0) + "\n" +
+                "threshold=" + join(threshold, Double.NaN) + "\n" +
+                // default_left, numerical split, no missing values
+                "decision_type=" + join(fill(nodes, 2)) + "\n" +
+                "left_child=" + join(left) + "\n" +
+                "right_child=" + join(right) + "\n" +
+                "leaf_value=" + join(values, Double.NaN) + "\n" +
+                "leaf_weight=" + join(new double[leaves], 1.0) + "\n" +
+                "leaf_count=" + join(fill(leaves, 1)) + "\n" +
+                "internal_value=" + join(new double[nodes], 0.0) + "\n" +
+                "internal_weight=" + join(new double[nodes], 1.0) + "\n" +
+                "internal_count=" + join(fill(nodes, 1)) + "\n" +
+                "is_linear=0\nshrinkage=1\n";
+    }
+
+    private static int[] fill(int size, int value) {
+        int[] result = new int[size];
+        Arrays.fill(result, value);
+        return result;
+    }
+
+    private static String join(int[] values) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < values.length; i++) result.append(i == 0 ? "" : " ").append(values[i]);
+        return result.toString();
+    }
+
+    /**
+     * @param constant if not NaN, all the values are replaced with it
+     */
+    private static String join(double[] values, double constant) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            result.append(i == 0 ? "" : " ").append(Double.isNaN(constant) ? values[i] : constant);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuickScorerTest {
+    @Test
+    public void testParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        int cols = CancerFixture.COLS;
+        float[] features = cancer[0].clone();
+        for (int i = 0; i < features.length; i++) {
+            if (i % 11 == 0) features[i] = Float.NaN;
+            else if (i % 13 == 0) features[i] = 0.0f;
+        }
+        LGBMDataset dataset = LGBMDataset.createFromMat(features, rows, cols, true, "", null);
+        dataset.setField("label", cancer[1]);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary num_leaves=8 min_data_in_leaf=3");
+        for (int i = 0; i < 50; i++) booster.updateOneIter();
+        TreeEnsemble ensemble = TreeEnsemble.fromBooster(booster);
+        assertTrue(QuickScorer.isSupported(ensemble));
+        QuickScorer scorer = QuickScorer.create(ensemble);
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                scorer.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_LEAF_INDEX),
+                scorer.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_LEAF_INDEX)
+        );
+        assertArrayEquals(
+                ensemble.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_NORMAL),
+                scorer.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_NORMAL)
+        );
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testUnsupportedModel() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        LGBMDataset dataset = LGBMDataset.createFromMat(cancer[0], rows, CancerFixture.COLS, true, "categorical_feature=2 min_data_per_group=1", null);
+        dataset.setField("label", cancer[1]);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary num_leaves=100 min_data_in_leaf=1");
+        booster.updateOneIter();
+        TreeEnsemble ensemble = TreeEnsemble.fromBooster(booster);
+        assertFalse(QuickScorer.isSupported(ensemble));
+        assertThrows(LGBMException.class, () -> QuickScorer.create(ensemble));
+        dataset.close();
+        booster.close();
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.metarank.lightgbm4j.CancerFixture.COLS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SampledDatasetLoaderTest {
+    @Test
+    public void testLoadFromIterable() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        List<double[]> source = toRows(cancer);
+        LGBMDataset expected = LGBMDataset.createFromMat(cancer[0], rows, COLS, true, "", null);
+        expected.setField("label", cancer[1]);
+        // chunk size is not a divisor of the row count
+        LGBMDataset loaded = SampledDatasetLoader.load(source, rows, COLS, "", 100);
+        assertEquals(rows, loaded.getNumData());
+        assertEquals(COLS, loaded.getNumFeatures());
+        assertArrayEquals(cancer[1], loaded.getFieldFloat("label"));
+        assertSameModel(expected, loaded, cancer[0], rows);
+        loaded.close();
+        expected.close();
+    }
+
+    @Test
+    public void testLoadFromFile() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        File file = File.createTempFile("lgbm-sampled", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("label,features");
+            for (double[] row : toRows(cancer)) {
+                // label is the last column of the source rows, so move it to the front
+                StringBuilder line = new StringBuilder().append(row[COLS]);
+                for (int col = 0; col < COLS; col++) line.append(',').append(row[col]);
+                writer.println(line);
+            }
+        }
+        LGBMDataset loaded = SampledDatasetLoader.loadFile(file, ",", true, 0, "bin_construct_sample_cnt=100");
+        assertEquals(rows, loaded.getNumData());
+        assertArrayEquals(cancer[1], loaded.getFieldFloat("label"));
+        LGBMBooster booster = LGBMBooster.create(loaded, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) booster.updateOneIter();
+        assertEquals(rows, booster.predictForMat(cancer[0], rows, COLS, true, PredictionType.C_API_PREDICT_NORMAL).length);
+        booster.close();
+        loaded.close();
+    }
+
+    @Test
+    public void testValidation() throws IOException {
+        float[][] cancer = CancerFixture.load();
+        List<double[]> source = toRows(cancer);
+        assertThrows(LGBMException.class, () -> SampledDatasetLoader.load(source, source.size() + 1, COLS, ""));
+        assertThrows(LGBMException.class, () -> SampledDatasetLoader.load(source, source.size(), COLS + 1, ""));
+        List<double[]> ragged = new ArrayList<>(source);
+        ragged.set(ragged.size() - 1, new double[]{1.0, 0.0});
+        assertThrows(LGBMException.class, () -> SampledDatasetLoader.load(ragged, COLS, ""));
+    }
+
+    @Test
+    public void testIteratorsAreClosed() throws IOException {
+        List<double[]> source = toRows(CancerFixture.load());
+        AtomicInteger closed = new AtomicInteger();
+        Iterable<double[]> rows = () -> new ClosingIterator(source.iterator(), closed);
+        assertThrows(LGBMException.class, () -> SampledDatasetLoader.load(rows, COLS + 1, ""));
+        // the counting pass and the failed sampling pass
+        assertEquals(2, closed.get());
+
+        File file = File.createTempFile("lgbm-sampled", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("1,2");
+            writer.println("3,4");
+        }
+        Iterator<double[]> iterator = new SampledDatasetLoader.DelimitedFile(file, ",", false).iterator();
+        assertTrue(iterator instanceof Closeable);
+        assertArrayEquals(new double[]{1, 2}, iterator.next(), 0.0);
+        ((Closeable) iterator).close();
+        assertFalse(iterator.hasNext());
+    }
+
+    private static class ClosingIterator implements Iterator<double[]>, Closeable {
+        private final Iterator<double[]> rows;
+        private final AtomicInteger closed;
+
+        ClosingIterator(Iterator<double[]> rows, AtomicInteger closed) {
+            this.rows = rows;
+            this.closed = closed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public double[] next() {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    private static List<double[]> toRows(float[][] cancer) {
+        List<double[]> result = new ArrayList<>();
+        for (int row = 0; row < cancer[1].length; row++) {
+            double[] values = new double[COLS + 1];
+            for (int col = 0; col < COLS; col++) {
+                values[col] = cancer[0][row * COLS + col];
+            }
+            values[COLS] = cancer[1][row];
+            result.add(values);
+        }
+        return result;
+    }
+
+    private void assertSameModel(LGBMDataset expected, LGBMDataset actual, float[] features, int rows) throws LGBMException {
+        LGBMBooster expectedBooster = LGBMBooster.create(expected, "objective=binary min_data_in_leaf=5");
+        LGBMBooster actualBooster = LGBMBooster.create(actual, "objective=binary min_data_in_leaf=5");
+        for (int i = 0; i < 5; i++) {
+            expectedBooster.updateOneIter();
+            actualBooster.updateOneIter();
+        }
+        assertArrayEquals(
+                expectedBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                actualBooster.predictForMat(features, rows, COLS, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        expectedBooster.close();
+        actualBooster.close();
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.metarank.lightgbm4j;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScratchArenaTest {
+    @Test
+    public void testRegionIsReused() throws LGBMException {
+        long first = ScratchArena.acquire(Long.BYTES);
+        ScratchArena.release(first);
+        long second = ScratchArena.acquire(1024);
+        ScratchArena.release(second);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testNestedAcquire() throws LGBMException {
+        long outer = ScratchArena.acquire(Long.BYTES);
+        long inner = ScratchArena.acquire(Long.BYTES);
+        assertNotEquals(outer, inner);
+        DirectMemory.putLong(outer, 1L);
+        DirectMemory.putLong(inner, 2L);
+        assertEquals(1L, DirectMemory.getLong(outer));
+        ScratchArena.release(inner);
+        ScratchArena.release(outer);
+        long next = ScratchArena.acquire(Long.BYTES);
+        ScratchArena.release(next);
+        assertEquals(outer, next);
+    }
+
+    @Test
+    public void testOversizedIsNotRetained() throws LGBMException {
+        long region = ScratchArena.acquire(Long.BYTES);
+        ScratchArena.release(region);
+        long oversized = ScratchArena.acquire(ScratchArena.MAX_RETAINED_BYTES + 1);
+        assertNotEquals(region, oversized);
+        DirectMemory.putLong(oversized + ScratchArena.MAX_RETAINED_BYTES - Long.BYTES, 42L);
+        ScratchArena.release(oversized);
+        long next = ScratchArena.acquire(Long.BYTES);
+        ScratchArena.release(next);
+        assertEquals(region, next);
+    }
+}
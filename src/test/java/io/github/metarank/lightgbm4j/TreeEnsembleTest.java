@@ -0,0 +1,223 @@
+package io.github.metarank.lightgbm4j;
+
+import com.microsoft.ml.lightgbm.PredictionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreeEnsembleTest {
+    @Test
+    public void testBinaryParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        int rows = cancer[1].length;
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=binary num_leaves=8 min_data_in_leaf=5");
+        for (int i = 0; i < 10; i++) booster.updateOneIter();
+        assertParity(booster, features, rows, CancerFixture.COLS);
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testMissingCategoricalMulticlassParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        int cols = CancerFixture.COLS + 1;
+        float[] features = new float[rows * cols];
+        Random random = new Random(1);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < CancerFixture.COLS; col++) {
+                float value = cancer[0][row * CancerFixture.COLS + col];
+                double dice = random.nextDouble();
+                if (dice < 0.1) value = Float.NaN;
+                else if (dice < 0.2) value = 0.0f;
+                features[row * cols + col] = value;
+            }
+            // synthetic categorical feature
+            features[row * cols + CancerFixture.COLS] = ((int) cancer[0][row * CancerFixture.COLS]) % 7;
+        }
+        LGBMDataset dataset = LGBMDataset.createFromMat(features, rows, cols, true, "categorical_feature=9 min_data_per_group=5 cat_smooth=1", null);
+        dataset.setField("label", cancer[1]);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=multiclass num_class=2 num_leaves=8 min_data_in_leaf=5");
+        for (int i = 0; i < 10; i++) booster.updateOneIter();
+        assertParity(booster, features, rows, cols);
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testRandomForestParity() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        float[] features = cancer[0];
+        int rows = cancer[1].length;
+        LGBMDataset dataset = CancerIntegrationTest.datasetFromFile();
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=regression boosting=rf bagging_fraction=0.5 bagging_freq=1 num_leaves=8");
+        for (int i = 0; i < 10; i++) booster.updateOneIter();
+        assertParity(booster, features, rows, CancerFixture.COLS);
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testRankingParity() throws LGBMException, IOException {
+        List<double[]> rowList = new ArrayList<>();
+        List<Float> labels = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        int cols = 46;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(TreeEnsembleTest.class.getResourceAsStream("/mq2008/test.txt.gz"))));
+        String line;
+        String lastQid = null;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.split("#")[0].trim().split(" ");
+            labels.add(Float.parseFloat(tokens[0]));
+            if (!tokens[1].equals(lastQid)) {
+                groups.add(0);
+                lastQid = tokens[1];
+            }
+            groups.set(groups.size() - 1, groups.get(groups.size() - 1) + 1);
+            double[] row = new double[cols];
+            for (int i = 2; i < tokens.length; i++) {
+                String[] feature = tokens[i].split(":");
+                row[Integer.parseInt(feature[0]) - 1] = Double.parseDouble(feature[1]);
+            }
+            rowList.add(row);
+        }
+        reader.close();
+        int rows = rowList.size();
+        double[] features = new double[rows * cols];
+        float[] labelArray = new float[rows];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(rowList.get(i), 0, features, i * cols, cols);
+            labelArray[i] = labels.get(i);
+        }
+        LGBMDataset dataset = LGBMDataset.createFromMat(features, rows, cols, true, "", null);
+        dataset.setField("label", labelArray);
+        dataset.setField("group", groups.stream().mapToInt(Integer::intValue).toArray());
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=lambdarank max_depth=5 num_leaves=8");
+        for (int i = 0; i < 20; i++) booster.updateOneIter();
+        TreeEnsemble ensemble = TreeEnsemble.fromBooster(booster);
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                ensemble.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_LEAF_INDEX),
+                ensemble.predictForMat(features, rows, cols, false, PredictionType.C_API_PREDICT_LEAF_INDEX)
+        );
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testLinearTreesRejected() throws LGBMException, IOException {
+        float[][] cancer = CancerFixture.load();
+        int rows = cancer[1].length;
+        LGBMDataset dataset = LGBMDataset.createFromMat(cancer[0], rows, CancerFixture.COLS, true, "linear_tree=true", null);
+        dataset.setField("label", cancer[1]);
+        LGBMBooster booster = LGBMBooster.create(dataset, "objective=regression linear_tree=true");
+        booster.updateOneIter();
+        booster.updateOneIter();
+        assertThrows(LGBMException.class, () -> TreeEnsemble.fromBooster(booster));
+        dataset.close();
+        booster.close();
+    }
+
+    @Test
+    public void testWithoutNativeLibrary() throws Exception {
+        try (NoNativeClassLoader loader = new NoNativeClassLoader()) {
+            assertThrows(ClassNotFoundException.class, () -> loader.loadClass(PredictionType.class.getName()));
+            Class<?> scoring = Class.forName(NativeFreeScoring.class.getName(), true, loader);
+            double[][] scores = (double[][]) scoring.getDeclaredMethod("score").invoke(null);
+            // TreeEnsemble, CompiledTreeEnsemble and QuickScorer raw scores, then TreeEnsemble leaf indices
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(new double[]{0.05, 0.15, 0.35}, scores[i], 0.000000000001);
+            }
+            assertArrayEquals(new double[]{0, 0, 1, 0, 2, 1}, scores[3]);
+        }
+    }
+
+    private void assertParity(LGBMBooster booster, float[] features, int rows, int cols) throws LGBMException {
+        TreeEnsemble ensemble = TreeEnsemble.fromBooster(booster);
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE),
+                ensemble.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_RAW_SCORE)
+        );
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_LEAF_INDEX),
+                ensemble.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_LEAF_INDEX)
+        );
+        assertArrayEquals(
+                booster.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_NORMAL),
+                ensemble.predictForMat(features, rows, cols, true, PredictionType.C_API_PREDICT_NORMAL),
+                0.000000000001
+        );
+        double[] row = new double[cols];
+        for (int i = 0; i < cols; i++) row[i] = features[i];
+        assertEquals(
+                booster.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL),
+                ensemble.predictForMatSingleRow(row, PredictionType.C_API_PREDICT_NORMAL),
+                0.000000000001
+        );
+    }
+
+    /**
+     * Scores a hand-written model using only pure-Java classes. Public, as it is called from another class loader.
+     */
+    public static class NativeFreeScoring {
+        static final String MODEL = "tree\nversion=v4\nnum_class=1\nnum_tree_per_iteration=1\nlabel_index=0\n" +
+                "max_feature_idx=1\nobjective=binary sigmoid:1\nfeature_names=f0 f1\nfeature_infos=[0:1] [0:1]\n\n" +
+                "Tree=0\nnum_leaves=3\nnum_cat=0\nsplit_feature=0 1\nsplit_gain=1 1\nthreshold=0.5 0.25\n" +
+                "decision_type=2 2\nleft_child=1 -1\nright_child=-3 -2\nleaf_value=0.1 0.2 0.3\nis_linear=0\nshrinkage=1\n\n" +
+                "Tree=1\nnum_leaves=2\nnum_cat=0\nsplit_feature=1\nsplit_gain=1\nthreshold=0.5\n" +
+                "decision_type=2\nleft_child=-1\nright_child=-2\nleaf_value=-0.05 0.05\nis_linear=0\nshrinkage=1\n\n" +
+                "end of trees\n";
+
+        public static double[][] score() throws LGBMException {
+            double[] input = {0.2, 0.1, 0.2, 0.4, 0.9, 0.9};
+            TreeEnsemble ensemble = TreeEnsemble.fromModelString(MODEL);
+            return new double[][]{
+                    ensemble.predictForMat(input, 3, 2, true, PredictionKind.RAW_SCORE),
+                    CompiledTreeEnsemble.compile(ensemble).predictForMat(input, 3, 2, true, PredictionKind.RAW_SCORE),
+                    QuickScorer.create(ensemble).predictForMat(input, 3, 2, true, PredictionKind.RAW_SCORE),
+                    ensemble.predictForMat(input, 3, 2, true, PredictionKind.LEAF_INDEX)
+            };
+        }
+    }
+
+    /**
+     * Loads classes from the test classpath, but hides the native bindings (com.microsoft.ml.lightgbm), so any
+     * PredictionType or JNI usage fails with NoClassDefFoundError.
+     */
+    static class NoNativeClassLoader extends URLClassLoader {
+        NoNativeClassLoader() throws IOException {
+            super(classpath(), ClassLoader.getSystemClassLoader().getParent());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("com.microsoft.ml.lightgbm.")) {
+                throw new ClassNotFoundException(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        private static URL[] classpath() throws IOException {
+            String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+            URL[] urls = new URL[paths.length];
+            for (int i = 0; i < paths.length; i++) urls[i] = new File(paths[i]).toURI().toURL();
+            return urls;
+        }
+    }
+}